@@ -0,0 +1,80 @@
+package com.pinetask.app.main;
+
+import android.os.Bundle;
+import android.support.annotation.Nullable;
+import android.view.View;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.pinetask.app.R;
+import com.pinetask.app.common.PineTaskActivity;
+import com.pinetask.app.common.StartupTimer;
+import com.pinetask.app.db.DbMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import butterknife.BindView;
+import butterknife.ButterKnife;
+import butterknife.OnClick;
+
+/** Debug screen showing the latency, outcome, and payload size statistics recorded for each database operation, ordered by the total time spent waiting
+ *  for them.  The report can also be saved to a text file (in the app's external files directory) for comparison between runs. **/
+public class DbMetricsActivity extends PineTaskActivity
+{
+    @BindView(R.id.metricsTextView) TextView mMetricsTextView;
+
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState)
+    {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.db_metrics_activity);
+        ButterKnife.bind(this);
+        showMetrics();
+    }
+
+    private void showMetrics()
+    {
+        String report = mDbHelper.getMetrics().dump();
+        if (report.isEmpty()) report = getString(R.string.no_db_operations_recorded);
+        String startupTimes = StartupTimer.dump();
+        mMetricsTextView.setText(startupTimes.isEmpty() ? report : startupTimes + "\n" + report);
+    }
+
+    @OnClick(R.id.refreshButton)
+    public void refreshOnClick(View view)
+    {
+        showMetrics();
+    }
+
+    @OnClick(R.id.resetButton)
+    public void resetOnClick(View view)
+    {
+        mDbHelper.getMetrics().reset();
+        showMetrics();
+    }
+
+    @OnClick(R.id.saveButton)
+    public void saveOnClick(View view)
+    {
+        DbMetrics metrics = mDbHelper.getMetrics();
+        File dir = getExternalFilesDir(null);
+        if (dir == null) dir = getFilesDir();
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+        File file = new File(dir, "db_metrics_" + timestamp + ".txt");
+        try
+        {
+            metrics.writeToFile(file);
+            logMsg("Saved database metrics to %s", file);
+            Toast.makeText(this, getString(R.string.db_metrics_saved_to_x, file.getAbsolutePath()), Toast.LENGTH_LONG).show();
+        }
+        catch (IOException ex)
+        {
+            logException(ex);
+            Toast.makeText(this, getString(R.string.error_saving_db_metrics_x, ex.getMessage()), Toast.LENGTH_LONG).show();
+        }
+    }
+}
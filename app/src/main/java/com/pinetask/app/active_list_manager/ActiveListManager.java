@@ -1,17 +1,20 @@
 package com.pinetask.app.active_list_manager;
 
 import com.pinetask.app.chat.ChatMessage;
-import com.pinetask.app.common.AddedEvent;
 import com.pinetask.app.common.ChatMessageEvent;
-import com.pinetask.app.common.ChildEventBase;
-import com.pinetask.app.common.DeletedEvent;
+import com.pinetask.app.common.ListRepositoryCache;
 import com.pinetask.app.common.PineTaskList;
+import com.pinetask.app.common.PineTaskListWithCollaborators;
 import com.pinetask.app.common.PrefsManager;
 import com.pinetask.app.db.DbHelper;
 import com.pinetask.app.common.LoggingBase;
+import com.pinetask.app.db.ListDirectory;
+import com.pinetask.app.db.RxListLoaderCallbacks;
 import com.pinetask.app.hints.HintManager;
 import com.pinetask.app.list_items.PineTaskItemExt;
 
+import java.util.List;
+
 import javax.inject.Named;
 
 import io.reactivex.Maybe;
@@ -27,11 +30,16 @@ public class ActiveListManager extends LoggingBase
     PrefsManager mPrefsManager;
     DbHelper mDbHelper;
     String mUserId;
-    Disposable mListsAddedOrDeletedSubscription;
+    ListDirectory mListDirectory;
+    ListRepositoryCache mRepositoryCache;
     private HintManager mHintManager;
     private Disposable mShoppingTripActiveSubscription;
     private boolean mShoppingTripActive;
 
+    /** List restored from shared prefs at startup and made active before checking that the user can still access it, and the subscription for that check. **/
+    private PineTaskList mUnconfirmedList;
+    private Disposable mAccessCheckSubscription;
+
     public PineTaskList getActiveList()
     {
         return mCurrentList;
@@ -41,53 +49,126 @@ public class ActiveListManager extends LoggingBase
     /** Use a BehaviorSubject so that subscribers will get the most recent event, plus all subsequent events. **/
     BehaviorSubject<ActiveListEvent> mSubject;
 
-    public ActiveListManager(PrefsManager prefsManager, DbHelper dbHelper, @Named("user_id") String userId, HintManager hintManager)
+    /** Listens to the list directory for the current list being deleted, or for a list becoming available when there is no current list. **/
+    private final RxListLoaderCallbacks mListDirectoryListener = new RxListLoaderCallbacks()
+    {
+        @Override
+        public void onListsLoaded(List<PineTaskListWithCollaborators> lists)
+        {
+            if (lists.size() > 0) onListAvailable(lists.get(0));
+        }
+
+        @Override
+        public void onListAdded(PineTaskListWithCollaborators list)
+        {
+            onListAvailable(list);
+        }
+
+        @Override
+        public void onListDeleted(String listId)
+        {
+            mRepositoryCache.remove(listId);
+            if (mCurrentList != null && mCurrentList.getId().equals(listId))
+            {
+                logMsg("onListDeleted: current list has been deleted");
+                cancelAccessCheck();
+                mPrefsManager.setCurrentListId(null);
+                mSubject.onNext(new ActiveListDeletedEvent(mCurrentList.getName()));
+                determineListToUse();
+            }
+        }
+
+        @Override
+        public void onListUpdated(PineTaskListWithCollaborators list)
+        {
+        }
+
+        @Override
+        public void onError(Throwable error)
+        {
+            logErrorAndException(error, "Error from list directory");
+        }
+    };
+
+    public ActiveListManager(PrefsManager prefsManager, DbHelper dbHelper, @Named("user_id") String userId, HintManager hintManager, ListDirectory listDirectory,
+                             ListRepositoryCache repositoryCache)
     {
         mPrefsManager = prefsManager;
         mDbHelper = dbHelper;
         mUserId = userId;
         mSubject = BehaviorSubject.create();
         mHintManager = hintManager;
+        mListDirectory = listDirectory;
+        mRepositoryCache = repositoryCache;
         determineListToUse();
+        mListDirectory.addListener(mListDirectoryListener);
     }
 
     public void shutdown()
     {
         logMsg("ActiveListManager is shutting down");
-        if (mListsAddedOrDeletedSubscription != null) mListsAddedOrDeletedSubscription.dispose();
+        mListDirectory.removeListener(mListDirectoryListener);
+        cancelAccessCheck();
     }
 
-    /** Determine the user's current list: previously used list if still available, otherwise their first list, otherwise none. Then, store active list and notify listeners. **/
+    /** Determine the user's current list: previously used list if still available, otherwise their first list, otherwise none. Then, store active list and notify listeners.
+     *  At startup (before the list directory has loaded), if the previously used list is stored in prefs for this user, it is made active speculatively. **/
     private void determineListToUse()
     {
         logMsg("determineListToUse is starting");
-        getInitialListToUse().subscribe(this::setActiveList, this::onListLoadError, this::onNoListsAvailable);
+        mListLoadInProgress = true;
+        PineTaskList previousList = mListDirectory.isLoaded() ? null : mPrefsManager.getCurrentList(mUserId);
+        if (previousList != null) activateListSpeculatively(previousList);
+        else getInitialListToUse().subscribe(this::activateList, this::onListLoadError, this::onNoListsAvailable);
     }
 
-    private void onListAddedOrDeleted(ChildEventBase<String> event)
+    /** Makes the previously used list active immediately, so that its items, chat messages, and members start loading right away, in parallel with checking
+     *  that the user can still access it.  If they can't (access was revoked, or the list was deleted, while the app wasn't running), the list is rolled back:
+     *  listeners are notified that the active list was deleted, and the list to use is determined again. **/
+    private void activateListSpeculatively(PineTaskList list)
     {
-        if (event instanceof DeletedEvent)
+        logMsg("activateListSpeculatively: using list %s (%s) while checking access", list.getId(), list.getName());
+        mUnconfirmedList = list;
+        activateList(list);
+        mAccessCheckSubscription = mDbHelper.canAccessList(mUserId, list.getId()).subscribe(canAccess ->
         {
-            DeletedEvent<String> deletedEvent = (DeletedEvent<String>) event;
-            String listId = deletedEvent.Item;
-            if (mCurrentList != null && mCurrentList.getId().equals(listId))
+            if (mUnconfirmedList != list) return;
+            mUnconfirmedList = null;
+            if (canAccess)
             {
-                logMsg("onListAddedOrDeleted: current list has been deleted");
+                logMsg("activateListSpeculatively: access to list %s confirmed", list.getId());
+            }
+            else
+            {
+                logMsg("activateListSpeculatively: user can no longer access list %s, rolling back", list.getId());
+                if (mShoppingTripActiveSubscription != null) mShoppingTripActiveSubscription.dispose();
                 mPrefsManager.setCurrentListId(null);
-                mSubject.onNext(new ActiveListDeletedEvent(mCurrentList.getName()));
+                mRepositoryCache.remove(list.getId());
+                mSubject.onNext(new ActiveListDeletedEvent(list.getName()));
                 determineListToUse();
             }
-        }
-        else if (event instanceof AddedEvent)
+        }, ex ->
         {
-            AddedEvent<String> addedEvent = (AddedEvent<String>) event;
-            String listId = addedEvent.Item;
-            if (mCurrentList == null && !mListLoadInProgress)
-            {
-                logMsg("onListAddedOrDeleted: no current list, and a list was added - loading it");
-                mListLoadInProgress = true;
-                mDbHelper.getPineTaskList(listId).subscribe(this::setActiveList, this::onListLoadError);
-            }
+            // Keep the list: if it really can't be accessed, its subscriptions will fail too.
+            if (mUnconfirmedList == list) mUnconfirmedList = null;
+            logErrorAndException(ex, "Error checking access to list %s", list.getId());
+        });
+    }
+
+    private void cancelAccessCheck()
+    {
+        mUnconfirmedList = null;
+        if (mAccessCheckSubscription != null) mAccessCheckSubscription.dispose();
+        mAccessCheckSubscription = null;
+    }
+
+    /** If there is no current list (and one isn't being loaded), make the list specified the current list. **/
+    private void onListAvailable(PineTaskList list)
+    {
+        if (mCurrentList == null && !mListLoadInProgress)
+        {
+            logMsg("onListAvailable: no current list, and list %s is available - using it", list.getId());
+            activateList(list);
         }
     }
 
@@ -101,8 +182,16 @@ public class ActiveListManager extends LoggingBase
         mSubject.onNext(new ChatMessageEvent(chatMessage));
     }
 
-    /** Set mCurrentList, set current list ID in shared prefs, and notify listeners. **/
+    /** Called when the user selects a list: cancel any check of the previously used list, then make the list specified active. **/
     public void setActiveList(PineTaskList list)
+    {
+        cancelAccessCheck();
+        activateList(list);
+    }
+
+    /** Set mCurrentList, store the current list in shared prefs, and notify listeners.  The repository cache is told first, so that the list's warm
+     *  repositories (if any) are resumed before presenters look them up. **/
+    private void activateList(PineTaskList list)
     {
         logMsg("onListSelected: setting current list to %s (%s)", list.getKey(), list.getName());
 
@@ -116,9 +205,9 @@ public class ActiveListManager extends LoggingBase
 
         mListLoadInProgress = false;
         mCurrentList = list;
-        mPrefsManager.setCurrentListId(list.getKey());
+        mPrefsManager.setCurrentList(mUserId, list);
+        mRepositoryCache.setActiveList(list.getId());
         mSubject.onNext(new ListLoadedEvent(list));
-        if (mListsAddedOrDeletedSubscription != null) initListsAddedOrDeletedSubscription();
         initShoppingTripActiveSubscription(list);
     }
 
@@ -139,21 +228,12 @@ public class ActiveListManager extends LoggingBase
         });
     }
 
-    private void initListsAddedOrDeletedSubscription()
-    {
-        if (mListsAddedOrDeletedSubscription != null) mListsAddedOrDeletedSubscription.dispose();
-        logMsg("initListsAddedOrDeletedSubscription is running");
-        mListsAddedOrDeletedSubscription = mDbHelper.getListAddedOrDeletedEvents(mUserId)
-                    .subscribe(this::onListAddedOrDeleted, ex -> logErrorAndException(ex, "Error getting added/deleted events"));
-    }
-
     private void onListLoadError(Throwable ex)
     {
         logError("onListLoadError: %s", ex.getMessage());
         mListLoadInProgress = false;
         logException(ex);
         mSubject.onNext(new ListLoadErrorEvent(ex));
-        initListsAddedOrDeletedSubscription();
     }
 
     /** Set current list to null, and notify listeners that no list is available (the user has deleted their last list) **/
@@ -161,18 +241,32 @@ public class ActiveListManager extends LoggingBase
     {
         logMsg("onNoListsAvailable: setting current list to null");
         mPrefsManager.setCurrentListId(null);
+        mListLoadInProgress = false;
         mCurrentList = null;
+        mRepositoryCache.setActiveList(null);
         mSubject.onNext(new NoListsAvailableEvent());
-        initListsAddedOrDeletedSubscription();
+
+        // The directory may have loaded lists that the database read didn't find (ex: a list was created in the meantime).
+        List<PineTaskListWithCollaborators> lists = mListDirectory.getLists();
+        if (lists != null && lists.size() > 0) onListAvailable(lists.get(0));
     }
 
     /** Look up the ID of the user's previously selected list. If it still exists, emit it.
      *  Otherwise, if the user has at least one list, emit the first list ID.
      *  Otherwise, emit empty.
+     *  Once the list directory has loaded, the answer comes from memory; before then (ie, at startup), it is read from the database.
      **/
     Maybe<PineTaskList> getInitialListToUse()
     {
         logMsg("getInitialListToUse is starting");
+        List<PineTaskListWithCollaborators> lists = mListDirectory.getLists();
+        if (lists != null)
+        {
+            PineTaskList list = mListDirectory.getList(mPrefsManager.getCurrentListId());
+            if (list == null && lists.size() > 0) list = lists.get(0);
+            return list == null ? Maybe.empty() : Maybe.just(list);
+        }
+
         return getPreviousListIdIfExists().switchIfEmpty(getFirstListIdIfExists()).flatMap(listId ->
         {
             logMsg("getInitialListToUse: calling getPineTaskList(%s)", listId);
@@ -38,6 +38,9 @@ public class ChatFragment extends PineTaskFragment implements ChatView
     @BindView(R.id.sendMessageButton) FloatingActionButton mSendMessageButton;
     @BindView(R.id.chatLayout) RelativeLayout mChatLayout;
 
+    /** When scrolling up, the next page of older messages is requested once the first visible message is this close to the top. **/
+    private static final int LOAD_OLDER_MESSAGES_THRESHOLD = 5;
+
     public static ChatFragment newInstance()
     {
         ChatFragment fragment = new ChatFragment();
@@ -57,6 +60,14 @@ public class ChatFragment extends PineTaskFragment implements ChatView
         mChatMessagesAdapter = new ChatMessagesAdapter(mLayoutManager);
         mChatRecyclerView.setAdapter(mChatMessagesAdapter);
         mChatRecyclerView.setLayoutManager(mLayoutManager);
+        mChatRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener()
+        {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy)
+            {
+                if (dy < 0 && mLayoutManager.findFirstVisibleItemPosition() <= LOAD_OLDER_MESSAGES_THRESHOLD) mChatPresenter.loadOlderMessages();
+            }
+        });
         PineTaskApplication.getInstance().getUserComponent().inject(this);
         return view;
     }
@@ -92,9 +103,15 @@ public class ChatFragment extends PineTaskFragment implements ChatView
     }
 
     @Override
-    public void addChatMessage(ChatMessage chatMessage)
+    public void prependChatMessages(List<ChatMessage> messages)
+    {
+        mChatMessagesAdapter.prependMessages(messages);
+    }
+
+    @Override
+    public void addChatMessages(List<ChatMessage> chatMessages)
     {
-        mChatMessagesAdapter.addMessage(chatMessage);
+        mChatMessagesAdapter.addMessages(chatMessages);
         mChatRecyclerView.postDelayed(mChatMessagesAdapter::scrollToBottom, 300);
     }
 
@@ -12,6 +12,7 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import com.pinetask.app.R;
+import com.pinetask.app.common.ChildEventBatcher;
 import com.pinetask.app.common.PineTaskApplication;
 import com.pinetask.app.common.Logger;
 
@@ -55,10 +56,20 @@ public class ChatMessagesAdapter extends RecyclerView.Adapter<ChatMessagesAdapte
         PineTaskApplication.getInstance().getAppComponent().inject(this);
     }
 
-    public void addMessage(ChatMessage chatMessage)
+    /** Adds the messages to the bottom of the list.  Large batches are refreshed in a single pass, without animations. **/
+    public void addMessages(List<ChatMessage> chatMessages)
     {
-        mChatMessages.add(chatMessage);
-        notifyItemInserted(mChatMessages.size()-1);
+        int firstPosition = mChatMessages.size();
+        mChatMessages.addAll(chatMessages);
+        if (chatMessages.size() > ChildEventBatcher.LARGE_BATCH_SIZE) notifyDataSetChanged();
+        else notifyItemRangeInserted(firstPosition, chatMessages.size());
+    }
+
+    /** Adds older messages to the top of the list.  The RecyclerView keeps the currently visible messages in place. **/
+    public void prependMessages(List<ChatMessage> messages)
+    {
+        mChatMessages.addAll(0, messages);
+        notifyItemRangeInserted(0, messages.size());
     }
 
     public void scrollToBottom()
@@ -1,60 +1,230 @@
 package com.pinetask.app.chat;
 
 import com.pinetask.app.common.AddedEvent;
+import com.pinetask.app.common.CachedRepository;
 import com.pinetask.app.common.PineTaskList;
 import com.pinetask.app.db.DbHelper;
 import com.pinetask.app.common.LoggingBase;
+import com.pinetask.app.db.UserProfileCache;
 
 import org.joda.time.DateTime;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Consumer;
 
-class ChatMessagesRepository extends LoggingBase
+/** Loads chat messages for a list one page at a time: the newest PAGE_SIZE messages are loaded first, and older pages are loaded on demand by
+ *  calling loadOlderMessages().  New messages are received through a listener attached only from the newest loaded message onward.
+ *  While the list isn't active (the repository is warm in the ListRepositoryCache), the callbacks to the presenter are cleared, and new messages are only
+ *  added to the loaded messages.  Since chat messages are only ever appended, parking the listener and re-attaching it from the newest message is exact. **/
+class ChatMessagesRepository extends LoggingBase implements CachedRepository
 {
-    private Long mOriginalMessageCount;
-    private Disposable mSubscription;
+    /** Number of messages loaded initially, and for each page of older messages. **/
+    static final int PAGE_SIZE = 50;
+
+    /** Rough size of one message (the object and its strings), for ListRepositoryCache's memory accounting. **/
+    private static final long ESTIMATED_MESSAGE_SIZE_BYTES = 300;
+
+    private DbHelper mDbHelper;
+    private UserProfileCache mUserProfileCache;
+    private String mListId;
+    String getListId() { return mListId; }
+    private Consumer<List<ChatMessage>> mInitialLoadCompleted;
+    private Consumer<ChatMessage> mMessageAdded;
+    private Consumer<List<ChatMessage>> mOlderMessagesLoaded;
+    private Consumer<Throwable> mOnError;
+    private CompositeDisposable mSubscriptions = new CompositeDisposable();
+
+    /** Listener for new messages (after the initial page has loaded), which is disposed when the repository is parked. **/
+    private Disposable mNewMessagesSubscription;
+    private boolean mIsParked;
+
+    private boolean mIsInitialLoadComplete;
+    boolean isInitialLoadComplete() { return mIsInitialLoadComplete; }
     private List<ChatMessage> mChatMessages = new ArrayList<>();
     List<ChatMessage> getChatMessages() { return mChatMessages; }
 
-    /** Get count of existing chat messages and store it. Subscribe to chat messages in list. As soon as expected initial count has been loaded, notify
-     *  the mInitialLoadCompletedListener.  Then, continue to emit subsequent messages to the mChatMessageAddedListener. **/
-    ChatMessagesRepository(DbHelper dbHelper, PineTaskList list, Consumer<List<ChatMessage>> initialLoadCompleted, Consumer<ChatMessage> messageAdded, Consumer<Throwable> onError)
+    /** IDs of all messages in mChatMessages, for detecting duplicates. **/
+    private Set<String> mMessageIds = new HashSet<>();
+
+    /** False once a page has come back with fewer than PAGE_SIZE messages (ie, the start of the chat history has been reached). **/
+    private boolean mHasOlderMessages;
+    boolean hasOlderMessages() { return mHasOlderMessages; }
+
+    private boolean mIsLoadingOlderMessages;
+
+    /** Load the newest page of chat messages and notify initialLoadCompleted.  Then subscribe to messages from the newest one onward, and emit
+     *  subsequent messages to messageAdded.  Pages loaded by loadOlderMessages() are emitted to olderMessagesLoaded. **/
+    ChatMessagesRepository(DbHelper dbHelper, UserProfileCache userProfileCache, PineTaskList list, Consumer<List<ChatMessage>> initialLoadCompleted, Consumer<ChatMessage> messageAdded,
+                           Consumer<List<ChatMessage>> olderMessagesLoaded, Consumer<Throwable> onError)
     {
-        mSubscription = dbHelper.getChatMessageCount(list.getId())
-                .map(messageCount -> mOriginalMessageCount = messageCount)
-                .doOnSuccess(messageCount -> logMsg("Initial message count is %d", messageCount))
-                .doOnSuccess(messageCount -> { if (messageCount == 0) initialLoadCompleted.accept(mChatMessages); } )
-                .map(__ -> list.getId())
-                .flatMapObservable(dbHelper::subscribeChatMessages)
+        mDbHelper = dbHelper;
+        mUserProfileCache = userProfileCache;
+        mListId = list.getId();
+        setCallbacks(initialLoadCompleted, messageAdded, olderMessagesLoaded, onError);
+
+        mSubscriptions.add(dbHelper.getNewestChatMessages(mListId, PAGE_SIZE)
+                .flatMap(this::populateUserNames)
+                .subscribe(messages ->
+                {
+                    logMsg("Initial page contains %d messages", messages.size());
+                    mHasOlderMessages = (messages.size() == PAGE_SIZE);
+                    for (ChatMessage chatMessage : messages) addMessageId(chatMessage);
+                    mChatMessages.addAll(messages);
+                    mIsInitialLoadComplete = true;
+                    if (mInitialLoadCompleted != null) mInitialLoadCompleted.accept(messages);
+                    if (!mIsParked) subscribeNewMessages();
+                }, this::onError));
+    }
+
+    /** Sets the callbacks to the presenter (when the list becomes active). **/
+    void setCallbacks(Consumer<List<ChatMessage>> initialLoadCompleted, Consumer<ChatMessage> messageAdded, Consumer<List<ChatMessage>> olderMessagesLoaded,
+                      Consumer<Throwable> onError)
+    {
+        mInitialLoadCompleted = initialLoadCompleted;
+        mMessageAdded = messageAdded;
+        mOlderMessagesLoaded = olderMessagesLoaded;
+        mOnError = onError;
+    }
+
+    /** Removes the callbacks to the presenter (when another list becomes active). **/
+    void clearCallbacks()
+    {
+        setCallbacks(null, null, null, null);
+    }
+
+    /** Subscribes to messages after the newest loaded message. **/
+    private void subscribeNewMessages()
+    {
+        String newestMessageId = mChatMessages.isEmpty() ? null : mChatMessages.get(mChatMessages.size() - 1).getId();
+        mNewMessagesSubscription = mDbHelper.subscribeChatMessagesAfter(mListId, newestMessageId)
                 .filter(event -> event instanceof AddedEvent)
-                .map(event -> (AddedEvent<ChatMessage>) event)
-                .map(addedEvent -> addedEvent.Item)
-                .flatMap(dbHelper::populateUserName)
-                .filter(chatMessage -> { boolean dup = mChatMessages.contains(chatMessage); if (dup) logMsg("Duplicate message %s received", chatMessage.getId()); return !dup; })
+                .map(event -> event.Item)
+                .filter(chatMessage -> !isDuplicate(chatMessage))
+                .concatMap(chatMessage -> populateUserName(chatMessage).toObservable())
+                .filter(chatMessage -> !isDuplicate(chatMessage))
                 .map(chatMessage ->
                 {
+                    addMessageId(chatMessage);
                     mChatMessages.add(chatMessage);
                     String createdStr = new DateTime(chatMessage.getCreatedAtMs()).toString();
-                    logMsg("loadChatMessages: message timestamp=%d (%s), mLoadedCount=%d, mOriginalMessageCount=%d", chatMessage.getCreatedAtMs(), createdStr, mChatMessages.size(), mOriginalMessageCount);
-                    if (mChatMessages.size() == mOriginalMessageCount)
-                    {
-                        logMsg("Expected original message count (%d items) have loaded, notifying mInitialLoadCompletedListener", mOriginalMessageCount);
-                        initialLoadCompleted.accept(mChatMessages);
-                    }
+                    logMsg("loadChatMessages: new message timestamp=%d (%s), mLoadedCount=%d", chatMessage.getCreatedAtMs(), createdStr, mChatMessages.size());
+                    chatMessage.setIsNewMessage(true);
                     return chatMessage;
                 })
-                .filter(chatMessage -> mChatMessages.size() > mOriginalMessageCount)
-                .map(chatMessage -> { chatMessage.setIsNewMessage(true); return chatMessage; } )
                 .doOnDispose(() -> logMsg("loadChatMessages: disposing subscription"))
-                .subscribe(messageAdded, onError);
+                .subscribe(chatMessage ->
+                {
+                    if (mMessageAdded != null) mMessageAdded.accept(chatMessage);
+                }, this::onError);
+    }
+
+    private void onError(Throwable ex) throws Exception
+    {
+        if (mOnError != null) mOnError.accept(ex);
+        else logErrorAndException(ex, "Error loading chat messages for inactive list %s", mListId);
+    }
+
+    /** Loads the page of messages before the oldest loaded message, if there is one and it isn't already being loaded. **/
+    void loadOlderMessages()
+    {
+        if (!mHasOlderMessages || mIsLoadingOlderMessages || mChatMessages.isEmpty()) return;
+
+        mIsLoadingOlderMessages = true;
+        String oldestKey = mChatMessages.get(0).getId();
+        logMsg("Loading page of messages before %s", oldestKey);
+        mSubscriptions.add(mDbHelper.getChatMessagesBefore(mListId, oldestKey, PAGE_SIZE)
+                .flatMap(this::populateUserNames)
+                .doOnSuccess(messages ->
+                {
+                    logMsg("Loaded %d older messages", messages.size());
+                    mIsLoadingOlderMessages = false;
+                    mHasOlderMessages = (messages.size() == PAGE_SIZE);
+                    for (ChatMessage chatMessage : messages) addMessageId(chatMessage);
+                    mChatMessages.addAll(0, messages);
+                })
+                .doOnError(__ -> mIsLoadingOlderMessages = false)
+                .subscribe(messages ->
+                {
+                    if (mOlderMessagesLoaded != null) mOlderMessagesLoaded.accept(messages);
+                }, this::onError));
+    }
+
+    private boolean isDuplicate(ChatMessage chatMessage)
+    {
+        boolean dup = mMessageIds.contains(chatMessage.getId());
+        if (dup) logMsg("Duplicate message %s received", chatMessage.getId());
+        return dup;
+    }
+
+    private void addMessageId(ChatMessage chatMessage)
+    {
+        mMessageIds.add(chatMessage.getId());
+    }
+
+    /** Populates the sender name of each message, preserving order. **/
+    private Single<List<ChatMessage>> populateUserNames(List<ChatMessage> messages)
+    {
+        return Observable.fromIterable(messages).concatMap(chatMessage -> populateUserName(chatMessage).toObservable()).toList();
     }
 
+    /** Looks up the name of the sender (normally from the cache), and populates it in the message.  If the lookup fails, the name is left blank. **/
+    private Single<ChatMessage> populateUserName(ChatMessage chatMessage)
+    {
+        return mUserProfileCache.getUserName(chatMessage.getSenderId())
+                .onErrorReturn(ex ->
+                {
+                    logError("Error looking up name of sender %s: %s", chatMessage.getSenderId(), ex.getMessage());
+                    return "";
+                })
+                .map(userName ->
+                {
+                    chatMessage.setSenderName(userName);
+                    return chatMessage;
+                });
+    }
+
+    @Override
+    public void park()
+    {
+        mIsParked = true;
+        if (mNewMessagesSubscription != null)
+        {
+            logMsg("Parking new messages listener for list %s", mListId);
+            mNewMessagesSubscription.dispose();
+            mNewMessagesSubscription = null;
+        }
+    }
+
+    /** Re-attaches the new messages listener from the newest loaded message (if the initial page hadn't loaded when parked, it will attach it when it does). **/
+    @Override
+    public void resume()
+    {
+        mIsParked = false;
+        if (mIsInitialLoadComplete && mNewMessagesSubscription == null)
+        {
+            logMsg("Resuming new messages listener for list %s", mListId);
+            subscribeNewMessages();
+        }
+    }
+
+    @Override
     public void shutdown()
     {
-        mSubscription.dispose();
+        mSubscriptions.dispose();
+        park();
+    }
+
+    @Override
+    public long getEstimatedSizeBytes()
+    {
+        return mChatMessages.size() * ESTIMATED_MESSAGE_SIZE_BYTES;
     }
 }
@@ -6,4 +6,5 @@ public interface ChatPresenter
     void detachView();
     void shutdown();
     void sendMessage(String messageText);
+    void loadOlderMessages();
 }
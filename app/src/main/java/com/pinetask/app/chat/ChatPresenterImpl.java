@@ -6,11 +6,18 @@ import com.pinetask.app.active_list_manager.ActiveListEvent;
 import com.pinetask.app.active_list_manager.ActiveListManager;
 import com.pinetask.app.active_list_manager.ListLoadedEvent;
 import com.pinetask.app.active_list_manager.NoListsAvailableEvent;
+import com.pinetask.app.common.AddedEvent;
 import com.pinetask.app.common.BasePresenter;
+import com.pinetask.app.common.ChildEventBase;
+import com.pinetask.app.common.ChildEventBatcher;
+import com.pinetask.app.common.ListRepositoryCache;
 import com.pinetask.app.common.PineTaskApplication;
 import com.pinetask.app.common.PineTaskList;
 import com.pinetask.app.db.DbHelper;
+import com.pinetask.app.db.LocalSnapshotStore;
+import com.pinetask.app.db.UserProfileCache;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import io.reactivex.disposables.Disposable;
@@ -21,16 +28,24 @@ public class ChatPresenterImpl extends BasePresenter implements ChatPresenter
     String mUserId;
     ActiveListManager mActiveListManager;
     DbHelper mDbHelper;
+    UserProfileCache mUserProfileCache;
     ChatMessagesRepository mChatMessagesRepository;
     Disposable mActiveListManagerSubscription;
     PineTaskApplication mApplication;
+    ListRepositoryCache mRepositoryCache;
+    LocalSnapshotStore mSnapshotStore;
+    ChildEventBatcher<ChatMessage> mChatMessageBatcher = new ChildEventBatcher<>(ChatMessage::getId, this::onChatMessagesBatch);
 
-    public ChatPresenterImpl(String userId, ActiveListManager activeListManager, DbHelper dbHelper, PineTaskApplication application)
+    public ChatPresenterImpl(String userId, ActiveListManager activeListManager, DbHelper dbHelper, PineTaskApplication application, UserProfileCache userProfileCache,
+                             ListRepositoryCache repositoryCache, LocalSnapshotStore snapshotStore)
     {
         mUserId = userId;
         mActiveListManager = activeListManager;
         mDbHelper = dbHelper;
+        mUserProfileCache = userProfileCache;
         mApplication = application;
+        mRepositoryCache = repositoryCache;
+        mSnapshotStore = snapshotStore;
         mActiveListManagerSubscription = activeListManager.subscribe(this::processActiveListEvent, ex -> logError("Error from activeListManager: %s", ex.getMessage()));
     }
 
@@ -54,11 +69,20 @@ public class ChatPresenterImpl extends BasePresenter implements ChatPresenter
         mChatView = chatView;
         if (mChatMessagesRepository != null)
         {
+            // Pending messages are already in the repository, so they'll be shown below.
+            mChatMessageBatcher.clear();
             mChatView.showChatLayouts();
-            mChatView.showChatMessages(mChatMessagesRepository.getChatMessages());
+            mChatView.showChatMessages(getMessagesToShow());
         }
     }
 
+    /** Returns the repository's messages, or if its initial load hasn't completed, the messages saved in the local snapshot for the list (if any). **/
+    private List<ChatMessage> getMessagesToShow()
+    {
+        List<ChatMessage> snapshotMessages = mChatMessagesRepository.isInitialLoadComplete() ? null : mSnapshotStore.getChatMessages(mChatMessagesRepository.getListId());
+        return (snapshotMessages != null) ? snapshotMessages : mChatMessagesRepository.getChatMessages();
+    }
+
     @Override
     public void detachView()
     {
@@ -69,8 +93,10 @@ public class ChatPresenterImpl extends BasePresenter implements ChatPresenter
     @Override
     public void shutdown()
     {
+        // Repositories are shut down by the ListRepositoryCache.
         if (mActiveListManagerSubscription != null) mActiveListManagerSubscription.dispose();
-        if (mChatMessagesRepository != null) mChatMessagesRepository.shutdown();
+        if (mChatMessagesRepository != null) mChatMessagesRepository.clearCallbacks();
+        mChatMessageBatcher.clear();
     }
 
     @Override
@@ -89,6 +115,13 @@ public class ChatPresenterImpl extends BasePresenter implements ChatPresenter
         }
     }
 
+    /** Called by the view when the user scrolls near the top of the loaded messages. **/
+    @Override
+    public void loadOlderMessages()
+    {
+        if (mChatMessagesRepository != null) mChatMessagesRepository.loadOlderMessages();
+    }
+
     @Override
     protected void showErrorMessage(String message, Object... args)
     {
@@ -97,30 +130,51 @@ public class ChatPresenterImpl extends BasePresenter implements ChatPresenter
 
     private void resetState()
     {
+        mChatMessageBatcher.clear();
         if (mChatView != null)
         {
             mChatView.clearChatMessages();
             mChatView.hideChatLayouts();
         }
 
-        if (mChatMessagesRepository != null)
-        {
-            logMsg("loadChatMessagesForList: Shutting down old mChatMessagesRepository");
-            mChatMessagesRepository.shutdown();
-        }
+        // Stop receiving messages from the previous list's repository, which stays in the cache.
+        if (mChatMessagesRepository != null) mChatMessagesRepository.clearCallbacks();
+        mChatMessagesRepository = null;
     }
 
-    /** Clear layout if visible, shut down previous chat repository if active, and then subscribe to chat messages in the list specified. **/
+    /** Clear layout if visible, detach from the previous chat repository, and then show the chat messages in the list specified: from its repository in the
+     *  cache if the list was used recently, otherwise from a new repository (showing the newest messages saved in the local snapshot, if any, until its
+     *  initial load completes). **/
     private void loadChatMessagesForList(PineTaskList pineTaskList)
     {
         logMsg("loadChatMessagesForList: %s (%s)", pineTaskList.getId(), pineTaskList.getName());
         resetState();
-        mChatMessagesRepository = new ChatMessagesRepository(mDbHelper, pineTaskList, this::onInitialMessagesLoaded, this::onChatMessageAdded, this::onChatMessageLoadError);
+        mChatMessagesRepository = mRepositoryCache.get(pineTaskList.getId(), ChatMessagesRepository.class);
+        if (mChatMessagesRepository != null)
+        {
+            logMsg("loadChatMessagesForList: using warm repository (%d messages)", mChatMessagesRepository.getChatMessages().size());
+            mChatMessagesRepository.setCallbacks(this::onInitialMessagesLoaded, this::onChatMessageAdded, this::onOlderMessagesLoaded, this::onChatMessageLoadError);
+            if (mChatMessagesRepository.isInitialLoadComplete()) onInitialMessagesLoaded(mChatMessagesRepository.getChatMessages());
+        }
+        else
+        {
+            List<ChatMessage> snapshotMessages = mSnapshotStore.getChatMessages(pineTaskList.getId());
+            if (snapshotMessages != null && mChatView != null)
+            {
+                logMsg("loadChatMessagesForList: showing %d messages from local snapshot", snapshotMessages.size());
+                mChatView.showChatLayouts();
+                mChatView.showChatMessages(snapshotMessages);
+            }
+            mChatMessagesRepository = new ChatMessagesRepository(mDbHelper, mUserProfileCache, pineTaskList, this::onInitialMessagesLoaded, this::onChatMessageAdded,
+                    this::onOlderMessagesLoaded, this::onChatMessageLoadError);
+            mRepositoryCache.put(pineTaskList.getId(), mChatMessagesRepository);
+        }
     }
 
     private void onInitialMessagesLoaded(List<ChatMessage> messages)
     {
         logMsg("Finished initial load of %d messages", messages.size());
+        saveSnapshot();
         if (mChatView != null)
         {
             mChatView.showChatLayouts();
@@ -128,18 +182,44 @@ public class ChatPresenterImpl extends BasePresenter implements ChatPresenter
         }
     }
 
+    private void onOlderMessagesLoaded(List<ChatMessage> messages)
+    {
+        logMsg("Loaded %d older messages", messages.size());
+        if (mChatView != null && messages.size() > 0) mChatView.prependChatMessages(messages);
+    }
+
     /** Post "chat message received" event so that MainActivityPresenter can be notified -- if the chat tab isn't active, chat message will show as a toast. If app is in the
-     *  background, a system notification will be raised.  Add chat message to ChatFragment if view is attached.  If message is from another sender, play sound. **/
+     *  background, a system notification will be raised.  The message is then queued to be added to ChatFragment along with any others received in the same frame. **/
     private void onChatMessageAdded(ChatMessage chatMessage)
     {
         mActiveListManager.notifyChatMessageReceived(chatMessage);
+        mChatMessageBatcher.add(new AddedEvent<>(chatMessage));
+        saveSnapshot();
+    }
+
+    /** Add the batch of chat messages to ChatFragment if view is attached.  If any message is from another sender, play sound (once per batch). **/
+    private void onChatMessagesBatch(List<ChildEventBase<ChatMessage>> events)
+    {
         if (mChatView != null)
         {
-            mChatView.addChatMessage(chatMessage);
-            if (!mUserId.equals(chatMessage.getSenderId())) mChatView.playNewMessageSound();
+            List<ChatMessage> chatMessages = new ArrayList<>();
+            boolean fromOtherSender = false;
+            for (ChildEventBase<ChatMessage> event : events)
+            {
+                chatMessages.add(event.Item);
+                if (!mUserId.equals(event.Item.getSenderId())) fromOtherSender = true;
+            }
+            mChatView.addChatMessages(chatMessages);
+            if (fromOtherSender) mChatView.playNewMessageSound();
         }
     }
 
+    /** Pass the active list's messages to the local snapshot (which keeps only the newest ones), to be saved shortly. **/
+    private void saveSnapshot()
+    {
+        if (mChatMessagesRepository != null) mSnapshotStore.setChatMessages(mChatMessagesRepository.getListId(), mChatMessagesRepository.getChatMessages());
+    }
+
     private void onChatMessageLoadError(Throwable ex)
     {
         logError("Error in chat messages subscription");
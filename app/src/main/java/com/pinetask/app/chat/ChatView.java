@@ -7,8 +7,11 @@ public interface ChatView
     /** Shows all chat messages in the list, replacing any current contents. **/
     void showChatMessages(List<ChatMessage> messages);
 
-    /** Adds the specified chat message to the bottom of the list. **/
-    void addChatMessage(ChatMessage chatMessage);
+    /** Adds the specified (older) chat messages to the top of the list. **/
+    void prependChatMessages(List<ChatMessage> messages);
+
+    /** Adds the specified chat messages to the bottom of the list in one update. **/
+    void addChatMessages(List<ChatMessage> chatMessages);
 
     /** Plays a sound to indicate a new chat message arrived. **/
     void playNewMessageSound();
@@ -0,0 +1,17 @@
+package com.pinetask.app.common;
+
+/** A per-list repository (items, chat messages, or members) that can be kept in the ListRepositoryCache while its list isn't active. **/
+public interface CachedRepository
+{
+    /** Stop listening for changes (ex: dispose database listeners), but keep the data loaded so far. **/
+    void park();
+
+    /** Start listening for changes again after park(), bringing the data loaded so far up to date. **/
+    void resume();
+
+    /** Dispose of all subscriptions: the repository won't be used again. **/
+    void shutdown();
+
+    /** Rough estimate of the memory used by the data held by the repository, in bytes. **/
+    long getEstimatedSizeBytes();
+}
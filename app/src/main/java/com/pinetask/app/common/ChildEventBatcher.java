@@ -0,0 +1,140 @@
+package com.pinetask.app.common;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+
+/** Buffers child events and delivers them as a single batch, either once per display frame (window of 0) or once per window of the number of milliseconds specified.
+ *  Events for the same key within a batch are collapsed, so that a burst of changes to the same item (ex: after reconnecting) results in one adapter update:
+ *  - Added then Deleted: both are dropped.
+ *  - Added then Added/Updated: Added with the latest item.
+ *  - Updated then Updated: Updated with the latest item.
+ *  - Updated then Deleted: Deleted.
+ *  - Deleted then Added/Updated: Updated with the latest item (the item was never removed from the display).
+ *  Events within a batch are kept in the order their keys were first seen.  Must only be used from the main thread. **/
+public class ChildEventBatcher<T> extends LoggingBase
+{
+    /** Batches larger than this should be applied to adapters with notifyDataSetChanged() rather than individual (animated) notifications. **/
+    public static final int LARGE_BATCH_SIZE = 20;
+
+    private final Function<T, String> mKeyFunction;
+    private final Consumer<List<ChildEventBase<T>>> mOnBatch;
+    private final long mWindowMs;
+    private final Map<String, ChildEventBase<T>> mPendingEvents = new LinkedHashMap<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private boolean mIsFlushScheduled;
+
+    private final Choreographer.FrameCallback mFrameCallback = __ -> flush();
+    private final Runnable mFlushRunnable = this::flush;
+
+    /** Deliver batches once per display frame. **/
+    public ChildEventBatcher(Function<T, String> keyFunction, Consumer<List<ChildEventBase<T>>> onBatch)
+    {
+        this(keyFunction, onBatch, 0);
+    }
+
+    /** Deliver batches every windowMs milliseconds, or once per display frame if windowMs is 0. **/
+    public ChildEventBatcher(Function<T, String> keyFunction, Consumer<List<ChildEventBase<T>>> onBatch, long windowMs)
+    {
+        mKeyFunction = keyFunction;
+        mOnBatch = onBatch;
+        mWindowMs = windowMs;
+    }
+
+    /** Adds the event to the current batch, collapsing it with any pending event for the same key, and schedules the batch to be delivered. **/
+    public void add(ChildEventBase<T> event)
+    {
+        String key;
+        try
+        {
+            key = mKeyFunction.apply(event.Item);
+        }
+        catch (Exception ex)
+        {
+            logErrorAndException(ex, "Error getting key for event");
+            return;
+        }
+
+        ChildEventBase<T> pending = mPendingEvents.get(key);
+        if (pending == null) mPendingEvents.put(key, event);
+        else
+        {
+            ChildEventBase<T> collapsed = collapse(pending, event);
+            if (collapsed == null) mPendingEvents.remove(key);
+            else mPendingEvents.put(key, collapsed);
+        }
+        scheduleFlush();
+    }
+
+    /** Returns the single event equivalent to the pending event followed by the new one, or null if they cancel each other out. **/
+    private ChildEventBase<T> collapse(ChildEventBase<T> pending, ChildEventBase<T> event)
+    {
+        if (pending instanceof AddedEvent)
+        {
+            if (event instanceof DeletedEvent) return null;
+            else return new AddedEvent<>(event.Item);
+        }
+        else if (pending instanceof UpdatedEvent)
+        {
+            if (event instanceof DeletedEvent) return event;
+            else return new UpdatedEvent<>(event.Item);
+        }
+        else
+        {
+            if (event instanceof DeletedEvent) return event;
+            else return new UpdatedEvent<>(event.Item);
+        }
+    }
+
+    private void scheduleFlush()
+    {
+        if (mIsFlushScheduled) return;
+        mIsFlushScheduled = true;
+        if (mWindowMs > 0) mHandler.postDelayed(mFlushRunnable, mWindowMs);
+        else Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    }
+
+    /** Delivers all pending events as one batch.  Called when the batch is due, and can also be called to deliver pending events immediately (ex: before
+     *  switching to a different list, so that they are applied to the list they belong to). **/
+    public void flush()
+    {
+        cancelScheduledFlush();
+        if (mPendingEvents.isEmpty()) return;
+
+        List<ChildEventBase<T>> batch = new ArrayList<>(mPendingEvents.values());
+        mPendingEvents.clear();
+        try
+        {
+            mOnBatch.accept(batch);
+        }
+        catch (Exception ex)
+        {
+            logErrorAndException(ex, "Error processing batch of %d events", batch.size());
+        }
+    }
+
+    /** Discards any pending events (ex: when switching to a different list), and cancels the scheduled delivery. **/
+    public void clear()
+    {
+        mPendingEvents.clear();
+        cancelScheduledFlush();
+    }
+
+    private void cancelScheduledFlush()
+    {
+        if (mIsFlushScheduled)
+        {
+            if (mWindowMs > 0) mHandler.removeCallbacks(mFlushRunnable);
+            else Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+            mIsFlushScheduled = false;
+        }
+    }
+}
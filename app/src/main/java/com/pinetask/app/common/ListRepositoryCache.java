@@ -0,0 +1,176 @@
+package com.pinetask.app.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Keeps the repositories (items, chat messages, members) of the most recently used lists, so that switching back to a recent list shows its data immediately
+ *  instead of loading everything again.  The repositories for each list are held together in a bundle, and bundles are kept in least recently used order:
+ *  - At most maxWarmLists bundles are kept (including the active list's), and their total estimated size is kept under maxEstimatedBytes.  Least recently used
+ *    bundles are evicted (and their repositories shut down) first.  The active list's bundle is never evicted.
+ *  - The repositories of the active list, and of the maxLiveInactiveLists most recently used other lists, keep their database listeners attached, so they stay
+ *    up to date.  The repositories of other lists are parked (listeners detached), and are brought up to date when their list becomes active again.
+ *  ActiveListManager tells the cache which list is active; presenters look up their repository for the list with get(), and add one with put() if there isn't one.
+ *  Must only be used from the main thread.  Caller must invoke shutdown() when the user logs out. **/
+public class ListRepositoryCache extends LoggingBase
+{
+    public static final int DEFAULT_MAX_WARM_LISTS = 3;
+    public static final int DEFAULT_MAX_LIVE_INACTIVE_LISTS = 1;
+    public static final long DEFAULT_MAX_ESTIMATED_BYTES = 4 * 1024 * 1024;
+
+    /** The repositories held for one list, keyed by repository class, and whether their listeners are currently parked. **/
+    private static class Bundle
+    {
+        final Map<Class<?>, CachedRepository> Repositories = new HashMap<>();
+        boolean IsParked;
+
+        long getEstimatedSizeBytes()
+        {
+            long size = 0;
+            for (CachedRepository repository : Repositories.values()) size += repository.getEstimatedSizeBytes();
+            return size;
+        }
+    }
+
+    private final int mMaxWarmLists;
+    private final int mMaxLiveInactiveLists;
+    private final long mMaxEstimatedBytes;
+
+    /** Bundles by list ID, in access order (least recently used first). **/
+    private final LinkedHashMap<String, Bundle> mBundles = new LinkedHashMap<>(16, 0.75f, true);
+    private String mActiveListId;
+    private int mEvictionCount;
+    public int getEvictionCount() { return mEvictionCount; }
+
+    public ListRepositoryCache()
+    {
+        this(DEFAULT_MAX_WARM_LISTS, DEFAULT_MAX_LIVE_INACTIVE_LISTS, DEFAULT_MAX_ESTIMATED_BYTES);
+    }
+
+    public ListRepositoryCache(int maxWarmLists, int maxLiveInactiveLists, long maxEstimatedBytes)
+    {
+        mMaxWarmLists = Math.max(1, maxWarmLists);
+        mMaxLiveInactiveLists = maxLiveInactiveLists;
+        mMaxEstimatedBytes = maxEstimatedBytes;
+    }
+
+    /** Makes the list specified the most recently used, resuming its repositories if they were parked, then parks and evicts other lists as needed.
+     *  listId may be null if no list is active, in which case all lists are treated as inactive. **/
+    public void setActiveList(String listId)
+    {
+        mActiveListId = listId;
+        Bundle bundle = (listId == null) ? null : mBundles.get(listId);
+        if (bundle != null && bundle.IsParked)
+        {
+            logMsg("setActiveList: resuming repositories for list %s", listId);
+            bundle.IsParked = false;
+            for (CachedRepository repository : bundle.Repositories.values()) repository.resume();
+        }
+        trim();
+    }
+
+    /** Returns the repository of the type specified held for the list, or null if there isn't one. **/
+    public <T extends CachedRepository> T get(String listId, Class<T> type)
+    {
+        Bundle bundle = mBundles.get(listId);
+        return (bundle == null) ? null : type.cast(bundle.Repositories.get(type));
+    }
+
+    /** Adds a repository for the list, replacing (and shutting down) any existing repository of the same type. **/
+    public void put(String listId, CachedRepository repository)
+    {
+        Bundle bundle = mBundles.get(listId);
+        if (bundle == null)
+        {
+            bundle = new Bundle();
+            mBundles.put(listId, bundle);
+        }
+        CachedRepository previous = bundle.Repositories.put(repository.getClass(), repository);
+        if (previous != null && previous != repository) previous.shutdown();
+        if (bundle.IsParked) repository.park();
+        trim();
+    }
+
+    /** Shuts down and removes the repositories for the list (ex: the list was deleted, or the user's access to it was revoked). **/
+    public void remove(String listId)
+    {
+        Bundle bundle = mBundles.remove(listId);
+        if (bundle != null)
+        {
+            logMsg("remove: shutting down repositories for list %s", listId);
+            shutdownBundle(bundle);
+        }
+    }
+
+    /** Returns the total estimated size of the data held for all lists. **/
+    public long getEstimatedSizeBytes()
+    {
+        long size = 0;
+        for (Bundle bundle : mBundles.values()) size += bundle.getEstimatedSizeBytes();
+        return size;
+    }
+
+    public int size()
+    {
+        return mBundles.size();
+    }
+
+    /** Shuts down all repositories.  Called when the user logs out. **/
+    public void shutdown()
+    {
+        logMsg("shutdown: shutting down repositories for %d lists", mBundles.size());
+        for (Bundle bundle : mBundles.values()) shutdownBundle(bundle);
+        mBundles.clear();
+        mActiveListId = null;
+    }
+
+    /** Evicts least recently used inactive lists until the limits on list count and estimated size are met, and then parks the listeners of inactive lists
+     *  beyond the most recent mMaxLiveInactiveLists. **/
+    private void trim()
+    {
+        long totalSize = getEstimatedSizeBytes();
+        Iterator<Map.Entry<String, Bundle>> iterator = mBundles.entrySet().iterator();
+        while (iterator.hasNext() && (mBundles.size() > mMaxWarmLists || totalSize > mMaxEstimatedBytes))
+        {
+            Map.Entry<String, Bundle> entry = iterator.next();
+            if (entry.getKey().equals(mActiveListId)) continue;
+            long bundleSize = entry.getValue().getEstimatedSizeBytes();
+            logMsg("trim: evicting list %s (%d bytes, %d bytes total)", entry.getKey(), bundleSize, totalSize);
+            iterator.remove();
+            shutdownBundle(entry.getValue());
+            totalSize -= bundleSize;
+            mEvictionCount++;
+        }
+
+        // Iterate from most to least recently used, keeping the listeners of the first mMaxLiveInactiveLists inactive lists attached.  (Entries are copied
+        // rather than looked up with get(), which would change the access order.)
+        List<Map.Entry<String, Bundle>> entries = new ArrayList<>(mBundles.entrySet());
+        int liveInactiveCount = 0;
+        for (int i = entries.size() - 1; i >= 0; i--)
+        {
+            String listId = entries.get(i).getKey();
+            if (listId.equals(mActiveListId)) continue;
+            if (liveInactiveCount < mMaxLiveInactiveLists)
+            {
+                liveInactiveCount++;
+                continue;
+            }
+            Bundle bundle = entries.get(i).getValue();
+            if (!bundle.IsParked)
+            {
+                logMsg("trim: parking listeners for list %s", listId);
+                bundle.IsParked = true;
+                for (CachedRepository repository : bundle.Repositories.values()) repository.park();
+            }
+        }
+    }
+
+    private void shutdownBundle(Bundle bundle)
+    {
+        for (CachedRepository repository : bundle.Repositories.values()) repository.shutdown();
+        bundle.Repositories.clear();
+    }
+}
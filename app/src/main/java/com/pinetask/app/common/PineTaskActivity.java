@@ -56,6 +56,14 @@ public abstract class PineTaskActivity extends AppCompatActivity
         mActivityActive = false;
     }
 
+    /** Write any item updates still waiting in the write window, so they aren't lost if the process is killed while the app is in the background. **/
+    @Override
+    protected void onStop()
+    {
+        super.onStop();
+        mDbHelper.flushPendingWrites();
+    }
+
     @Override
     protected void onDestroy()
     {
@@ -28,6 +28,10 @@ public class PineTaskApplication extends MultiDexApplication
         mUserComponent.chatPresenter().shutdown();
         mUserComponent.membersPresenter().shutdown();
         mUserComponent.soundManager().shutdown();
+        mUserComponent.userProfileCache().shutdown();
+        mUserComponent.listRepositoryCache().shutdown();
+        mUserComponent.listDirectory().shutdown();
+        mUserComponent.localSnapshotStore().shutdown();
         mUserComponent = null;
     }
 
@@ -72,6 +76,7 @@ public class PineTaskApplication extends MultiDexApplication
     public void onCreate()
     {
         super.onCreate();
+        StartupTimer.onApplicationCreated();
 
         // Only enable logging in debug builds
         Logger.setIsDebugBuild(BuildConfig.DEBUG);
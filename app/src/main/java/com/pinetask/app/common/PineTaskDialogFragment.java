@@ -19,6 +19,7 @@ import io.reactivex.CompletableObserver;
 public class PineTaskDialogFragment extends DialogFragment
 {
     @Inject protected DbHelper mDbHelper;
+    @Inject protected PrefsManager mPrefsManager;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState)
@@ -1,13 +1,23 @@
 package com.pinetask.app.common;
 
+import com.google.firebase.database.IgnoreExtraProperties;
+
 import java.util.List;
 
+/** A list along with its members.  When loaded from a list summary (/users/$userId/list_summaries/$listId) only the member count is known, and the
+ *  collaborator IDs are null.  Other fields of the summary (ex: membersVersion) are ignored. **/
+@IgnoreExtraProperties
 public class PineTaskListWithCollaborators extends PineTaskList
 {
     private List<String> mCollaboratorIds;
     public List<String> getCollaboratorIds() { return mCollaboratorIds; }
     public void setCollaboratorIds(List<String> collaboratorIds) { mCollaboratorIds = collaboratorIds; }
 
+    /** Number of users with access to the list, including the owner. **/
+    private int mMemberCount;
+    public int getMemberCount() { return mMemberCount; }
+    public void setMemberCount(int memberCount) { mMemberCount = memberCount; }
+
     public PineTaskListWithCollaborators()
     {
     }
@@ -18,5 +28,19 @@ public class PineTaskListWithCollaborators extends PineTaskList
         mOwnerId = pineTaskList.getOwnerId();
         mName = pineTaskList.getName();
         mCollaboratorIds = collaboratorIds;
+        mMemberCount = collaboratorIds.size();
+    }
+
+    /** Creates a list from a list summary. **/
+    public PineTaskListWithCollaborators(String key, String name, String ownerId, int memberCount)
+    {
+        super(key, name, ownerId);
+        mMemberCount = memberCount;
+    }
+
+    /** Returns true if the other list has the same name, owner, and member count (the fields stored in a list summary). **/
+    public boolean hasSameSummary(PineTaskListWithCollaborators other)
+    {
+        return PineTaskUtil.equalsOrNull(mName, other.getName()) && PineTaskUtil.equalsOrNull(mOwnerId, other.getOwnerId()) && mMemberCount == other.getMemberCount();
     }
 }
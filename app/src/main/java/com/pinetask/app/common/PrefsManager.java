@@ -27,6 +27,26 @@ public class PrefsManager
     public String getCurrentListId() { return mSharedPreferences.getString(CURRENT_LIST_ID_KEY, null); }
     public void setCurrentListId(String listId) { mSharedPreferences.edit().putString(CURRENT_LIST_ID_KEY, listId).apply(); }
 
+    /** Name and owner of the currently displayed list, stored along with its ID (and the ID of the user it was stored for) so that the list can be shown at
+     *  startup before it has been read from the database.  getCurrentList() returns null if there is no current list, if only its ID is stored, or if it
+     *  was stored for a different user. **/
+    private final String CURRENT_LIST_USER_ID_KEY = "CurrentListUserId";
+    private final String CURRENT_LIST_NAME_KEY = "CurrentListName";
+    private final String CURRENT_LIST_OWNER_ID_KEY = "CurrentListOwnerId";
+    public PineTaskList getCurrentList(String userId)
+    {
+        if (userId == null || !userId.equals(mSharedPreferences.getString(CURRENT_LIST_USER_ID_KEY, null))) return null;
+        String listId = getCurrentListId();
+        String name = mSharedPreferences.getString(CURRENT_LIST_NAME_KEY, null);
+        String ownerId = mSharedPreferences.getString(CURRENT_LIST_OWNER_ID_KEY, null);
+        return (listId == null || name == null || ownerId == null) ? null : new PineTaskList(listId, name, ownerId);
+    }
+    public void setCurrentList(String userId, PineTaskList list)
+    {
+        mSharedPreferences.edit().putString(CURRENT_LIST_USER_ID_KEY, userId).putString(CURRENT_LIST_ID_KEY, list.getKey()).putString(CURRENT_LIST_NAME_KEY, list.getName())
+                .putString(CURRENT_LIST_OWNER_ID_KEY, list.getOwnerId()).apply();
+    }
+
     /** Boolean value indicating if this is the first app launch. **/
     private final String IS_FIRST_LAUNCH_KEY = "IsFirstLaunch";
     public boolean getIsFirstLaunch() { return mSharedPreferences.getBoolean(IS_FIRST_LAUNCH_KEY, true); }
@@ -40,4 +60,37 @@ public class PrefsManager
     private final String LIST_ITEM_TO_ADD_KEY = "ListItemToAdd";
     public void setListItemToAdd(String listItemToAdd) { mSharedPreferences.edit().putString(LIST_ITEM_TO_ADD_KEY, listItemToAdd).apply(); }
     public String getListItemToAdd() { return mSharedPreferences.getString(LIST_ITEM_TO_ADD_KEY, null); }
+
+    /** Per-list createdAt timestamp of the newest item the user has seen in the list, or -1 if not known.  Items created after it are flagged as new. **/
+    private final String LAST_SEEN_ITEM_TIMESTAMP_KEY_PREFIX = "LastSeenItemTimestamp_";
+    public long getLastSeenItemTimestamp(String listId) { return mSharedPreferences.getLong(LAST_SEEN_ITEM_TIMESTAMP_KEY_PREFIX + listId, -1); }
+    public void setLastSeenItemTimestamp(String listId, long timestamp) { mSharedPreferences.edit().putLong(LAST_SEEN_ITEM_TIMESTAMP_KEY_PREFIX + listId, timestamp).apply(); }
+
+    /** Per-user locally cached copy of the version of the last startup message read (/users/$userId/startup_message_version), so that checking for an
+     *  unread startup message only needs to read the message itself.  Returns null if not cached yet. **/
+    private final String STARTUP_MESSAGE_READ_VERSION_KEY_PREFIX = "StartupMessageReadVersion_";
+    public Integer getStartupMessageReadVersion(String userId)
+    {
+        String key = STARTUP_MESSAGE_READ_VERSION_KEY_PREFIX + userId;
+        return mSharedPreferences.contains(key) ? mSharedPreferences.getInt(key, -1) : null;
+    }
+    public void setStartupMessageReadVersion(String userId, int version) { mSharedPreferences.edit().putInt(STARTUP_MESSAGE_READ_VERSION_KEY_PREFIX + userId, version).apply(); }
+
+    /** Locally cached copy of the signed in user's account state (the user ID, and whether the user is anonymous: /users/$userId/isAnonymous), so that
+     *  LaunchActivity can decide where to go at startup without waiting for a database read.  Returns null if nothing is cached for the user specified. **/
+    private final String ACCOUNT_STATE_USER_ID_KEY = "AccountStateUserId";
+    private final String ACCOUNT_STATE_IS_ANONYMOUS_KEY = "AccountStateIsAnonymous";
+    public Boolean getCachedIsAnonymous(String userId)
+    {
+        if (userId == null || !userId.equals(mSharedPreferences.getString(ACCOUNT_STATE_USER_ID_KEY, null))) return null;
+        return mSharedPreferences.getBoolean(ACCOUNT_STATE_IS_ANONYMOUS_KEY, true);
+    }
+    public void setCachedAccountState(String userId, boolean isAnonymous)
+    {
+        mSharedPreferences.edit().putString(ACCOUNT_STATE_USER_ID_KEY, userId).putBoolean(ACCOUNT_STATE_IS_ANONYMOUS_KEY, isAnonymous).apply();
+    }
+    public void clearCachedAccountState()
+    {
+        mSharedPreferences.edit().remove(ACCOUNT_STATE_USER_ID_KEY).remove(ACCOUNT_STATE_IS_ANONYMOUS_KEY).apply();
+    }
 }
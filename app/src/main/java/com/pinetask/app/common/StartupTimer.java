@@ -0,0 +1,47 @@
+package com.pinetask.app.common;
+
+import android.os.SystemClock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Records how long after Application.onCreate() each startup milestone (ex: LaunchActivity routing, MainActivity created, first list row rendered) was
+ *  first reached, so that cold start time can be measured.  Only the first time each milestone is reached in the process is recorded. **/
+public class StartupTimer
+{
+    private static long mApplicationCreatedTime = -1;
+    private static final Map<String, Long> mMilestones = new LinkedHashMap<>();
+
+    /** Called from Application.onCreate(): milestones are timed from this point. **/
+    public static synchronized void onApplicationCreated()
+    {
+        mApplicationCreatedTime = SystemClock.elapsedRealtime();
+        mMilestones.clear();
+    }
+
+    /** Records the time since Application.onCreate() for the milestone specified, if it hasn't already been reached. **/
+    public static synchronized void onMilestone(String milestone)
+    {
+        if (mApplicationCreatedTime < 0 || mMilestones.containsKey(milestone)) return;
+        long elapsedMs = SystemClock.elapsedRealtime() - mApplicationCreatedTime;
+        mMilestones.put(milestone, elapsedMs);
+        Logger.logMsg(StartupTimer.class, "%s: %d ms after application start", milestone, elapsedMs);
+    }
+
+    /** Returns the milestones reached so far, in the order they were reached, with the number of ms after application start. **/
+    public static synchronized Map<String, Long> getMilestones()
+    {
+        return new LinkedHashMap<>(mMilestones);
+    }
+
+    /** Returns a description of the milestones reached so far (one per line), or an empty string if there are none. **/
+    public static synchronized String dump()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : mMilestones.entrySet())
+        {
+            sb.append(String.format("%s: %d ms\n", entry.getKey(), entry.getValue()));
+        }
+        return sb.toString();
+    }
+}
@@ -3,6 +3,9 @@ package com.pinetask.app.common;
 import com.pinetask.app.active_list_manager.ActiveListManager;
 import com.pinetask.app.chat.ChatFragment;
 import com.pinetask.app.chat.ChatPresenter;
+import com.pinetask.app.db.ListDirectory;
+import com.pinetask.app.db.LocalSnapshotStore;
+import com.pinetask.app.db.UserProfileCache;
 import com.pinetask.app.list_items.AddOrEditItemDialog;
 import com.pinetask.app.list_items.ListItemAdapter;
 import com.pinetask.app.list_items.ListItemsFragment;
@@ -23,12 +26,16 @@ import dagger.Subcomponent;
 @Subcomponent(modules={UserModule.class})
 public interface UserComponent
 {
+    ListDirectory listDirectory();
+    ListRepositoryCache listRepositoryCache();
+    LocalSnapshotStore localSnapshotStore();
     ActiveListManager activeListManager();
     MainActivityPresenter mainActivityPresenter();
     ListItemsPresenter listItemsPresenter();
     ChatPresenter chatPresenter();
     MembersPresenter membersPresenter();
     SoundManager soundManager();
+    UserProfileCache userProfileCache();
 
     void inject(MainActivity target);
     void inject(PurgeCompletedItemsDialogFragment target);
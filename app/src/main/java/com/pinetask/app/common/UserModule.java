@@ -6,6 +6,9 @@ import com.pinetask.app.active_list_manager.ActiveListManager;
 import com.pinetask.app.chat.ChatPresenter;
 import com.pinetask.app.chat.ChatPresenterImpl;
 import com.pinetask.app.db.DbHelper;
+import com.pinetask.app.db.ListDirectory;
+import com.pinetask.app.db.LocalSnapshotStore;
+import com.pinetask.app.db.UserProfileCache;
 import com.pinetask.app.hints.HintManager;
 import com.pinetask.app.list_items.ListItemsPresenter;
 import com.pinetask.app.list_items.ListItemsPresenterImpl;
@@ -43,44 +46,73 @@ public class UserModule extends LoggingBase
         return mUserId;
     }
 
+    /** The snapshot is read from disk when it is created, so it's ready before the first screen is shown. **/
     @Provides
     @UserScope
-    public ActiveListManager providesActiveListManager(PrefsManager prefsManager, DbHelper dbHelper, @Named("user_id") String userId, HintManager hintManager)
+    public LocalSnapshotStore providesLocalSnapshotStore(PineTaskApplication application, @Named("user_id") String userId, DbHelper dbHelper)
+    {
+        logMsg("creating LocalSnapshotStore");
+        return new LocalSnapshotStore(application, userId, dbHelper.getMetrics());
+    }
+
+    @Provides
+    @UserScope
+    public ListDirectory providesListDirectory(DbHelper dbHelper, @Named("user_id") String userId, LocalSnapshotStore snapshotStore)
+    {
+        logMsg("creating ListDirectory");
+        return new ListDirectory(dbHelper, userId, snapshotStore);
+    }
+
+    @Provides
+    @UserScope
+    public ListRepositoryCache providesListRepositoryCache()
+    {
+        logMsg("creating ListRepositoryCache");
+        return new ListRepositoryCache();
+    }
+
+    @Provides
+    @UserScope
+    public ActiveListManager providesActiveListManager(PrefsManager prefsManager, DbHelper dbHelper, @Named("user_id") String userId, HintManager hintManager,
+                                                       ListDirectory listDirectory, ListRepositoryCache repositoryCache)
     {
         logMsg("creating ActiveListManager");
-        return new ActiveListManager(prefsManager, dbHelper, userId, hintManager);
+        return new ActiveListManager(prefsManager, dbHelper, userId, hintManager, listDirectory, repositoryCache);
     }
 
     @Provides
     @UserScope
     public MainActivityPresenter providesMainActivityPresenter(DbHelper dbHelper, @Named("user_id") String userId, PrefsManager prefsManager,
-                                                               PineTaskApplication pineTaskApplication, ActiveListManager activeListManager)
+                                                               PineTaskApplication pineTaskApplication, ActiveListManager activeListManager, ListDirectory listDirectory)
     {
         logMsg("creating MainActivityPresenter");
-        return new MainActivityPresenterImpl(dbHelper, userId, prefsManager, pineTaskApplication, activeListManager);
+        return new MainActivityPresenterImpl(dbHelper, userId, prefsManager, pineTaskApplication, activeListManager, listDirectory);
     }
 
     @Provides
     @UserScope
     public ListItemsPresenter providesListItemsPresenter(PineTaskApplication application, DbHelper dbHelper, ActiveListManager activeListManager, @Named("user_id") String userId,
-                                                         SoundManager soundManager, PrefsManager prefsManager)
+                                                         SoundManager soundManager, PrefsManager prefsManager, ListRepositoryCache repositoryCache,
+                                                         LocalSnapshotStore snapshotStore)
     {
-        return new ListItemsPresenterImpl(application, dbHelper, activeListManager, userId, soundManager, prefsManager);
+        return new ListItemsPresenterImpl(application, dbHelper, activeListManager, userId, soundManager, prefsManager, repositoryCache, snapshotStore);
     }
 
     @Provides
     @UserScope
-    public MembersPresenter providesMembersPresenter(DbHelper dbHelper, PineTaskApplication pineTaskApplication, ActiveListManager activeListManager, @Named("user_id") String userId)
+    public MembersPresenter providesMembersPresenter(DbHelper dbHelper, PineTaskApplication pineTaskApplication, ActiveListManager activeListManager, @Named("user_id") String userId,
+                                                     UserProfileCache userProfileCache, ListRepositoryCache repositoryCache, LocalSnapshotStore snapshotStore)
     {
         logMsg("Creating MembersPresenter");
-        return new MembersPresenterImpl(dbHelper, pineTaskApplication, activeListManager, userId);
+        return new MembersPresenterImpl(dbHelper, pineTaskApplication, activeListManager, userId, userProfileCache, repositoryCache, snapshotStore);
     }
 
     @Provides
     @UserScope
-    public ChatPresenter providesChatPresenter(@Named("user_id") String userId, ActiveListManager activeListManager, DbHelper dbHelper, PineTaskApplication application)
+    public ChatPresenter providesChatPresenter(@Named("user_id") String userId, ActiveListManager activeListManager, DbHelper dbHelper, PineTaskApplication application,
+                                               UserProfileCache userProfileCache, ListRepositoryCache repositoryCache, LocalSnapshotStore snapshotStore)
     {
         logMsg("Creating ChatPresenter");
-        return new ChatPresenterImpl(userId, activeListManager, dbHelper, application);
+        return new ChatPresenterImpl(userId, activeListManager, dbHelper, application, userProfileCache, repositoryCache, snapshotStore);
     }
 }
@@ -0,0 +1,27 @@
+package com.pinetask.app.db;
+
+/** Result of a bulk operation performed as one or more multi-path updateChildren() writes (ex: purging completed items). **/
+public class BulkUpdateResult
+{
+    /** Number of items affected by the operation. **/
+    public int ItemCount;
+
+    /** Number of updateChildren() writes the operation was split into. **/
+    public int WriteCount;
+
+    /** Time taken for the whole operation (query plus writes), in milliseconds. **/
+    public long DurationMs;
+
+    public BulkUpdateResult(int itemCount, int writeCount, long durationMs)
+    {
+        ItemCount = itemCount;
+        WriteCount = writeCount;
+        DurationMs = durationMs;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("ItemCount=%d, WriteCount=%d, DurationMs=%d", ItemCount, WriteCount, DurationMs);
+    }
+}
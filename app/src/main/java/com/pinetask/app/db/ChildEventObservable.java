@@ -1,9 +1,7 @@
 package com.pinetask.app.db;
 
-import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
 import com.pinetask.app.common.AddedEvent;
 import com.pinetask.app.common.ChildEventBase;
 import com.pinetask.app.common.DeletedEvent;
@@ -11,81 +9,49 @@ import com.pinetask.app.common.UpdatedEvent;
 import com.pinetask.app.common.LoggingBase;
 
 import io.reactivex.Observable;
-import io.reactivex.ObservableEmitter;
 
 /** RxJava wrapper which creates an Observable to emit events for items being added, updated, or deleted at the specified database location.
- *  When the subscription is disposed, the Firebase ChildEventListener is detached. **/
+ *  The underlying Firebase ChildEventListener is shared with any other subscribers to the same location (see SharedListenerRegistry), and is
+ *  detached when the last subscription is disposed. **/
 public class ChildEventObservable<T> extends LoggingBase
 {
-    ChildEventListener mListener;
-    DatabaseReference mDbRef;
+    SharedListenerRegistry mListenerRegistry;
+    Query mDbRef;
+    String mKey;
     String mOperationDescription;
     Class<T> mClass;
 
-    public ChildEventObservable(Class<T> cl, DatabaseReference dbRef, String operationDescription)
+    public ChildEventObservable(SharedListenerRegistry listenerRegistry, Class<T> cl, Query dbRef, String key, String operationDescription)
     {
+        mListenerRegistry = listenerRegistry;
         mDbRef = dbRef;
+        mKey = key;
         mOperationDescription = operationDescription;
         mClass = cl;
     }
 
     public Observable<ChildEventBase<T>> attachListener()
     {
-        return Observable.create((ObservableEmitter<ChildEventBase<T>> emitter) ->
+        // Each subscriber deserializes its own copy of the item, since items are mutated by the UI layer after they are received.
+        return mListenerRegistry.subscribeChildEvents(mDbRef, mKey, mOperationDescription).map(event ->
         {
-            mListener = mDbRef.addChildEventListener(new ChildEventListener()
+            DataSnapshot dataSnapshot = event.Item;
+            T value = DbHelperImpl.getValueFromSnapshot(dataSnapshot, mClass);
+            ChildEventBase<T> result;
+            if (event instanceof AddedEvent)
             {
-                @Override
-                public void onChildAdded(DataSnapshot dataSnapshot, String s)
-                {
-                    logMsg("onChildAdded(%s): %s", mDbRef, dataSnapshot.getKey());
-                    T value = DbHelperImpl.getValueFromSnapshot(dataSnapshot, mClass);
-                    if (! emitter.isDisposed()) emitter.onNext(new AddedEvent<>(value));
-                    else logError("onChildAdded -- observable has been disposed, won't call onNext");
-                }
-
-                @Override
-                public void onChildChanged(DataSnapshot dataSnapshot, String s)
-                {
-                    T value = DbHelperImpl.getValueFromSnapshot(dataSnapshot, mClass);
-                    if (! emitter.isDisposed()) emitter.onNext(new UpdatedEvent<>(value));
-                    else logError("onChildChanged -- observable has been disposed, won't call onNext");
-                }
-
-                @Override
-                public void onChildRemoved(DataSnapshot dataSnapshot)
-                {
-                    T value = DbHelperImpl.getValueFromSnapshot(dataSnapshot, mClass);
-                    if (! emitter.isDisposed()) emitter.onNext(new DeletedEvent<>(value));
-                    else logError("onChildRemoved -- observable has been disposed, won't call onNext");
-                }
-
-                @Override
-                public void onChildMoved(DataSnapshot dataSnapshot, String s)
-                {
-                }
-
-                @Override
-                public void onCancelled(DatabaseError databaseError)
-                {
-                    if (!emitter.isDisposed())
-                    {
-                        emitter.onError(new DbOperationCanceledException(mDbRef, databaseError, mOperationDescription));
-                    }
-                    else
-                    {
-                        logError("onCancelled: observable has been disposed, won't invoke onError (ref=%s, error=%s)", mDbRef, databaseError);
-                    }
-                }
-            });
-        })
-        .doOnDispose(() ->
-        {
-            if (mListener != null)
+                logMsg("onChildAdded(%s): %s", mKey, dataSnapshot.getKey());
+                result = new AddedEvent<>(value);
+            }
+            else if (event instanceof UpdatedEvent)
+            {
+                result = new UpdatedEvent<>(value);
+            }
+            else
             {
-                logMsg("Shutting down ChildEventListener at %s", mDbRef);
-                mDbRef.removeEventListener(mListener);
+                result = new DeletedEvent<>(value);
             }
+            return result;
         });
     }
 }
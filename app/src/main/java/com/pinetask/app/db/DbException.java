@@ -15,7 +15,7 @@ public class DbException extends PineTaskException
     {
         Reference = reference;
         OperationDescription = operationDescription;
-        Message = String.format("Error in operation '%s' for node %s: %s", OperationDescription, Reference.toString(), message);
+        Message = String.format("Error in operation '%s' for node %s: %s", OperationDescription, String.valueOf(Reference), message);
     }
 
     @Override
@@ -9,8 +9,9 @@ import com.pinetask.app.list_items.PineTaskItemExt;
 import com.pinetask.app.main.InviteInfo;
 import com.pinetask.app.manage_lists.StartupMessage;
 
+import java.util.List;
+
 import io.reactivex.Completable;
-import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
@@ -63,12 +64,24 @@ public interface DbHelper
 
     Single<PineTaskListWithCollaborators> getPineTaskListWithCollaborators(PineTaskList list);
 
-    Observable<PineTaskList> subscribeListInfo(String listId);
+    Single<List<PineTaskListWithCollaborators>> getListSummaries(String userId);
+
+    Observable<ChildEventBase<PineTaskListWithCollaborators>> subscribeListSummaries(String userId);
 
     Single<Long> getChatMessageCount(String listId);
 
+    Single<Long> getListItemCount(String listId);
+
+    Completable repairListStats(String listId);
+
     Observable<ChildEventBase<ChatMessage>> subscribeChatMessages(String listId);
 
+    Observable<ChildEventBase<ChatMessage>> subscribeChatMessagesAfter(String listId, String startKey);
+
+    Single<List<ChatMessage>> getNewestChatMessages(String listId, int count);
+
+    Single<List<ChatMessage>> getChatMessagesBefore(String listId, String beforeKey, int count);
+
     void sendChatMessage(String listId, ChatMessage chatMessage);
 
     Completable renameList(String listId, String newName);
@@ -77,8 +90,12 @@ public interface DbHelper
 
     Observable<ChildEventBase<PineTaskItemExt>> subscribeListItems(String listId);
 
+    Single<List<PineTaskItemExt>> getListItems(String listId);
+
     void updateItem(PineTaskItemExt item, UserMessageListener userMessageListener);
 
+    void flushPendingWrites();
+
     void deleteItem(PineTaskItemExt item, UserMessageListener userMessageListener);
 
     Completable addPineTaskItem(PineTaskItemExt item);
@@ -91,15 +108,17 @@ public interface DbHelper
 
     Single<StartupMessage> getStartupMessage();
 
-    Maybe<StartupMessage> getStartupMessageIfUnread(String userId);
+    Observable<StartupMessage> subscribeStartupMessageIfNewer(int readVersion);
 
     Single<PineTaskList> acceptInvite(InviteInfo inviteInfo, String userId);
 
-    Completable purgeCompletedItems(String listId);
+    Single<BulkUpdateResult> purgeCompletedItems(String listId);
 
-    Completable uncompleteAllItems(String listId);
+    Single<BulkUpdateResult> uncompleteAllItems(String listId);
 
     void setShoppingTripForActiveList(String listId, boolean isActive);
 
+    DbMetrics getMetrics();
+
     Observable<Boolean> subscribeToShoppingTripActiveEventsForList(String listId);
 }
\ No newline at end of file
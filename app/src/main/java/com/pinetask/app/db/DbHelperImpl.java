@@ -7,14 +7,18 @@ import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
 import com.google.firebase.database.Query;
 import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
 import com.google.firebase.database.ValueEventListener;
 import com.pinetask.app.chat.ChatMessage;
 import com.pinetask.app.common.ChildEventBase;
+import com.pinetask.app.common.DeletedEvent;
 import com.pinetask.app.common.PineTaskInviteAlreadyUsedException;
 import com.pinetask.app.common.PineTaskList;
 import com.pinetask.app.common.PineTaskListWithCollaborators;
+import com.pinetask.app.common.PineTaskUtil;
 import com.pinetask.app.common.UserMessageListener;
 import com.pinetask.app.list_items.PineTaskItem;
 import com.pinetask.app.list_items.PineTaskItemExt;
@@ -22,24 +26,25 @@ import com.pinetask.app.main.InviteInfo;
 import com.pinetask.app.manage_lists.StartupMessage;
 import com.pinetask.app.common.Logger;
 
-import org.joda.time.DateTime;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Completable;
 import io.reactivex.CompletableEmitter;
 import io.reactivex.CompletableObserver;
-import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
-import io.reactivex.ObservableSource;
 import io.reactivex.Single;
 import io.reactivex.SingleEmitter;
 import io.reactivex.SingleOnSubscribe;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
 
 import static com.pinetask.app.db.KeyAddedOrDeletedObservable.subscribeKeyAddedOrDeletedEventsAt;
 
@@ -60,6 +65,21 @@ public class DbHelperImpl implements DbHelper
     /** Name of node in the Firebase DB where all chat messages are stored. **/
     private final String CHAT_MESSAGES_NODE_NAME = "chat_messages";
 
+    /** Name of node in the Firebase DB where denormalized per-list counters are stored (/list_stats/$listId). **/
+    private final String LIST_STATS_NODE_NAME = "list_stats";
+
+    /** Key name under /list_stats/$listId where the number of chat messages in the list is stored. **/
+    private final String CHAT_COUNT_KEY = "chat_count";
+
+    /** Key name under /list_stats/$listId where the number of items in the list is stored. **/
+    private final String ITEM_COUNT_KEY = "item_count";
+
+    /** Key name under /list_stats/$listId where the number of users with access to the list is stored. **/
+    private final String MEMBER_COUNT_STAT_KEY = "member_count";
+
+    /** Key name under /list_stats/$listId where the number of membership changes is stored.  Also copied into each list summary (see MEMBERS_VERSION_KEY). **/
+    private final String MEMBERS_VERSION_STAT_KEY = "members_version";
+
     /** Name of node in the Firebase DB where all users are stored  **/
     private static String USERS_NODE_NAME = "users";
 
@@ -81,6 +101,18 @@ public class DbHelperImpl implements DbHelper
     /** Name of node in the Firebase DB where lists accessible to a certain user are stored (/users/<userid>/lists) **/
     private final String LISTS_NODE_NAME = "lists";
 
+    /** Name of node in the Firebase DB where a summary of each list accessible to a certain user is stored (/users/$userId/list_summaries/$listId), so that
+     *  all of the user's lists can be loaded with a single read.  Each summary holds the list name, owner ID, and member count.  Kept up to date by the
+     *  operations which change them (createList, renameList, acceptInvite, revokeAccessToList, deleteList). **/
+    private final String LIST_SUMMARIES_NODE_NAME = "list_summaries";
+
+    /** Key name under /users/$userId/list_summaries/$listId where the number of users with access to the list is stored. **/
+    private final String MEMBER_COUNT_KEY = "memberCount";
+
+    /** Key name under /users/$userId/list_summaries/$listId where the members_version of the list at the time the summary was written is stored, so that a
+     *  summary computed from an older membership doesn't overwrite one computed from a newer membership. **/
+    private final String MEMBERS_VERSION_KEY = "membersVersion";
+
     /** Name of node where last access timestamp for each of a user's lists is stored (/users/$userId/lists/last_opened_at) **/
     private final String LAST_OPENED_AT_KEY = "last_opened_at";
 
@@ -105,14 +137,74 @@ public class DbHelperImpl implements DbHelper
     /** Key name under /list_items/<listid>/<itemid> which specifies if the item has been marked completed or not. **/
     private final String IS_COMPLETED_KEY_NAME = "isCompleted";
 
+    /** Key names under /list_items/<listid>/<itemid> for the other fields that can be changed after the item is created (createdAt never changes). **/
+    private final String ITEM_DESCRIPTION_KEY_NAME = "itemDescription";
+    private final String CLAIMED_BY_KEY_NAME = "claimedBy";
+    private final String COST_KEY_NAME = "cost";
+
+    /** Operation description under which item update latency and bytes written are recorded in the metrics. **/
+    public static final String UPDATE_ITEM_OPERATION = "update item";
+
+    /** Operation description under which list creation latency is recorded in the metrics. **/
+    public static final String CREATE_LIST_OPERATION = "create list";
+
+    /** Operation descriptions under which the metrics for node checks and removals are recorded: the node path is left out, so that all nodes share one entry. **/
+    private static final String CHECK_NODE_EXISTS_OPERATION = "check if node exists";
+    private static final String REMOVE_NODE_OPERATION = "remove node";
+    private static final String VERIFY_INVITE_OPERATION = "verify invite exists";
+
+    /** Default for the maximum number of paths written in a single updateChildren() call by bulk operations. **/
+    public static final int DEFAULT_MAX_UPDATES_PER_WRITE = 500;
+
     private FirebaseDatabase mDb;
 
+    /** Maximum number of paths written in a single updateChildren() call by bulk operations: larger operations are split into several writes. **/
+    private int mMaxUpdatesPerWrite = DEFAULT_MAX_UPDATES_PER_WRITE;
+    public void setMaxUpdatesPerWrite(int maxUpdatesPerWrite) { mMaxUpdatesPerWrite = maxUpdatesPerWrite; }
+
+    /** Shares a single Firebase listener between all subscribers to the same database location. **/
+    private SharedListenerRegistry mListenerRegistry = new SharedListenerRegistry();
+
+    /** Timing, outcome and payload size statistics for database operations. **/
+    private DbMetrics mMetrics = new DbMetrics();
+
+    /** Retry policy (backoff plus per-path circuit breaker) for long-lived child event subscriptions. **/
+    private RetryPolicy mRetryPolicy;
+    public RetryPolicy getRetryPolicy() { return mRetryPolicy; }
+
+    /** Last known server values of the mutable fields of each item (keyed by list ID, then item ID), so that updateItem() only needs to write the fields
+     *  that changed.  Populated from items read from the database, and from writes once they have been acknowledged.  A list's entries are dropped when
+     *  its item subscription is disposed (ex: the list is evicted from the repository cache, or the user logs out). **/
+    private final Map<String, Map<String, Map<String, Object>>> mLastKnownItemFields = new HashMap<>();
+
+    /** Default for the window within which successive updates to the same item are merged into a single write. **/
+    public static final long DEFAULT_ITEM_WRITE_WINDOW_MS = 500;
+
+    private long mItemWriteWindowMs = DEFAULT_ITEM_WRITE_WINDOW_MS;
+    public void setItemWriteWindowMs(long itemWriteWindowMs) { mItemWriteWindowMs = itemWriteWindowMs; }
+
+    /** Item updates waiting to be written, keyed by item ID (in the order first queued), and the timer that will write them. **/
+    private final Map<String, PendingItemWrite> mPendingItemWrites = new LinkedHashMap<>();
+    private Disposable mItemWriteTimer;
+
+    @Override
+    public DbMetrics getMetrics() { return mMetrics; }
+
     public DbHelperImpl()
     {
         logMsg("Creating DbHelper");
         mDb = FirebaseDatabase.getInstance();
         // Enable Firebase offline sync
         FirebaseDatabase.getInstance().setPersistenceEnabled(true);
+        mRetryPolicy = new RetryPolicy(subscribeConnectionState(), mMetrics);
+    }
+
+    /** Returns an Observable that emits true when the client is connected to the database server, and false when it isn't (from the special .info/connected
+     *  location, which emits the current state on subscription and then every time it changes). **/
+    private Observable<Boolean> subscribeConnectionState()
+    {
+        return mListenerRegistry.subscribeValueEvents(mDb.getReference(".info/connected"), "connection state")
+                .map(dataSnapshot -> Boolean.TRUE.equals(dataSnapshot.getValue(Boolean.class)));
     }
 
     /** Returns a refernce to /users/$userId **/
@@ -127,6 +219,16 @@ public class DbHelperImpl implements DbHelper
         return getUserRef(userId).child(LISTS_NODE_NAME);
     }
 
+    private DatabaseReference getUserListSummariesRef(String userId)
+    {
+        return getUserRef(userId).child(LIST_SUMMARIES_NODE_NAME);
+    }
+
+    private String getListSummaryPath(String userId, String listId)
+    {
+        return "/" + USERS_NODE_NAME + "/" + userId + "/" + LIST_SUMMARIES_NODE_NAME + "/" + listId;
+    }
+
     /** Returns a reference to /users/$userId/lists/$listId/last_opened_at **/
     private DatabaseReference getUserListLastOpenedTimestamp(String userId, String listId)
     {
@@ -181,6 +283,12 @@ public class DbHelperImpl implements DbHelper
         return mDb.getReference(LIST_ITEMS_NODE_NAME).child(listId);
     }
 
+    /** Returns a reference to /list_stats/$listId **/
+    private DatabaseReference getListStatsRef(String listId)
+    {
+        return mDb.getReference(LIST_STATS_NODE_NAME).child(listId);
+    }
+
     /** Returns a reference to /startup_message **/
     private DatabaseReference getStartupMessageRef()
     {
@@ -198,6 +306,7 @@ public class DbHelperImpl implements DbHelper
      *  /list_collaborators/$listId
      *  /list_items/$listId
      *  /chat_messages/$listId
+     *  /list_stats/$listId
      *  /list_info/$listId
      **/
     @Override
@@ -210,10 +319,12 @@ public class DbHelperImpl implements DbHelper
         updates.put("/" + LIST_COLLABORATORS_NODE_NAME + "/" + listId, null);
         updates.put("/" + LIST_ITEMS_NODE_NAME + "/" + listId, null);
         updates.put("/" + CHAT_MESSAGES_NODE_NAME + "/" + listId, null);
+        updates.put("/" + LIST_STATS_NODE_NAME + "/" + listId, null);
         updates.put("/" + LIST_INFO_NODE_NAME + "/" + listId, null);
 
+        // Summaries are only removed (not refreshed) for each member, since the list is going away.
         return getListCollaborators(listId)
-                .flatMapCompletable(userId -> revokeAccessToList(listId, userId))
+                .flatMapCompletable(userId -> removeAccessToList(listId, userId))
                 .andThen(updateChildren(mDb.getReference(), updates, "remove nodes related to list"));
     }
 
@@ -263,7 +374,7 @@ public class DbHelperImpl implements DbHelper
     @Override
     public Observable<String> getUserNameObservable(final String userId)
     {
-        return ObservableStringQuery.fromRef(getUserNameRef(userId), "get user name");
+        return recordTimeToFirstEvent(ObservableStringQuery.fromRef(mListenerRegistry, getUserNameRef(userId), "get user name"), "get user name");
     }
 
     /** Updates the username for the user specified. **/
@@ -312,14 +423,16 @@ public class DbHelperImpl implements DbHelper
     @Override
     public Observable<ChildEventBase<String>> getListAddedOrDeletedEvents(String userId)
     {
-        return subscribeKeyAddedOrDeletedEventsAt(getUserListsRef(userId), "get list added/deleted events");
+        return subscribeKeyAddedOrDeletedEventsAt(mListenerRegistry, getUserListsRef(userId), "get list added/deleted events");
     }
 
     /** Returns an Observable that will emit AddedEvent or DeletedEvent for member IDs of the list specified. **/
     @Override
     public Observable<ChildEventBase<String>> subscribeMembersAddedOrDeletedEvents(String listId)
     {
-        return subscribeKeyAddedOrDeletedEventsAt(getListCollaboratorsReference(listId), "get list members added/deleted events").retryWhen(rxDelayedRetry());
+        DatabaseReference ref = getListCollaboratorsReference(listId);
+        String operationDescription = "get list members added/deleted events";
+        return subscribeKeyAddedOrDeletedEventsAt(mListenerRegistry, ref, operationDescription).compose(mRetryPolicy.forPath(ref.toString(), operationDescription));
     }
 
     /** Returns a Single that, when subscribed to, will look up the name of the specified user in the database. **/
@@ -335,7 +448,12 @@ public class DbHelperImpl implements DbHelper
     {
         final DatabaseReference ref = FirebaseDatabase.getInstance().getReference(LIST_INVITES_NODE_NAME).child(listId).child(inviteId).child(INVITE_CREATED_AT_KEY);
         logMsg("Creating invite for list %s", listId);
-        ref.setValue(ServerValue.TIMESTAMP, (dbErr, errRef) -> logDbOperationResult("create invite", dbErr, errRef));
+        long startTime = System.currentTimeMillis();
+        ref.setValue(ServerValue.TIMESTAMP, (dbErr, errRef) ->
+        {
+            recordWriteResult("create invite", startTime, dbErr);
+            logDbOperationResult("create invite", dbErr, errRef);
+        });
     }
 
     /** Returns a Completable that, when subscribed to, checks if the invite for the specified list exists.  If it does, invokes onComplete().
@@ -346,6 +464,7 @@ public class DbHelperImpl implements DbHelper
         return Completable.create((final CompletableEmitter emitter) ->
         {
             logMsg("verifyInviteExists: %s", inviteInfo);
+            long startTime = System.currentTimeMillis();
             DatabaseReference ref = FirebaseDatabase.getInstance().getReference(LIST_INVITES_NODE_NAME).child(inviteInfo.ListId).child(inviteInfo.InviteId).child(INVITE_CREATED_AT_KEY);
             ref.addListenerForSingleValueEvent(new ValueEventListener()
             {
@@ -353,6 +472,7 @@ public class DbHelperImpl implements DbHelper
                 public void onDataChange(DataSnapshot dataSnapshot)
                 {
                     logMsg("verifyInviteExists: onDataChanged, value=%s", dataSnapshot.getValue());
+                    mMetrics.recordSuccess(VERIFY_INVITE_OPERATION, elapsedSince(startTime));
                     if (dataSnapshot.getValue() != null)
                     {
                         logMsg("verifyInviteExists/onDataChange: snapshot value non-null, calling onComplete");
@@ -369,7 +489,8 @@ public class DbHelperImpl implements DbHelper
                 public void onCancelled(DatabaseError databaseError)
                 {
                     logMsg("verifyInviteExists: onCancelled, error=%s", databaseError.getMessage());
-                    emitter.onError(new DbOperationCanceledException(ref, databaseError, "verify invite exists"));
+                    mMetrics.recordCancel(VERIFY_INVITE_OPERATION, elapsedSince(startTime));
+                    emitter.onError(new DbOperationCanceledException(ref, databaseError, VERIFY_INVITE_OPERATION));
                 }
             });
         });
@@ -404,17 +525,210 @@ public class DbHelperImpl implements DbHelper
         return setValueRx(ref, accessType, "add list to user's lists");
     }
 
-    /** Revokes access to the list specified for the userId specified.  On error, logs the error and raises a user message.
+    /** Updates the member count in the list summaries of the remaining members, and then revokes access to the list specified for the userId specified.
+     *  The summaries are refreshed first because the list info can no longer be read once a user has removed their own access.
      * The following nodes are deleted:
      *    /users/<userid>/lists/<listid>
+     *    /users/<userid>/list_summaries/<listid>
      *    /list_collaborators/<listid>/<userid>
      **/
     @Override
     public Completable revokeAccessToList(final String listId, final String userId)
+    {
+        return refreshListSummaries(listId, -1, userId).andThen(removeAccessToList(listId, userId));
+    }
+
+    /** Deletes the nodes giving the user access to the list (see revokeAccessToList), without updating the summaries of other members. **/
+    private Completable removeAccessToList(final String listId, final String userId)
     {
         DatabaseReference userListsRef = getUserListsRef(userId).child(listId);
+        DatabaseReference userListSummaryRef = getUserListSummariesRef(userId).child(listId);
         DatabaseReference collaboratorsRef = getListCollaboratorsReference(listId).child(userId);
-        return removeNode(userListsRef).andThen(removeNode(collaboratorsRef));
+        return removeNode(userListsRef).andThen(removeNode(userListSummaryRef)).andThen(removeNode(collaboratorsRef));
+    }
+
+    /** Adds the write of a list summary (/users/$userId/list_summaries/$listId) to the updates map provided. **/
+    private void putListSummary(Map<String, Object> updates, String userId, String listId, String name, String ownerId, int memberCount)
+    {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put(LIST_NAME_KEY, name);
+        summary.put(OWNER_ID_KEY, ownerId);
+        summary.put(MEMBER_COUNT_KEY, memberCount);
+        updates.put(getListSummaryPath(userId, listId), summary);
+    }
+
+    /** Returns a Completable that rewrites the summary of the list specified for each of its members (except excludedUserId, if not null), from the current
+     *  list info and collaborators.  The member count is adjusted by memberCountDelta in a transaction (see adjustMemberCount), so that two membership changes
+     *  made at the same time (ex: two invites accepted at once) can't both compute the same count.  Errors are logged rather than emitted: the summaries are a
+     *  denormalized copy, and failing to refresh them shouldn't fail the membership change they follow. **/
+    private Completable refreshListSummaries(String listId, int memberCountDelta, String excludedUserId)
+    {
+        return Single.zip(getPineTaskList(listId), getListCollaborators(listId).filter(memberId -> !memberId.equals(excludedUserId)).toList(),
+                (PineTaskList list, List<String> memberIds) -> adjustMemberCount(listId, memberCountDelta, memberIds.size())
+                        .flatMapCompletable(memberStats -> Observable.fromIterable(memberIds).flatMapCompletable(memberId -> writeListSummary(memberId, list, memberStats))))
+                .flatMapCompletable(task -> task)
+                .doOnError(ex ->
+                {
+                    logError("refreshListSummaries: error refreshing summaries of list %s", listId);
+                    logException(ex);
+                })
+                .onErrorComplete();
+    }
+
+    /** Member count and membership version of a list, as committed by adjustMemberCount. **/
+    private static class MemberStats
+    {
+        final long MemberCount;
+        final long MembersVersion;
+
+        MemberStats(long memberCount, long membersVersion)
+        {
+            MemberCount = memberCount;
+            MembersVersion = membersVersion;
+        }
+    }
+
+    /** Returns a Single that, in a transaction on /list_stats/$listId, adds delta to member_count and increments members_version, and emits the committed values.
+     *  If the list doesn't have a member count yet (created before it was maintained), it's initialized to currentMemberCount. **/
+    private Single<MemberStats> adjustMemberCount(String listId, int delta, int currentMemberCount)
+    {
+        String operationDescription = "adjust member count";
+        DatabaseReference statsRef = getListStatsRef(listId);
+        return Single.create(emitter ->
+        {
+            long startTime = System.currentTimeMillis();
+            statsRef.runTransaction(new Transaction.Handler()
+            {
+                @Override
+                public Transaction.Result doTransaction(MutableData mutableData)
+                {
+                    Long memberCount = mutableData.child(MEMBER_COUNT_STAT_KEY).getValue(Long.class);
+                    Long membersVersion = mutableData.child(MEMBERS_VERSION_STAT_KEY).getValue(Long.class);
+                    mutableData.child(MEMBER_COUNT_STAT_KEY).setValue(memberCount == null ? currentMemberCount : Math.max(0, memberCount + delta));
+                    mutableData.child(MEMBERS_VERSION_STAT_KEY).setValue(membersVersion == null ? 1 : membersVersion + 1);
+                    return Transaction.success(mutableData);
+                }
+
+                @Override
+                public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot dataSnapshot)
+                {
+                    recordWriteResult(operationDescription, startTime, databaseError);
+                    if (databaseError == null)
+                    {
+                        MemberStats memberStats = new MemberStats(dataSnapshot.child(MEMBER_COUNT_STAT_KEY).getValue(Long.class), dataSnapshot.child(MEMBERS_VERSION_STAT_KEY).getValue(Long.class));
+                        logMsg("adjustMemberCount: list %s now has %d members (version %d)", listId, memberStats.MemberCount, memberStats.MembersVersion);
+                        if (!emitter.isDisposed()) emitter.onSuccess(memberStats);
+                    }
+                    else
+                    {
+                        logDbError(operationDescription, databaseError, statsRef);
+                        if (!emitter.isDisposed()) emitter.onError(new DbOperationCanceledException(statsRef, databaseError, operationDescription));
+                    }
+                }
+            });
+        });
+    }
+
+    /** Returns a Completable that writes the summary of the list for the user specified, in a transaction which leaves the summary unchanged if it was
+     *  already written from the same or a newer members_version. **/
+    private Completable writeListSummary(String userId, PineTaskList list, MemberStats memberStats)
+    {
+        String operationDescription = "write list summary";
+        DatabaseReference summaryRef = getUserListSummariesRef(userId).child(list.getId());
+        return Completable.create(emitter ->
+        {
+            long startTime = System.currentTimeMillis();
+            summaryRef.runTransaction(new Transaction.Handler()
+            {
+                @Override
+                public Transaction.Result doTransaction(MutableData mutableData)
+                {
+                    Long writtenVersion = mutableData.child(MEMBERS_VERSION_KEY).getValue(Long.class);
+                    if (writtenVersion != null && writtenVersion >= memberStats.MembersVersion) return Transaction.abort();
+                    mutableData.child(LIST_NAME_KEY).setValue(list.getName());
+                    mutableData.child(OWNER_ID_KEY).setValue(list.getOwnerId());
+                    mutableData.child(MEMBER_COUNT_KEY).setValue(memberStats.MemberCount);
+                    mutableData.child(MEMBERS_VERSION_KEY).setValue(memberStats.MembersVersion);
+                    return Transaction.success(mutableData);
+                }
+
+                @Override
+                public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot dataSnapshot)
+                {
+                    recordWriteResult(operationDescription, startTime, databaseError);
+                    if (databaseError == null)
+                    {
+                        if (!emitter.isDisposed()) emitter.onComplete();
+                    }
+                    else
+                    {
+                        logDbError(operationDescription, databaseError, summaryRef);
+                        if (!emitter.isDisposed()) emitter.onError(new DbOperationCanceledException(summaryRef, databaseError, operationDescription));
+                    }
+                }
+            });
+        });
+    }
+
+    /** Returns a Single that emits all lists the user has access to, from their list summaries.  The user's node (/users/$userId) is loaded with a single read:
+     *  summaries are returned for each list under /users/$userId/lists.  Lists that don't have a summary yet (ie, added before summaries existed, or by an older
+     *  version of the app) are looked up individually, and their summaries are written so that later loads won't need to.  Summaries of lists that are no
+     *  longer under /lists are deleted. **/
+    @Override
+    public Single<List<PineTaskListWithCollaborators>> getListSummaries(String userId)
+    {
+        return getSnapshot(getUserRef(userId), "get list summaries").flatMap(userSnapshot ->
+        {
+            DataSnapshot listsSnapshot = userSnapshot.child(LISTS_NODE_NAME);
+            DataSnapshot summariesSnapshot = userSnapshot.child(LIST_SUMMARIES_NODE_NAME);
+            List<PineTaskListWithCollaborators> lists = new ArrayList<>();
+            List<String> missingListIds = new ArrayList<>();
+            List<String> orphanedListIds = new ArrayList<>();
+            for (DataSnapshot listSnapshot : listsSnapshot.getChildren())
+            {
+                DataSnapshot summarySnapshot = summariesSnapshot.child(listSnapshot.getKey());
+                if (summarySnapshot.exists()) lists.add(getValueFromSnapshot(summarySnapshot, PineTaskListWithCollaborators.class));
+                else missingListIds.add(listSnapshot.getKey());
+            }
+            for (DataSnapshot summarySnapshot : summariesSnapshot.getChildren())
+            {
+                if (!listsSnapshot.hasChild(summarySnapshot.getKey())) orphanedListIds.add(summarySnapshot.getKey());
+            }
+
+            if (missingListIds.isEmpty() && orphanedListIds.isEmpty()) return Single.just(lists);
+            logMsg("getListSummaries: %d summaries loaded, %d missing, %d orphaned", lists.size(), missingListIds.size(), orphanedListIds.size());
+            return backfillListSummaries(userId, missingListIds, orphanedListIds).map(backfilledLists ->
+            {
+                lists.addAll(backfilledLists);
+                return lists;
+            });
+        });
+    }
+
+    /** Migration for list summaries: reads the info and collaborators of each of the lists specified (skipping any that no longer exist), writes their
+     *  summaries for the user, and deletes the user's summaries of the orphaned lists specified.  Emits the lists that were found. **/
+    private Single<List<PineTaskListWithCollaborators>> backfillListSummaries(String userId, List<String> missingListIds, List<String> orphanedListIds)
+    {
+        return Observable.fromIterable(missingListIds)
+                .flatMap(this::tryGetPineTaskList)
+                .flatMapSingle(this::getPineTaskListWithCollaborators)
+                .toList()
+                .flatMap(lists ->
+                {
+                    Map<String, Object> updates = new HashMap<>();
+                    for (PineTaskListWithCollaborators list : lists) putListSummary(updates, userId, list.getId(), list.getName(), list.getOwnerId(), list.getMemberCount());
+                    for (String listId : orphanedListIds) updates.put(getListSummaryPath(userId, listId), null);
+                    return updateChildren(mDb.getReference(), updates, "backfill list summaries", false).toSingleDefault(lists);
+                });
+    }
+
+    /** Returns an observable that emits added/updated/deleted events for the summaries of the lists that the user has access to. **/
+    @Override
+    public Observable<ChildEventBase<PineTaskListWithCollaborators>> subscribeListSummaries(String userId)
+    {
+        DatabaseReference ref = getUserListSummariesRef(userId);
+        ChildEventObservable<PineTaskListWithCollaborators> o = new ChildEventObservable<>(mListenerRegistry, PineTaskListWithCollaborators.class, ref, ref.toString(), "subscribe to list summaries");
+        return o.attachListener().compose(mRetryPolicy.forPath(ref.toString(), "subscribe to list summaries"));
     }
 
     /** General purpose Completable wrapper to set the value at a specified location in the database. Starts async request and then Completes immediately. **/
@@ -431,8 +745,10 @@ public class DbHelperImpl implements DbHelper
         return Completable.create((CompletableEmitter emitter) ->
         {
             logMsg("setValue(%s) to '%s'", ref, value);
+            long startTime = System.currentTimeMillis();
             ref.setValue(value, (DatabaseError databaseError, DatabaseReference databaseReference) ->
             {
+                recordWriteResult(operationDescription, startTime, databaseError);
                 if (databaseError != null)
                 {
                     logDbOperationResult(operationDescription, databaseError, ref);
@@ -452,8 +768,10 @@ public class DbHelperImpl implements DbHelper
     public void setValue(final DatabaseReference ref, final Object value, final String operationDescription)
     {
         logMsg("setValue(%s) to '%s'", ref, value);
+        long startTime = System.currentTimeMillis();
         ref.setValue(value, (DatabaseError databaseError, DatabaseReference databaseReference) ->
         {
+            recordWriteResult(operationDescription, startTime, databaseError);
             if (databaseError != null)
             {
                 logDbOperationResult(operationDescription, databaseError, ref);
@@ -465,15 +783,18 @@ public class DbHelperImpl implements DbHelper
         });
     }
 
-    /** Add a new list.  The following nodes are created:
-     *    /list_info/$listId
+    /** Add a new list.  The following nodes are created in a single atomic multi-path write:
      *    /list_info/$listId/name
      *    /list_info/$listId/ownerId
-     *    /users/$listId/lists/$listId = "owner"
+     *    /users/$userId/lists/$listId = "owner"
+     *    /users/$userId/list_summaries/$listId = { name, ownerId, memberCount = 1 }
      *    /list_collaborators/$listId/$userId = "owner"
      *    /list_items/$listId = "0"
      *    /chat_messages/$listId = "0"
-     *    /list_collaborators/$listId = "0"
+     *    /list_stats/$listId/item_count = 0
+     *    /list_stats/$listId/chat_count = 0
+     *    /list_stats/$listId/member_count = 1
+     * The time until the server confirms the write is recorded in the metrics under CREATE_LIST_OPERATION.
      * NOTE: The nodes which are set to "0" must be created this way because Firebase won't allow creation of an empty node.  However, if we don't create the node with
      *       some initial value, then after attaching a listener to that location subsequently it will block until it receives a value from the server.  This creates a problem
      *       if the list is initially created and then opened when there was no network connection.  Creating these empty nodes allows offline operation when the list is first added.
@@ -482,19 +803,22 @@ public class DbHelperImpl implements DbHelper
     public Completable createList(final String ownerId, String listName)
     {
         Logger.logMsg(DbHelper.class, "Adding new list '%s' with owner %s", listName, ownerId);
-        PineTaskList newList = new PineTaskList(null, listName, ownerId);
-        DatabaseReference listInfoRef = FirebaseDatabase.getInstance().getReference(LIST_INFO_NODE_NAME).push();
-        String listId = listInfoRef.getKey();
-        final DatabaseReference collaboratorsRef = getListCollaboratorsReference(listId);
+        String listId = mDb.getReference(LIST_INFO_NODE_NAME).push().getKey();
 
-        Map<String,String> collaboratorsMap = new HashMap<>();
-        collaboratorsMap.put(ownerId, OWNER);
+        Map<String,Object> updates = new HashMap<>();
+        updates.put("/" + LIST_INFO_NODE_NAME + "/" + listId + "/" + LIST_NAME_KEY, listName);
+        updates.put("/" + LIST_INFO_NODE_NAME + "/" + listId + "/" + OWNER_ID_KEY, ownerId);
+        updates.put("/" + USERS_NODE_NAME + "/" + ownerId + "/" + LISTS_NODE_NAME + "/" + listId, OWNER);
+        putListSummary(updates, ownerId, listId, listName, ownerId, 1);
+        updates.put("/" + LIST_COLLABORATORS_NODE_NAME + "/" + listId + "/" + ownerId, OWNER);
+        updates.put("/" + LIST_ITEMS_NODE_NAME + "/" + listId, 0);
+        updates.put("/" + CHAT_MESSAGES_NODE_NAME + "/" + listId, 0);
+        updates.put("/" + LIST_STATS_NODE_NAME + "/" + listId + "/" + ITEM_COUNT_KEY, 0);
+        updates.put("/" + LIST_STATS_NODE_NAME + "/" + listId + "/" + CHAT_COUNT_KEY, 0);
+        updates.put("/" + LIST_STATS_NODE_NAME + "/" + listId + "/" + MEMBER_COUNT_STAT_KEY, 1);
 
-        return setValueRx(listInfoRef, newList, "create list info node")
-                .andThen(addListToUserLists(listId, ownerId, OWNER))
-                .andThen(setValueRx(collaboratorsRef, collaboratorsMap, "add owner as collaborator"))
-                .andThen(setValueRx(getListItemsRef(listId), 0, "create list items node"))
-                .andThen(setValueRx(getChatMessagesRef(listId), 0, "create chat messages node"));
+        // Don't wait for the server to confirm the write, so that creating a list works offline.
+        return updateChildren(mDb.getReference(), updates, CREATE_LIST_OPERATION, false);
     }
 
     /** Returns a single that will emit the populated PineTaskList object for the list ID provided. **/
@@ -523,49 +847,174 @@ public class DbHelperImpl implements DbHelper
         return getListCollaborators(list.getId()).toList().map(collaboratorIds -> new PineTaskListWithCollaborators(list, collaboratorIds));
     }
 
-    /** Returns an Observable that will emit any changes to the PineTaskList with the ID provided.  Caller must dispose Observable when no longer needed. **/
+    /** Returns a Single that emits the count of chat messages in the list specified, read from /list_stats/$listId/chat_count. **/
     @Override
-    public Observable<PineTaskList> subscribeListInfo(String listId)
+    public Single<Long> getChatMessageCount(String listId)
     {
-        return subscribeValueEvents(PineTaskList.class, getListInfoReference(listId), null, "subscribe to list info");
+        return getCounter(getListStatsRef(listId).child(CHAT_COUNT_KEY), getChatMessagesRef(listId));
     }
 
-    /** Returns a Single that emits the count of chat messages in the list specified. **/
+    /** Returns a Single that emits the count of items in the list specified, read from /list_stats/$listId/item_count. **/
     @Override
-    public Single<Long> getChatMessageCount(String listId)
+    public Single<Long> getListItemCount(String listId)
+    {
+        return getCounter(getListStatsRef(listId).child(ITEM_COUNT_KEY), getListItemsRef(listId));
+    }
+
+    /** Recomputes the counters under /list_stats/$listId by counting the list's items and chat messages. **/
+    @Override
+    public Completable repairListStats(String listId)
+    {
+        logMsg("Repairing list stats for list %s", listId);
+        return repairCounter(getListStatsRef(listId).child(ITEM_COUNT_KEY), getListItemsRef(listId)).toCompletable()
+                .andThen(repairCounter(getListStatsRef(listId).child(CHAT_COUNT_KEY), getChatMessagesRef(listId)).toCompletable());
+    }
+
+    /** Reads the counter at counterRef.  If the counter doesn't exist yet (list created before counters were maintained), it is repaired first. **/
+    private Single<Long> getCounter(DatabaseReference counterRef, DatabaseReference countedRef)
+    {
+        return getItem(Long.class, counterRef, "get counter " + counterRef.getKey(), -1L)
+                .flatMap(count -> count >= 0 ? Single.just(count) : repairCounter(counterRef, countedRef));
+    }
+
+    /** Counts the children at countedRef and writes the result to counterRef.  The counter is written in a transaction, like the adjustments made by
+     *  adjustCounter(), so that the two don't overwrite each other's pending values. **/
+    private Single<Long> repairCounter(DatabaseReference counterRef, DatabaseReference countedRef)
+    {
+        return getNodeCount(countedRef)
+                .doOnSuccess(count -> logMsg("repairCounter: setting %s to %d", counterRef, count))
+                .flatMap(count -> setCounter(counterRef, count).toSingleDefault(count));
+    }
+
+    /** Returns a Completable that sets the counter at the reference specified to the value provided, in a transaction. **/
+    private Completable setCounter(DatabaseReference counterRef, long count)
+    {
+        String operationDescription = "repair counter " + counterRef.getKey();
+        return Completable.create(emitter ->
+        {
+            long startTime = System.currentTimeMillis();
+            counterRef.runTransaction(new Transaction.Handler()
+            {
+                @Override
+                public Transaction.Result doTransaction(MutableData mutableData)
+                {
+                    Long currentCount = mutableData.getValue(Long.class);
+                    if (currentCount != null && currentCount == count) return Transaction.abort();
+                    mutableData.setValue(count);
+                    return Transaction.success(mutableData);
+                }
+
+                @Override
+                public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot dataSnapshot)
+                {
+                    recordWriteResult(operationDescription, startTime, databaseError);
+                    if (databaseError == null)
+                    {
+                        if (!emitter.isDisposed()) emitter.onComplete();
+                    }
+                    else
+                    {
+                        logDbError(operationDescription, databaseError, counterRef);
+                        if (!emitter.isDisposed()) emitter.onError(new DbOperationCanceledException(counterRef, databaseError, operationDescription));
+                    }
+                }
+            });
+        });
+    }
+
+    /** Starts a transaction to add delta to the counter at the reference specified, and returns immediately.  The counter never goes below zero.
+     *  If the counter doesn't exist on the server it is left missing, so that it will be repaired (rather than started from zero) when it's next read. **/
+    private void adjustCounter(DatabaseReference counterRef, long delta)
     {
-        return getNodeCount(getChatMessagesRef(listId));
+        long startTime = System.currentTimeMillis();
+        counterRef.runTransaction(new Transaction.Handler()
+        {
+            @Override
+            public Transaction.Result doTransaction(MutableData mutableData)
+            {
+                // Note: the first call may be made with a null local value before the server value is known.  Leaving the value null in that
+                // case is safe: if the server has a value the transaction is retried with it.
+                Long count = mutableData.getValue(Long.class);
+                if (count != null) mutableData.setValue(Math.max(0, count + delta));
+                return Transaction.success(mutableData);
+            }
+
+            @Override
+            public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot dataSnapshot)
+            {
+                String operationDescription = "adjust counter " + counterRef.getKey();
+                recordWriteResult(operationDescription, startTime, databaseError);
+                if (databaseError != null) logDbError(operationDescription, databaseError, counterRef);
+            }
+        });
     }
 
     /** Returns an observable that emits added/deleted events for chat messages in the list specified. **/
     @Override
     public Observable<ChildEventBase<ChatMessage>> subscribeChatMessages(String listId)
     {
-        ChildEventObservable<ChatMessage> o = new ChildEventObservable(ChatMessage.class, getChatMessagesRef(listId), "subscribe to chat messages");
-        return o.attachListener().retryWhen(rxDelayedRetry());
+        return subscribeChatMessagesAfter(listId, null);
+    }
+
+    /** Returns an observable that emits added/deleted events for chat messages in the list specified, starting with the message with the key provided (inclusive).
+     *  If startKey is null, events for all messages are emitted. **/
+    @Override
+    public Observable<ChildEventBase<ChatMessage>> subscribeChatMessagesAfter(String listId, String startKey)
+    {
+        DatabaseReference ref = getChatMessagesRef(listId);
+        Query query = (startKey == null) ? ref : ref.orderByKey().startAt(startKey);
+        String key = (startKey == null) ? ref.toString() : ref.toString() + "?startAt=" + startKey;
+        ChildEventObservable<ChatMessage> o = new ChildEventObservable<>(mListenerRegistry, ChatMessage.class, query, key, "subscribe to chat messages");
+        return recordTimeToFirstEvent(o.attachListener(), "subscribe to chat messages").compose(mRetryPolicy.forPath(key, "subscribe to chat messages"));
+    }
+
+    /** Returns a Single that emits the newest chat messages in the list specified (up to the count provided), oldest first.  Push keys are chronological,
+     *  so ordering by key orders by time sent. **/
+    @Override
+    public Single<List<ChatMessage>> getNewestChatMessages(String listId, int count)
+    {
+        Query query = getChatMessagesRef(listId).orderByKey().limitToLast(count);
+        return getItemsOfType(ChatMessage.class, query, "get newest chat messages").toList();
+    }
+
+    /** Returns a Single that emits the chat messages sent before the message with the key provided (up to the count provided), oldest first. **/
+    @Override
+    public Single<List<ChatMessage>> getChatMessagesBefore(String listId, String beforeKey, int count)
+    {
+        // endAt() is inclusive, so request one extra message and then drop the one with beforeKey.
+        Query query = getChatMessagesRef(listId).orderByKey().endAt(beforeKey).limitToLast(count + 1);
+        return getItemsOfType(ChatMessage.class, query, "get older chat messages")
+                .filter(chatMessage -> !beforeKey.equals(chatMessage.getId()))
+                .toList();
     }
 
     @Override
     public void sendChatMessage(String listId, ChatMessage chatMessage)
     {
         DatabaseReference dbRef = getChatMessagesRef(listId);
-        dbRef.push().setValue(chatMessage);
+        long startTime = System.currentTimeMillis();
+        dbRef.push().setValue(chatMessage, (DatabaseError databaseError, DatabaseReference databaseReference) ->
+        {
+            recordWriteResult("send chat message", startTime, databaseError);
+            if (databaseError == null) adjustCounter(getListStatsRef(listId).child(CHAT_COUNT_KEY), 1);
+            else logDbError("send chat message", databaseError, dbRef);
+        });
     }
 
-    /** Rename the specified list **/
+    /** Rename the specified list, and then update the name in the list summary of each member. **/
     @Override
     public Completable renameList(String listId, String newName)
     {
-        return setValueRx(getListNameReference(listId), newName, "rename list");
+        return setValueRx(getListNameReference(listId), newName, "rename list").andThen(refreshListSummaries(listId, 0, null));
     }
 
-    /** Returns the timestamp of the last PineTaskItem in the specified list, or 0 if it contains no items. **/
+    /** Returns the timestamp of the last PineTaskItem in the specified list, or 0 if it contains no items.  Only the last item is downloaded. **/
     @Override
     public Single<Long> getLastListItemTimestamp(String listId)
     {
-        Query dbRef = getListItemsRef(listId).orderByChild("createdAt");
+        Query dbRef = getListItemsRef(listId).orderByChild("createdAt").limitToLast(1);
         logMsg("getLastListItemTimestamp starting, listId=%s, dbRef=%s", listId, dbRef);
-        return getItemsOfType(PineTaskItemExt.class, dbRef)
+        return getItemsOfType(PineTaskItemExt.class, dbRef, "get last list item timestamp")
                 .doOnNext(item -> logMsg("getLastListItemTimestamp: query returned item %s", item.getId()))
                 .last(new PineTaskItemExt())
                 .doOnSuccess(item -> logMsg("getLastListItemTimestamp: last item is %s", item.getId()))
@@ -576,38 +1025,271 @@ public class DbHelperImpl implements DbHelper
     @Override
     public Observable<ChildEventBase<PineTaskItemExt>> subscribeListItems(String listId)
     {
-        ChildEventObservable<PineTaskItemExt> o = new ChildEventObservable<>(PineTaskItemExt.class, getListItemsRef(listId), "subscribe to list items");
-        return o.attachListener()
+        DatabaseReference ref = getListItemsRef(listId);
+        ChildEventObservable<PineTaskItemExt> o = new ChildEventObservable<>(mListenerRegistry, PineTaskItemExt.class, ref, ref.toString(), "subscribe to list items");
+        return recordTimeToFirstEvent(o.attachListener(), "subscribe to list items")
+                .doOnNext(event ->
+                {
+                    if (event instanceof DeletedEvent) forgetItemFields(listId, event.Item.getId());
+                    else rememberItemFields(listId, getItemFields(event.Item), event.Item.getId());
+                })
                 .doOnSubscribe(__ -> logMsg("subscribeListItems: subscription has been created to list %s", listId))
-                .retryWhen(rxDelayedRetry());
+                .compose(mRetryPolicy.forPath(ref.toString(), "subscribe to list items"))
+                .doOnDispose(() -> forgetListItemFields(listId));
     }
 
-    /** Helper function for use with retryWhen(): retry subscription up to 3 times with increasing delay (1 second, 4 seconds, 6 seconds) **/
-    private Function<Observable<Throwable>, ObservableSource<?>> rxDelayedRetry()
+    /** Returns a Single that reads all items in the list specified as a single snapshot.  The items are deserialized on the computation scheduler,
+     *  so the Single emits off the main thread. **/
+    @Override
+    public Single<List<PineTaskItemExt>> getListItems(String listId)
     {
-        return attempts -> attempts.zipWith(Observable.range(1, 3), (n, i) -> i)
-                .flatMap(i ->
+        return getSnapshot(getListItemsRef(listId), "get list items")
+                .observeOn(Schedulers.computation())
+                .map(dataSnapshot ->
                 {
-                    logMsg("subscribeListItems: error, will retry subscription after delay of %d seconds", i*2);
-                    return Observable.timer(i*2, TimeUnit.SECONDS);
+                    List<PineTaskItemExt> items = new ArrayList<>((int) dataSnapshot.getChildrenCount());
+                    for (DataSnapshot child : dataSnapshot.getChildren()) items.add(getValueFromSnapshot(child, PineTaskItemExt.class));
+                    for (PineTaskItemExt item : items) rememberItemFields(listId, getItemFields(item), item.getId());
+                    return items;
                 });
     }
 
-    /** Make async call to update PineTaskItem in the database.  If error occurs, it will be logged and shown to the user. **/
+    /** Queue an update of the PineTaskItem in the database.  The fields that the caller changed (compared to the last known server state) are captured now,
+     *  merged into any pending write for the item, and written after a short window (mItemWriteWindowMs), so that several changes to the same item in quick
+     *  succession (ex: claim, complete, then enter cost) are merged into one write.  Only changed fields are captured, so that a collaborator's change to
+     *  another field during the window isn't overwritten.  Pending writes are written immediately by flushPendingWrites().  If error occurs, it will be
+     *  logged and shown to the user. **/
     @Override
     public void updateItem(PineTaskItemExt item, UserMessageListener userMessageListener)
     {
-        DatabaseReference dbRef = getListItemsRef(item.getListId()).child(item.getId());
-        Completable task = setValueRx(dbRef, item, "update item");
-        subscribeAndReportError(task, userMessageListener);
+        synchronized (mPendingItemWrites)
+        {
+            PendingItemWrite pendingWrite = mPendingItemWrites.get(item.getId());
+            Map<String, Object> changedFields = getChangedItemFields(item, pendingWrite);
+            if (changedFields.isEmpty())
+            {
+                logMsg("updateItem: no fields of item %s have changed, skipping write", item.getId());
+                return;
+            }
+
+            if (pendingWrite == null)
+            {
+                pendingWrite = new PendingItemWrite(item.getListId(), item.getId(), userMessageListener);
+                mPendingItemWrites.put(item.getId(), pendingWrite);
+            }
+            else
+            {
+                logMsg("updateItem: merging %s into pending write of item %s", changedFields.keySet(), item.getId());
+            }
+            pendingWrite.Fields.putAll(changedFields);
+
+            if (mItemWriteTimer == null)
+            {
+                mItemWriteTimer = Completable.timer(mItemWriteWindowMs, TimeUnit.MILLISECONDS).subscribe(this::flushPendingWrites);
+            }
+        }
+    }
+
+    /** Write all pending item updates now (called when the item write window expires, and on shutdown / list switch). **/
+    @Override
+    public void flushPendingWrites()
+    {
+        List<PendingItemWrite> pendingWrites;
+        synchronized (mPendingItemWrites)
+        {
+            if (mItemWriteTimer != null)
+            {
+                mItemWriteTimer.dispose();
+                mItemWriteTimer = null;
+            }
+            pendingWrites = new ArrayList<>(mPendingItemWrites.values());
+            mPendingItemWrites.clear();
+        }
+        for (PendingItemWrite pendingWrite : pendingWrites) writeItemFields(pendingWrite);
+    }
+
+    /** Discards any pending write for the item specified (ex: because it is being deleted). **/
+    private void cancelPendingWrite(String itemId)
+    {
+        synchronized (mPendingItemWrites)
+        {
+            if (mPendingItemWrites.remove(itemId) != null) logMsg("Cancelled pending write for item %s", itemId);
+        }
+    }
+
+    /** Returns the fields of the item that differ from its last known server state (all mutable fields if the item hasn't been seen before), plus the
+     *  fields already in its pending write (so that changing a field back to its server value still replaces the pending value).  createdAt is never
+     *  included. **/
+    private Map<String, Object> getChangedItemFields(PineTaskItemExt item, PendingItemWrite pendingWrite)
+    {
+        Map<String, Object> changedFields = new HashMap<>();
+        synchronized (mLastKnownItemFields)
+        {
+            Map<String, Object> lastKnownFields = getLastKnownItemFields(item.getListId(), item.getId());
+            for (Map.Entry<String, Object> field : getItemFields(item).entrySet())
+            {
+                boolean isPending = (pendingWrite != null) && pendingWrite.Fields.containsKey(field.getKey());
+                boolean isUnchanged = (lastKnownFields != null) && lastKnownFields.containsKey(field.getKey())
+                        && PineTaskUtil.equalsOrNull(field.getValue(), lastKnownFields.get(field.getKey()));
+                if (isPending || !isUnchanged) changedFields.put(field.getKey(), field.getValue());
+            }
+        }
+        return changedFields;
+    }
+
+    /** Writes the changed fields captured by updateItem().  The last known fields are only updated once the server has acknowledged the write, so that a
+     *  rejected write (ex: permission denied) isn't mistaken for the server state, which would cause the next update to the same values to be skipped. **/
+    private void writeItemFields(PendingItemWrite pendingWrite)
+    {
+        Map<String, Object> updates = pendingWrite.Fields;
+        int bytesWritten = estimateJsonSize(updates);
+        logMsg("updateItem: writing %s for item %s (%d bytes)", updates.keySet(), pendingWrite.ItemId, bytesWritten);
+        mMetrics.recordBytesWritten(UPDATE_ITEM_OPERATION, bytesWritten);
+        DatabaseReference dbRef = getListItemsRef(pendingWrite.ListId).child(pendingWrite.ItemId);
+        Completable task = updateChildren(dbRef, updates, UPDATE_ITEM_OPERATION)
+                .doOnComplete(() -> rememberItemFields(pendingWrite.ListId, updates, pendingWrite.ItemId));
+        subscribeAndReportError(task, pendingWrite.UserMessageListener);
+    }
+
+    /** Changed field values of an item captured by updateItem(), waiting to be written. **/
+    private static class PendingItemWrite
+    {
+        final String ListId;
+        final String ItemId;
+        final Map<String, Object> Fields = new HashMap<>();
+        final UserMessageListener UserMessageListener;
+
+        PendingItemWrite(String listId, String itemId, UserMessageListener userMessageListener)
+        {
+            ListId = listId;
+            ItemId = itemId;
+            UserMessageListener = userMessageListener;
+        }
+    }
+
+    /** Returns the fields of the item that can change after it has been created, keyed by their names in the database. **/
+    private Map<String, Object> getItemFields(PineTaskItemExt item)
+    {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(ITEM_DESCRIPTION_KEY_NAME, item.getItemDescription());
+        fields.put(CLAIMED_BY_KEY_NAME, item.getClaimedBy());
+        fields.put(IS_COMPLETED_KEY_NAME, item.getIsCompleted());
+        fields.put(COST_KEY_NAME, item.getCost());
+        return fields;
+    }
+
+    /** Returns the last known fields of the item, or null if it hasn't been seen.  Caller must synchronize on mLastKnownItemFields. **/
+    private Map<String, Object> getLastKnownItemFields(String listId, String itemId)
+    {
+        Map<String, Map<String, Object>> listItemFields = mLastKnownItemFields.get(listId);
+        return (listItemFields == null) ? null : listItemFields.get(itemId);
+    }
+
+    /** Merges the fields provided into the last known fields of the item. **/
+    private void rememberItemFields(String listId, Map<String, Object> fields, String itemId)
+    {
+        if (listId == null || itemId == null) return;
+        synchronized (mLastKnownItemFields)
+        {
+            Map<String, Map<String, Object>> listItemFields = mLastKnownItemFields.get(listId);
+            if (listItemFields == null)
+            {
+                listItemFields = new HashMap<>();
+                mLastKnownItemFields.put(listId, listItemFields);
+            }
+            Map<String, Object> lastKnownFields = listItemFields.get(itemId);
+            if (lastKnownFields == null)
+            {
+                lastKnownFields = new HashMap<>();
+                listItemFields.put(itemId, lastKnownFields);
+            }
+            lastKnownFields.putAll(fields);
+        }
     }
 
-    /** Start async operation to delete the PineTaskItem in the list specified. If error occurs, log it and show to the user by calling userMessageListener. **/
+    private void forgetItemFields(String listId, String itemId)
+    {
+        synchronized (mLastKnownItemFields)
+        {
+            Map<String, Map<String, Object>> listItemFields = mLastKnownItemFields.get(listId);
+            if (listItemFields != null) listItemFields.remove(itemId);
+        }
+    }
+
+    private void forgetListItemFields(String listId)
+    {
+        synchronized (mLastKnownItemFields)
+        {
+            mLastKnownItemFields.remove(listId);
+        }
+    }
+
+    /** Returns the approximate size in bytes of the JSON that will be sent for the updates specified. **/
+    private int estimateJsonSize(Map<String, Object> updates)
+    {
+        int size = 2;
+        for (Map.Entry<String, Object> entry : updates.entrySet())
+        {
+            Object value = entry.getValue();
+            size += entry.getKey().length() + 4;
+            size += (value instanceof String) ? ((String) value).length() + 2 : String.valueOf(value).length();
+        }
+        return size;
+    }
+
+    /** Start async operation to delete the PineTaskItem in the list specified. If error occurs, log it and show to the user by calling userMessageListener.
+     *  The item is removed in a transaction, and the item counter is decremented only if the item still existed on the server, so that an item deleted
+     *  by two members at once is only counted once.  Unlike removeValue(), the transaction isn't queued while offline: the delete fails instead. **/
     @Override
     public void deleteItem(PineTaskItemExt item, UserMessageListener userMessageListener)
     {
         DatabaseReference dbRef = getListItemsRef(item.getListId()).child(item.getId());
-        subscribeAndReportError(removeNode(dbRef), userMessageListener);
+        cancelPendingWrite(item.getId());
+        forgetItemFields(item.getListId(), item.getId());
+        Completable task = removeNodeIfExists(dbRef, "delete item").flatMapCompletable(existed ->
+        {
+            if (existed) adjustCounter(getListStatsRef(item.getListId()).child(ITEM_COUNT_KEY), -1);
+            else logMsg("deleteItem: item %s was already deleted", item.getId());
+            return Completable.complete();
+        });
+        subscribeAndReportError(task, userMessageListener);
+    }
+
+    /** Returns a Single that removes the node at the reference specified in a transaction, and emits true if the node existed on the server when it was
+     *  removed (or false if it had already been removed). **/
+    private Single<Boolean> removeNodeIfExists(DatabaseReference dbRef, String operationDescription)
+    {
+        return Single.create(emitter ->
+        {
+            long startTime = System.currentTimeMillis();
+            // Set on each run of the transaction: the last run is made with the server's value.
+            ObjectWrapper<Boolean> existed = new ObjectWrapper<>(false);
+            dbRef.runTransaction(new Transaction.Handler()
+            {
+                @Override
+                public Transaction.Result doTransaction(MutableData mutableData)
+                {
+                    existed.Item = (mutableData.getValue() != null);
+                    mutableData.setValue(null);
+                    return Transaction.success(mutableData);
+                }
+
+                @Override
+                public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot dataSnapshot)
+                {
+                    recordWriteResult(operationDescription, startTime, databaseError);
+                    if (databaseError == null)
+                    {
+                        if (!emitter.isDisposed()) emitter.onSuccess(committed && existed.Item);
+                    }
+                    else
+                    {
+                        logDbError(operationDescription, databaseError, dbRef);
+                        if (!emitter.isDisposed()) emitter.onError(new DbOperationCanceledException(dbRef, databaseError, operationDescription));
+                    }
+                }
+            });
+        });
     }
 
     /** Make async request to add the item to the list specified. If any error occurs it will be logged. **/
@@ -616,7 +1298,13 @@ public class DbHelperImpl implements DbHelper
     {
         DatabaseReference dbRef = getListItemsRef(item.getListId()).push();
         item.setId(dbRef.getKey());
-        return setValueRx(dbRef, item, "add PineTaskItem", true);
+        Map<String, Object> fields = getItemFields(item);
+        return setValueRx(dbRef, item, "add PineTaskItem", true)
+                .doOnComplete(() ->
+                {
+                    rememberItemFields(item.getListId(), fields, item.getId());
+                    adjustCounter(getListStatsRef(item.getListId()).child(ITEM_COUNT_KEY), 1);
+                });
     }
 
     /** Subscribe to the Completable provided.  If an error occurs, log the exception and then show the exception message to the user using the UserMessageListener provided. **/
@@ -664,12 +1352,14 @@ public class DbHelperImpl implements DbHelper
         return Observable.create((ObservableEmitter<String> emitter) ->
         {
             logMsg("Getting keys at %s", ref);
+            long startTime = System.currentTimeMillis();
             ref.addListenerForSingleValueEvent(new ValueEventListener()
             {
                 @Override
                 public void onDataChange(DataSnapshot dataSnapshot)
                 {
                     logMsg("Got %d keys at %s", dataSnapshot.getChildrenCount(), ref);
+                    recordReadSuccess(operationDescription, startTime, dataSnapshot);
                     for (DataSnapshot child : dataSnapshot.getChildren())
                     {
                         emitter.onNext(child.getKey());
@@ -680,6 +1370,7 @@ public class DbHelperImpl implements DbHelper
                 @Override
                 public void onCancelled(DatabaseError databaseError)
                 {
+                    mMetrics.recordCancel(operationDescription, elapsedSince(startTime));
                     logDbOperationResult("Get keys at " + ref, databaseError, ref);
                     emitter.onError(new DbOperationCanceledException(ref, databaseError, operationDescription));
                 }
@@ -700,11 +1391,13 @@ public class DbHelperImpl implements DbHelper
             @Override
             public void subscribe(SingleEmitter<Boolean> emitter) throws Exception
             {
+                long startTime = System.currentTimeMillis();
                 ref.addListenerForSingleValueEvent(new ValueEventListener()
                 {
                     @Override
                     public void onDataChange(DataSnapshot dataSnapshot)
                     {
+                        mMetrics.recordSuccess(CHECK_NODE_EXISTS_OPERATION, elapsedSince(startTime));
                         if (dataSnapshot.getValue()!=null) emitter.onSuccess(true);
                         else emitter.onSuccess(false);
                     }
@@ -712,7 +1405,8 @@ public class DbHelperImpl implements DbHelper
                     @Override
                     public void onCancelled(DatabaseError databaseError)
                     {
-                        emitter.onError(new DbOperationCanceledException(ref, databaseError, "check if node exists: " + ref));
+                        mMetrics.recordCancel(CHECK_NODE_EXISTS_OPERATION, elapsedSince(startTime));
+                        emitter.onError(new DbOperationCanceledException(ref, databaseError, CHECK_NODE_EXISTS_OPERATION + ": " + ref));
                     }
                 });
             }
@@ -720,18 +1414,20 @@ public class DbHelperImpl implements DbHelper
     }
 
     /** Returns a single that emits the count of child nodes at the database reference specified.
-     *  TODO: using dataSnapshot.getChildrenCount() is a rather expensive operation, as it retrieves all data including sub-nodes in order to count it client side.
-     *       Revisit this code if Firebase adds a more efficient method to query for this, such as support for the "shallow" argument.
+     *  NOTE: using dataSnapshot.getChildrenCount() is a rather expensive operation, as it retrieves all data including sub-nodes in order to count it client side.
+     *       It's only used to repair the counters under /list_stats, which are what should normally be read.
      *       See: https://stackoverflow.com/questions/41590730/firebase-shallow-query-parameter-for-android **/
     public Single<Long> getNodeCount(DatabaseReference dbRef)
     {
         return Single.create(emitter ->
         {
+            long startTime = System.currentTimeMillis();
             dbRef.addListenerForSingleValueEvent(new ValueEventListener()
             {
                 @Override
                 public void onDataChange(DataSnapshot dataSnapshot)
                 {
+                    recordReadSuccess("get node count", startTime, dataSnapshot);
                     long childCount = dataSnapshot.getChildrenCount();
                     emitter.onSuccess(childCount);
                 }
@@ -739,6 +1435,7 @@ public class DbHelperImpl implements DbHelper
                 @Override
                 public void onCancelled(DatabaseError databaseError)
                 {
+                    mMetrics.recordCancel("get node count", elapsedSince(startTime));
                     logDbError("get node count", databaseError, dbRef);
                     emitter.onError(new DbOperationCanceledException(dbRef, databaseError, "get node count"));
                 }
@@ -746,6 +1443,32 @@ public class DbHelperImpl implements DbHelper
         });
     }
 
+    /** Returns a Single that emits the raw snapshot at the specified database location. **/
+    public Single<DataSnapshot> getSnapshot(final Query ref, final String operationDescription)
+    {
+        return Single.create(emitter ->
+        {
+            logMsg("getSnapshot(%s) making request", ref);
+            long startTime = System.currentTimeMillis();
+            ref.addListenerForSingleValueEvent(new ValueEventListener()
+            {
+                @Override
+                public void onDataChange(DataSnapshot dataSnapshot)
+                {
+                    recordReadSuccess(operationDescription, startTime, dataSnapshot);
+                    if (!emitter.isDisposed()) emitter.onSuccess(dataSnapshot);
+                }
+
+                @Override
+                public void onCancelled(DatabaseError databaseError)
+                {
+                    mMetrics.recordCancel(operationDescription, elapsedSince(startTime));
+                    if (!emitter.isDisposed()) emitter.onError(new DbOperationCanceledException(ref, databaseError, operationDescription));
+                }
+            });
+        });
+    }
+
     /** Returns a Single that emits the object at the specified database location, deserialized based on the objClass provided.
      *  If the value is null, error is emitted.
      **/
@@ -757,6 +1480,7 @@ public class DbHelperImpl implements DbHelper
             public void subscribe(final SingleEmitter<T> emitter) throws Exception
             {
                 logMsg("getItem(%s) making request", ref);
+                long startTime = System.currentTimeMillis();
                 ref.addListenerForSingleValueEvent(new ValueEventListener()
                 {
                     @Override
@@ -768,14 +1492,17 @@ public class DbHelperImpl implements DbHelper
                             logMsg("getItem(%s) onDataChange: %s", ref, obj);
                             if (obj != null)
                             {
+                                recordReadSuccess(operationDescription, startTime, dataSnapshot);
                                 emitter.onSuccess((T) obj);
                             } else if (defaultValue != null)
                             {
                                 // Return value was null but default value was provided: return defaultValue
+                                recordReadSuccess(operationDescription, startTime, dataSnapshot);
                                 emitter.onSuccess(defaultValue);
                             } else
                             {
                                 // Return value was null, and no default value -- error -- rxJava2 does not allow emitting null values.
+                                mMetrics.recordError(operationDescription, elapsedSince(startTime));
                                 emitter.onError(new DbException(ref, operationDescription, "Value is null"));
                             }
                         }
@@ -785,6 +1512,7 @@ public class DbHelperImpl implements DbHelper
                     public void onCancelled(DatabaseError databaseError)
                     {
                         logMsg("getItem(%s) onCancelled", ref);
+                        mMetrics.recordCancel(operationDescription, elapsedSince(startTime));
                         if (!emitter.isDisposed()) emitter.onError(new DbOperationCanceledException(ref, databaseError, operationDescription));
                     }
                 });
@@ -793,63 +1521,53 @@ public class DbHelperImpl implements DbHelper
     }
 
     /** Returns an Observable that emits the object at the specified database location, deserialized based on the type provided.
-     *  Continues to emit items via onNext() whenever data at dbRef changes.  When the Observable is disposed, the ValueEventListener is disconnected.
+     *  Continues to emit items via onNext() whenever data at dbRef changes.  The ValueEventListener is shared with other subscribers to the same location,
+     *  and is disconnected when the last subscriber is disposed.
      **/
     public <T> Observable<T> subscribeValueEvents(Class<T> cl, final DatabaseReference ref, T defaultValue, final String operationDescription)
     {
-        ObjectWrapper<ValueEventListener> eventListenerWrapper = new ObjectWrapper<>();
-        ObjectWrapper<Boolean> dataReturnedWrapper = new ObjectWrapper<>(false);
-        return Observable.create((ObservableEmitter<T> emitter) ->
+        return Observable.defer(() ->
         {
-            eventListenerWrapper.Item = ref.addValueEventListener(new ValueEventListener()
-            {
-                @Override
-                public void onDataChange(DataSnapshot dataSnapshot)
-                {
-                    if (emitter.isDisposed()) return;
-                    T obj = getValueFromSnapshot(dataSnapshot, cl);
-                    if (obj == null)
+            ObjectWrapper<Boolean> dataReturnedWrapper = new ObjectWrapper<>(false);
+            return recordTimeToFirstEvent(mListenerRegistry.subscribeValueEvents(ref, operationDescription), operationDescription)
+                    .concatMap(dataSnapshot ->
                     {
-                        if (defaultValue != null)
+                        T obj = getValueFromSnapshot(dataSnapshot, cl);
+                        if (obj == null)
                         {
-                            logMsg("onDataChange: null value at %s, returning default value '%s'", ref, defaultValue);
-                            emitter.onNext(defaultValue);
+                            if (defaultValue != null)
+                            {
+                                logMsg("onDataChange: null value at %s, returning default value '%s'", ref, defaultValue);
+                                return Observable.just(defaultValue);
+                            }
+                            else
+                            {
+                                logMsg("onDataChange: null value at %s, but no default value provided", ref);
+                                return Observable.<T>empty();
+                            }
                         }
                         else
                         {
-                            logMsg("onDataChange: null value at %s, but no default value provided", ref);
+                            logMsg("subscribeValueEvents(%s): onNext", ref);
+                            dataReturnedWrapper.Item = true;
+                            return Observable.just(obj);
                         }
-                    }
-                    else
+                    })
+                    .onErrorResumeNext((Throwable ex) ->
                     {
-                        logMsg("subscribeValueEvents(%s): onNext", ref);
-                        emitter.onNext((T) obj);
-                        dataReturnedWrapper.Item=true;
-                    }
-                }
-
-                @Override
-                public void onCancelled(DatabaseError databaseError)
-                {
-                    if (emitter.isDisposed()) return;
-                    // Workaround issue where onCancelled will get called when addValueEventListener was created while offline (ex: create a list offline; ListLoader calls getPineTaskList()).
-                    // Check if onDataChange() has previously been called successfully, and if so, just log the error and call onComplete.
-                    if (dataReturnedWrapper.Item)
-                    {
-                        logError("Error in subscribeValueEvents(%s), but dataReturned=true. Error=%s", ref, databaseError);
-                        emitter.onComplete();
-                    }
-                    else
-                    {
-                        emitter.onError(new DbOperationCanceledException(ref, databaseError, operationDescription));
-                    }
-                }
-            });
-        })
-                .doOnDispose(() ->
-                {
-                    if (eventListenerWrapper.Item != null) ref.removeEventListener(eventListenerWrapper.Item);
-                });
+                        // Workaround issue where onCancelled will get called when addValueEventListener was created while offline (ex: create a list offline; ListLoader calls getPineTaskList()).
+                        // Check if onDataChange() has previously been called successfully, and if so, just log the error and call onComplete.
+                        if (dataReturnedWrapper.Item)
+                        {
+                            logError("Error in subscribeValueEvents(%s), but dataReturned=true. Error=%s", ref, ex.getMessage());
+                            return Observable.<T>empty();
+                        }
+                        else
+                        {
+                            return Observable.<T>error(ex);
+                        }
+                    });
+        });
     }
 
     public class ObjectWrapper<T>
@@ -859,13 +1577,88 @@ public class DbHelperImpl implements DbHelper
         public ObjectWrapper(T item) { Item = item; }
     }
 
+    private long elapsedSince(long startTime)
+    {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    /** Records a successful read in the metrics, including the number of child nodes returned. **/
+    private void recordReadSuccess(String operationDescription, long startTime, DataSnapshot dataSnapshot)
+    {
+        mMetrics.recordSuccess(operationDescription, elapsedSince(startTime));
+        mMetrics.recordChildCount(operationDescription, dataSnapshot.getChildrenCount());
+    }
+
+    /** Records the outcome of a write in the metrics, based on the error (if any) passed to its completion callback. **/
+    private void recordWriteResult(String operationDescription, long startTime, DatabaseError databaseError)
+    {
+        if (databaseError == null) mMetrics.recordSuccess(operationDescription, elapsedSince(startTime));
+        else mMetrics.recordCancel(operationDescription, elapsedSince(startTime));
+    }
+
+    /** Records the time from subscription until the source emits its first item (or fails without emitting anything) in the metrics for the operation specified.
+     *  Later items are not timed, as they are caused by changes made after the subscription was created. **/
+    private <T> Observable<T> recordTimeToFirstEvent(Observable<T> source, String operationDescription)
+    {
+        return Observable.defer(() ->
+        {
+            long startTime = System.currentTimeMillis();
+            ObjectWrapper<Boolean> recordedWrapper = new ObjectWrapper<>(false);
+            return source
+                    .doOnNext(__ ->
+                    {
+                        if (recordedWrapper.Item) return;
+                        recordedWrapper.Item = true;
+                        mMetrics.recordSuccess(operationDescription, elapsedSince(startTime));
+                    })
+                    .doOnError(ex ->
+                    {
+                        if (recordedWrapper.Item) return;
+                        recordedWrapper.Item = true;
+                        if (ex instanceof DbOperationCanceledException) mMetrics.recordCancel(operationDescription, elapsedSince(startTime));
+                        else mMetrics.recordError(operationDescription, elapsedSince(startTime));
+                    });
+        });
+    }
+
+    /** Returns a Completable that will perform updateChildren() on the database reference provided, using the values in the updates map.
+     *  If waitForCompletion is true, onComplete is only called after the updateChildren() completed callback occurs.
+     *  If waitForCompletion if false, onComplete is called immediately after updateChildren() is called.
+     *  In both cases the time until the completed callback occurs is recorded in the metrics for the operation. **/
+    public Completable updateChildren(DatabaseReference ref, Map updates, String operationDescription, boolean waitForCompletion)
+    {
+        return Completable.create((CompletableEmitter emitter) ->
+        {
+            long startTime = System.currentTimeMillis();
+            ref.updateChildren(updates, (DatabaseError databaseError, DatabaseReference databaseReference) ->
+            {
+                if (databaseError == null)
+                {
+                    long latencyMs = System.currentTimeMillis() - startTime;
+                    logMsg("%s: updateChildren(%s) completed in %d ms", operationDescription, ref, latencyMs);
+                    mMetrics.recordSuccess(operationDescription, latencyMs);
+                    if (waitForCompletion && !emitter.isDisposed()) emitter.onComplete();
+                }
+                else
+                {
+                    mMetrics.recordCancel(operationDescription, System.currentTimeMillis() - startTime);
+                    logDbOperationResult(operationDescription, databaseError, ref);
+                    if (!emitter.isDisposed()) emitter.onError(new DbOperationCanceledException(ref, databaseError, operationDescription));
+                }
+            });
+            if (!waitForCompletion && !emitter.isDisposed()) emitter.onComplete();
+        });
+    }
+
     /** Returns a Completable that will perform updateChildren() on the database reference provided, using the values in the updates map. **/
     public Completable updateChildren(DatabaseReference ref, Map updates, String operationDescription)
     {
         return Completable.create((CompletableEmitter emitter) ->
         {
+            long startTime = System.currentTimeMillis();
             ref.updateChildren(updates, (DatabaseError databaseError, DatabaseReference databaseReference) ->
             {
+                recordWriteResult(operationDescription, startTime, databaseError);
                 if (databaseError==null) emitter.onComplete();
                 else emitter.onError(new DbOperationCanceledException(ref, databaseError, operationDescription));
             });
@@ -878,8 +1671,10 @@ public class DbHelperImpl implements DbHelper
         return Completable.create(emitter ->
         {
             logMsg("Removing node %s", dbRef);
+            long startTime = System.currentTimeMillis();
             dbRef.removeValue((DatabaseError databaseError, DatabaseReference databaseReference) ->
             {
+                recordWriteResult(REMOVE_NODE_OPERATION, startTime, databaseError);
                 if (databaseError == null)
                 {
                     logMsg("Successfully removed node %s", dbRef);
@@ -896,14 +1691,23 @@ public class DbHelperImpl implements DbHelper
 
     /** Enumerate items at the specified database reference, and return each one deserialized as an item of the class specified. **/
     public <T> Observable<T> getItemsOfType(Class<T> cl, Query dbRef)
+    {
+        return getItemsOfType(cl, dbRef, "get items of type " + cl.getSimpleName());
+    }
+
+    /** Enumerate items at the specified database reference, and return each one deserialized as an item of the class specified.
+     *  The metrics are recorded under the operation description provided. **/
+    public <T> Observable<T> getItemsOfType(Class<T> cl, Query dbRef, String operationDescription)
     {
         return Observable.create(emitter ->
         {
+            long startTime = System.currentTimeMillis();
             dbRef.addListenerForSingleValueEvent(new ValueEventListener()
             {
                 @Override
                 public void onDataChange(DataSnapshot dataSnapshot)
                 {
+                    recordReadSuccess(operationDescription, startTime, dataSnapshot);
                     for (DataSnapshot ds : dataSnapshot.getChildren())
                     {
                         T item = getValueFromSnapshot(ds, cl);
@@ -915,7 +1719,8 @@ public class DbHelperImpl implements DbHelper
                 @Override
                 public void onCancelled(DatabaseError databaseError)
                 {
-                    if (!emitter.isDisposed()) emitter.onError(new DbOperationCanceledException(dbRef, databaseError, "get item"));
+                    mMetrics.recordCancel(operationDescription, elapsedSince(startTime));
+                    if (!emitter.isDisposed()) emitter.onError(new DbOperationCanceledException(dbRef, databaseError, operationDescription));
                 }
             });
         });
@@ -962,16 +1767,18 @@ public class DbHelperImpl implements DbHelper
     public Single<StartupMessage> getStartupMessage()
     {
         Single<StartupMessage> source = getItem(StartupMessage.class, getStartupMessageRef(), "get startup message");
-        return source.doOnSuccess(s -> { getStartupMessageRef().keepSynced(false); logMsg("getStartupMessage: %s", s); });
+        return source.doOnSuccess(s -> logMsg("getStartupMessage: %s", s));
     }
 
-    /** Emits the startup message to be read by the user, unless the user has already read the most recent version of the message. **/
+    /** Emits the startup message whenever its version is newer than the version specified (the last version read by the user).  A listener is kept attached
+     *  rather than doing a single read: with persistence enabled, the first value can be a stale copy from the offline cache (keepSynced doesn't change that),
+     *  so the message is emitted again when the server's version arrives.  Each version is only emitted once. **/
     @Override
-    public Maybe<StartupMessage> getStartupMessageIfUnread(String userId)
+    public Observable<StartupMessage> subscribeStartupMessageIfNewer(int readVersion)
     {
-        DatabaseReference refreshRef = getStartupMessageRef().child("refresh");
-        return getStartupMessage().delay(1, TimeUnit.SECONDS).toCompletable().andThen(setValueRx(refreshRef, DateTime.now().getMillis(), "startup message refresh workaround", true))
-                .andThen(getUserStartupMessageVersion(userId)).flatMapMaybe(userVersion -> getStartupMessage().filter(startupMessage -> startupMessage.version>userVersion));
+        return subscribeValueEvents(StartupMessage.class, getStartupMessageRef(), null, "subscribe to startup message")
+                .filter(startupMessage -> startupMessage.version > readVersion)
+                .distinctUntilChanged(startupMessage -> startupMessage.version);
     }
 
     /** Accepts an invitation that was received to grant the current user access to the shared list by doing the following:
@@ -988,31 +1795,58 @@ public class DbHelperImpl implements DbHelper
                 .andThen(addUserAsCollaboratorToList(inviteInfo, userId))
                 .andThen(deleteInvite(inviteInfo))
                 .andThen(addListToUserLists(inviteInfo.ListId, userId, WRITE))
+                .andThen(refreshListSummaries(inviteInfo.ListId, 1, null))
                 .andThen(getPineTaskList(inviteInfo.ListId));
     }
 
-    /** Delete all completed items in the list with the ID specified. **/
+    /** Delete all completed items in the list with the ID specified, using a single multi-path write (/$itemId = null for each item). **/
     @Override
-    public Completable purgeCompletedItems(String listId)
+    public Single<BulkUpdateResult> purgeCompletedItems(String listId)
     {
-        logMsg("Purging completed items from list %s", listId);
-        DatabaseReference listItemsRef = FirebaseDatabase.getInstance().getReference(LIST_ITEMS_NODE_NAME).child(listId);
+        DatabaseReference listItemsRef = getListItemsRef(listId);
         Query query = listItemsRef.orderByChild(IS_COMPLETED_KEY_NAME).equalTo(true);
-        return getKeysAt(query, "get list items to purge").flatMapCompletable(itemId -> removeNode(listItemsRef.child(itemId)));
+        return bulkUpdateKeysAt(query, listItemsRef, itemId -> "/" + itemId, null, "purge completed items")
+                .doOnSuccess(result -> adjustCounter(getListStatsRef(listId).child(ITEM_COUNT_KEY), -result.ItemCount));
     }
 
-    /** Uncomplete all completed items in the list with the ID specified. **/
+    /** Uncomplete all completed items in the list with the ID specified, using a single multi-path write (/$itemId/isCompleted = false for each item). **/
     @Override
-    public Completable uncompleteAllItems(String listId)
+    public Single<BulkUpdateResult> uncompleteAllItems(String listId)
     {
-        logMsg("Uncompleting all items from list %s", listId);
-        DatabaseReference listItemsRef = FirebaseDatabase.getInstance().getReference(LIST_ITEMS_NODE_NAME).child(listId);
+        DatabaseReference listItemsRef = getListItemsRef(listId);
         Query query = listItemsRef.orderByChild(IS_COMPLETED_KEY_NAME).equalTo(true);
-        return getKeysAt(query, "get list items to uncomplete").flatMapCompletable(itemId -> {
-            DatabaseReference isCompletedRef = listItemsRef.child(itemId).child(IS_COMPLETED_KEY_NAME);
-            logMsg(" - Setting to false: %s", isCompletedRef);
-            return setValueRx(isCompletedRef, false, "uncomplete item " + itemId);
-        });
+        return bulkUpdateKeysAt(query, listItemsRef, itemId -> "/" + itemId + "/" + IS_COMPLETED_KEY_NAME, false, "uncomplete all items");
+    }
+
+    /** Looks up the keys matching the query, and then sets the path returned by pathForKey (relative to ref) to the value provided for each of them.
+     *  All paths are written in one atomic updateChildren() call, unless there are more than mMaxUpdatesPerWrite of them, in which case they are split
+     *  into several writes performed one after another. **/
+    private Single<BulkUpdateResult> bulkUpdateKeysAt(Query query, DatabaseReference ref, Function<String, String> pathForKey, Object value, String operationDescription)
+    {
+        return Single.defer(() ->
+        {
+            long startTime = System.currentTimeMillis();
+            logMsg("%s: starting (%s)", operationDescription, ref);
+            return getKeysAt(query, operationDescription).toList().flatMap(keys ->
+            {
+                List<Map<String,Object>> chunks = new ArrayList<>();
+                Map<String,Object> updates = null;
+                for (String key : keys)
+                {
+                    if (updates == null || updates.size() >= mMaxUpdatesPerWrite)
+                    {
+                        updates = new HashMap<>();
+                        chunks.add(updates);
+                    }
+                    updates.put(pathForKey.apply(key), value);
+                }
+                logMsg("%s: updating %d items in %d writes", operationDescription, keys.size(), chunks.size());
+                return Observable.fromIterable(chunks)
+                        .concatMap(chunk -> updateChildren(ref, chunk, operationDescription).toObservable())
+                        .ignoreElements()
+                        .toSingle(() -> new BulkUpdateResult(keys.size(), chunks.size(), System.currentTimeMillis() - startTime));
+            });
+        }).doOnSuccess(result -> logMsg("%s: completed (%s)", operationDescription, result));
     }
 
     public static <T> T getValueFromSnapshot(DataSnapshot dataSnapshot, Class<T> cl)
@@ -0,0 +1,297 @@
+package com.pinetask.app.db;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Collects timing, outcome and size statistics for database operations, keyed by operation description (ex: "create list"). **/
+public class DbMetrics
+{
+    /** Upper bounds (inclusive) of the latency histogram buckets, in milliseconds.  Latencies above the last bound go in an extra overflow bucket. **/
+    public static final long[] LATENCY_BUCKET_BOUNDS_MS = { 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+    /** Statistics for a single operation type. **/
+    public static class OperationStats
+    {
+        public String OperationDescription;
+
+        /** Number of completed operations (the number of latencies recorded). **/
+        public int Count;
+
+        /** Number of operations that completed successfully. **/
+        public int SuccessCount;
+
+        /** Number of operations that were cancelled or rejected by the server (onCancelled, or a write completing with a DatabaseError). **/
+        public int CancelCount;
+
+        /** Number of operations that got a response from the server, but failed for another reason (ex: a required value was null). **/
+        public int ErrorCount;
+
+        /** Number of completed operations in each latency range (see LATENCY_BUCKET_BOUNDS_MS). **/
+        public int[] LatencyHistogram = new int[LATENCY_BUCKET_BOUNDS_MS.length + 1];
+
+        /** Sum of the latencies of all completed operations, in milliseconds. **/
+        public long TotalLatencyMs;
+
+        /** Latency of the slowest operation, in milliseconds. **/
+        public long MaxLatencyMs;
+
+        /** Latency of the most recent operation, in milliseconds. **/
+        public long LastLatencyMs;
+
+        /** Number of writes for which the size was recorded. **/
+        public int WriteCount;
+
+        /** Approximate total size of the data sent by all writes, in bytes. **/
+        public long BytesWritten;
+
+        /** Number of reads for which the number of child nodes returned was recorded. **/
+        public int ReadCount;
+
+        /** Total number of child nodes returned by all reads. **/
+        public long TotalChildCount;
+
+        /** Largest number of child nodes returned by a single read. **/
+        public long MaxChildCount;
+
+        public OperationStats(String operationDescription)
+        {
+            OperationDescription = operationDescription;
+        }
+
+        public OperationStats(OperationStats other)
+        {
+            OperationDescription = other.OperationDescription;
+            Count = other.Count;
+            SuccessCount = other.SuccessCount;
+            CancelCount = other.CancelCount;
+            ErrorCount = other.ErrorCount;
+            LatencyHistogram = other.LatencyHistogram.clone();
+            TotalLatencyMs = other.TotalLatencyMs;
+            MaxLatencyMs = other.MaxLatencyMs;
+            LastLatencyMs = other.LastLatencyMs;
+            WriteCount = other.WriteCount;
+            BytesWritten = other.BytesWritten;
+            ReadCount = other.ReadCount;
+            TotalChildCount = other.TotalChildCount;
+            MaxChildCount = other.MaxChildCount;
+        }
+
+        public long getAverageLatencyMs()
+        {
+            return Count == 0 ? 0 : TotalLatencyMs / Count;
+        }
+
+        public long getAverageBytesWritten()
+        {
+            return WriteCount == 0 ? 0 : BytesWritten / WriteCount;
+        }
+
+        public long getAverageChildCount()
+        {
+            return ReadCount == 0 ? 0 : TotalChildCount / ReadCount;
+        }
+
+        /** Returns an estimate of the latency percentile specified (ex: 95): the upper bound of the histogram bucket it falls in, or MaxLatencyMs if it
+         *  falls in the overflow bucket. **/
+        public long getLatencyPercentileMs(int percentile)
+        {
+            if (Count == 0) return 0;
+            long threshold = ((long) Count * percentile + 99) / 100;
+            long cumulative = 0;
+            for (int i = 0; i < LATENCY_BUCKET_BOUNDS_MS.length; i++)
+            {
+                cumulative += LatencyHistogram[i];
+                if (cumulative >= threshold) return Math.min(LATENCY_BUCKET_BOUNDS_MS[i], MaxLatencyMs);
+            }
+            return MaxLatencyMs;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s: count=%d (ok %d, cancelled %d, error %d), avg=%dms, p50=%dms, p95=%dms, max=%dms, last=%dms, total=%dms, reads=%d, children=%d (avg %d, max %d), writes=%d, bytes=%d (avg %d)",
+                    OperationDescription, Count, SuccessCount, CancelCount, ErrorCount, getAverageLatencyMs(), getLatencyPercentileMs(50), getLatencyPercentileMs(95), MaxLatencyMs,
+                    LastLatencyMs, TotalLatencyMs, ReadCount, TotalChildCount, getAverageChildCount(), MaxChildCount, WriteCount, BytesWritten, getAverageBytesWritten());
+        }
+
+        /** Returns the histogram as a single line, ex: "<=10ms: 4, <=25ms: 12, >10000ms: 1".  Empty buckets are omitted. **/
+        public String getHistogramString()
+        {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < LatencyHistogram.length; i++)
+            {
+                if (LatencyHistogram[i] == 0) continue;
+                if (sb.length() > 0) sb.append(", ");
+                if (i < LATENCY_BUCKET_BOUNDS_MS.length) sb.append("<=").append(LATENCY_BUCKET_BOUNDS_MS[i]).append("ms: ");
+                else sb.append(">").append(LATENCY_BUCKET_BOUNDS_MS[LATENCY_BUCKET_BOUNDS_MS.length - 1]).append("ms: ");
+                sb.append(LatencyHistogram[i]);
+            }
+            return sb.toString();
+        }
+    }
+
+    /** Orders operations by the total time spent waiting for them, longest first. **/
+    public static final Comparator<OperationStats> TOTAL_LATENCY_COMPARATOR = (OperationStats lhs, OperationStats rhs) ->
+    {
+        if (lhs.TotalLatencyMs != rhs.TotalLatencyMs) return lhs.TotalLatencyMs > rhs.TotalLatencyMs ? -1 : 1;
+        return lhs.OperationDescription.compareTo(rhs.OperationDescription);
+    };
+
+    /** Returns the index of the histogram bucket for the latency specified. **/
+    static int getLatencyBucket(long latencyMs)
+    {
+        for (int i = 0; i < LATENCY_BUCKET_BOUNDS_MS.length; i++)
+        {
+            if (latencyMs <= LATENCY_BUCKET_BOUNDS_MS[i]) return i;
+        }
+        return LATENCY_BUCKET_BOUNDS_MS.length;
+    }
+
+    private final Map<String, OperationStats> mStats = new HashMap<>();
+
+    /** Event counters that aren't tied to the latency of an operation (ex: subscription retries), keyed by name. **/
+    private final Map<String, Long> mCounters = new HashMap<>();
+
+    /** Records the time between an operation being started and the server confirming it. **/
+    public synchronized void recordLatency(String operationDescription, long latencyMs)
+    {
+        OperationStats stats = getOrCreateStats(operationDescription);
+        stats.Count++;
+        stats.TotalLatencyMs += latencyMs;
+        stats.LastLatencyMs = latencyMs;
+        if (latencyMs > stats.MaxLatencyMs) stats.MaxLatencyMs = latencyMs;
+        stats.LatencyHistogram[getLatencyBucket(latencyMs)]++;
+    }
+
+    /** Records an operation that completed successfully, along with the time between it being started and the callback occurring. **/
+    public synchronized void recordSuccess(String operationDescription, long latencyMs)
+    {
+        recordLatency(operationDescription, latencyMs);
+        getOrCreateStats(operationDescription).SuccessCount++;
+    }
+
+    /** Records an operation that was cancelled or rejected by the server, along with the time until the callback occurred. **/
+    public synchronized void recordCancel(String operationDescription, long latencyMs)
+    {
+        recordLatency(operationDescription, latencyMs);
+        getOrCreateStats(operationDescription).CancelCount++;
+    }
+
+    /** Records an operation that got a response, but failed for another reason, along with the time until the callback occurred. **/
+    public synchronized void recordError(String operationDescription, long latencyMs)
+    {
+        recordLatency(operationDescription, latencyMs);
+        getOrCreateStats(operationDescription).ErrorCount++;
+    }
+
+    /** Records the number of child nodes returned by a read (an indication of the size of the payload downloaded). **/
+    public synchronized void recordChildCount(String operationDescription, long childCount)
+    {
+        OperationStats stats = getOrCreateStats(operationDescription);
+        stats.ReadCount++;
+        stats.TotalChildCount += childCount;
+        if (childCount > stats.MaxChildCount) stats.MaxChildCount = childCount;
+    }
+
+    /** Records the (approximate) number of bytes sent by a write. **/
+    public synchronized void recordBytesWritten(String operationDescription, long bytes)
+    {
+        OperationStats stats = getOrCreateStats(operationDescription);
+        stats.WriteCount++;
+        stats.BytesWritten += bytes;
+    }
+
+    /** Adds one to the counter with the name specified. **/
+    public synchronized void incrementCounter(String counterName)
+    {
+        mCounters.put(counterName, getCounter(counterName) + 1);
+    }
+
+    /** Returns the value of the counter with the name specified (zero if it hasn't been incremented yet). **/
+    public synchronized long getCounter(String counterName)
+    {
+        Long count = mCounters.get(counterName);
+        return count == null ? 0 : count;
+    }
+
+    /** Returns a copy of the statistics for the operation specified (all zero if it hasn't been recorded yet). **/
+    public synchronized OperationStats getStats(String operationDescription)
+    {
+        OperationStats stats = mStats.get(operationDescription);
+        return stats == null ? new OperationStats(operationDescription) : new OperationStats(stats);
+    }
+
+    /** Returns a copy of the statistics for all operations recorded so far. **/
+    public synchronized List<OperationStats> getAllStats()
+    {
+        List<OperationStats> result = new ArrayList<>();
+        for (OperationStats stats : mStats.values()) result.add(new OperationStats(stats));
+        return result;
+    }
+
+    /** Discards all statistics recorded so far. **/
+    public synchronized void reset()
+    {
+        mStats.clear();
+        mCounters.clear();
+    }
+
+    /** Returns a text report of all operations recorded so far, ordered by the total time spent waiting for them (so the operations that dominate
+     *  startup and list switching come first), followed by the counters in alphabetical order. **/
+    public synchronized String dump()
+    {
+        List<OperationStats> allStats = getAllStats();
+        Collections.sort(allStats, TOTAL_LATENCY_COMPARATOR);
+        StringBuilder sb = new StringBuilder();
+        for (OperationStats stats : allStats)
+        {
+            sb.append(stats.toString()).append('\n');
+            if (stats.Count > 0) sb.append("    latency: ").append(stats.getHistogramString()).append('\n');
+        }
+
+        List<String> counterNames = new ArrayList<>(mCounters.keySet());
+        Collections.sort(counterNames);
+        for (String counterName : counterNames) sb.append(counterName).append(": ").append(mCounters.get(counterName)).append('\n');
+        return sb.toString();
+    }
+
+    /** Writes the report returned by dump() to the writer specified. **/
+    public void write(Writer writer) throws IOException
+    {
+        writer.write(dump());
+        writer.flush();
+    }
+
+    /** Writes the report returned by dump() to the file specified, replacing any existing content. **/
+    public void writeToFile(File file) throws IOException
+    {
+        Writer writer = new FileWriter(file);
+        try
+        {
+            write(writer);
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private OperationStats getOrCreateStats(String operationDescription)
+    {
+        OperationStats stats = mStats.get(operationDescription);
+        if (stats == null)
+        {
+            stats = new OperationStats(operationDescription);
+            mStats.put(operationDescription, stats);
+        }
+        return stats;
+    }
+}
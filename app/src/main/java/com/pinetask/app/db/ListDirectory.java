@@ -0,0 +1,162 @@
+package com.pinetask.app.db;
+
+import com.pinetask.app.common.LoggingBase;
+import com.pinetask.app.common.PineTaskListWithCollaborators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+
+/** Keeps a single live, sorted view of the lists that the user has access to, shared by everything that needs it while the user is logged in (the list
+ *  chooser, the Manage Lists screen, and ActiveListManager), so that each of them doesn't need to load the lists and subscribe to changes separately.
+ *  The lists are loaded by an RxListLoader when the directory is created, and are then kept up to date incrementally from the list summary listener.
+ *  Listeners are notified (on the main thread) of the initial load and of each subsequent change.
+ *  Caller must invoke shutdown() when the user logs out. **/
+public class ListDirectory extends LoggingBase implements RxListLoaderCallbacks
+{
+    private final DbHelper mDbHelper;
+    private final String mUserId;
+    private final LocalSnapshotStore mSnapshotStore;
+    private RxListLoader mListLoader;
+    private boolean mLoadFailed;
+    private Disposable mReconcileSubscription;
+    private boolean mReconcileInProgress;
+    private final List<RxListLoaderCallbacks> mListeners = new ArrayList<>();
+
+    public ListDirectory(DbHelper dbHelper, String userId, LocalSnapshotStore snapshotStore)
+    {
+        mDbHelper = dbHelper;
+        mUserId = userId;
+        mSnapshotStore = snapshotStore;
+        startLoad();
+    }
+
+    private void startLoad()
+    {
+        logMsg("Starting load of lists for user %s", mUserId);
+        mLoadFailed = false;
+        mListLoader = new RxListLoader(mUserId, this);
+    }
+
+    /** Returns true once the initial load of lists has completed. **/
+    public boolean isLoaded()
+    {
+        return mListLoader != null && mListLoader.getLists() != null;
+    }
+
+    /** Returns the user's lists, sorted by name, or null if the initial load hasn't completed yet.  The list returned is updated as lists are added, deleted,
+     *  and renamed, so callers that keep it should make a copy. **/
+    public List<PineTaskListWithCollaborators> getLists()
+    {
+        return isLoaded() ? Collections.unmodifiableList(mListLoader.getLists()) : null;
+    }
+
+    /** Returns the user's lists if the initial load has completed; before then, returns the lists saved in the local snapshot, which may be out of date
+     *  (or null if there are none). **/
+    public List<PineTaskListWithCollaborators> getListsOrSnapshot()
+    {
+        return isLoaded() ? getLists() : mSnapshotStore.getLists();
+    }
+
+    /** Returns the list with the ID specified, or null if the user doesn't have access to it (or the initial load hasn't completed yet). **/
+    public PineTaskListWithCollaborators getList(String listId)
+    {
+        return mListLoader == null ? null : mListLoader.getList(listId);
+    }
+
+    /** Adds a listener.  If the lists have already been loaded, listener.onListsLoaded() is invoked immediately. **/
+    public void addListener(RxListLoaderCallbacks listener)
+    {
+        mListeners.add(listener);
+        if (isLoaded()) listener.onListsLoaded(mListLoader.getLists());
+    }
+
+    public void removeListener(RxListLoaderCallbacks listener)
+    {
+        mListeners.remove(listener);
+    }
+
+    /** Re-reads the user's list summaries in the background, and reconciles them with the lists in memory, notifying listeners of any differences (for
+     *  example, changes that were missed while the summary listener was waiting to retry).  If the initial load failed, it is started again instead. **/
+    public void refresh()
+    {
+        if (mLoadFailed)
+        {
+            mListLoader.shutdown();
+            startLoad();
+            return;
+        }
+        if (!isLoaded() || mReconcileInProgress) return;
+
+        mReconcileInProgress = true;
+        mReconcileSubscription = mDbHelper.getListSummaries(mUserId)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(lists ->
+                {
+                    mReconcileInProgress = false;
+                    if (mListLoader != null) mListLoader.reconcile(lists);
+                }, ex ->
+                {
+                    mReconcileInProgress = false;
+                    logErrorAndException(ex, "Error reconciling lists");
+                });
+    }
+
+    /** Must be called when the user logs out: disposes of the list summary subscription. **/
+    public void shutdown()
+    {
+        logMsg("ListDirectory is shutting down");
+        if (mReconcileSubscription != null) mReconcileSubscription.dispose();
+        mReconcileSubscription = null;
+        mReconcileInProgress = false;
+        if (mListLoader != null) mListLoader.shutdown();
+        mListLoader = null;
+        mListeners.clear();
+    }
+
+    /** Pass the lists to the local snapshot, which will save them shortly. **/
+    private void saveSnapshot()
+    {
+        if (isLoaded()) mSnapshotStore.setLists(getLists());
+    }
+
+    /**** Begin implementation of RxListLoaderCallbacks: update the local snapshot, and pass events on to all listeners. ********/
+    @Override
+    public void onListsLoaded(List<PineTaskListWithCollaborators> lists)
+    {
+        saveSnapshot();
+        for (RxListLoaderCallbacks listener : new ArrayList<>(mListeners)) listener.onListsLoaded(lists);
+    }
+
+    @Override
+    public void onListAdded(PineTaskListWithCollaborators list)
+    {
+        saveSnapshot();
+        for (RxListLoaderCallbacks listener : new ArrayList<>(mListeners)) listener.onListAdded(list);
+    }
+
+    @Override
+    public void onListDeleted(String listId)
+    {
+        saveSnapshot();
+        for (RxListLoaderCallbacks listener : new ArrayList<>(mListeners)) listener.onListDeleted(listId);
+    }
+
+    @Override
+    public void onListUpdated(PineTaskListWithCollaborators list)
+    {
+        saveSnapshot();
+        for (RxListLoaderCallbacks listener : new ArrayList<>(mListeners)) listener.onListUpdated(list);
+    }
+
+    @Override
+    public void onError(Throwable error)
+    {
+        if (!isLoaded()) mLoadFailed = true;
+        for (RxListLoaderCallbacks listener : new ArrayList<>(mListeners)) listener.onError(error);
+    }
+    /**** End implementation of RxListLoaderCallbacks. ********/
+}
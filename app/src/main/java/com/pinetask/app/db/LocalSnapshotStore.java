@@ -0,0 +1,435 @@
+package com.pinetask.app.db;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.AtomicFile;
+
+import com.pinetask.app.chat.ChatMessage;
+import com.pinetask.app.common.LoggingBase;
+import com.pinetask.app.common.PineTaskListWithCollaborators;
+import com.pinetask.app.list_items.PineTaskItemExt;
+import com.pinetask.app.list_members.MemberInfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import io.reactivex.Completable;
+import io.reactivex.schedulers.Schedulers;
+
+/** Keeps a compact copy on disk of what the user last saw: the items, newest chat messages, and members of the active list, and the user's list directory.
+ *  The snapshot is read synchronously when the store is created (at startup, before the main screen is first drawn), so that each screen can show the
+ *  data right away instead of waiting for the first database callback; the live data then replaces it when it arrives.
+ *  As data changes, callers pass the latest version of each section to the store, which holds it by reference and writes the whole snapshot a short time
+ *  later (changes in the meantime are coalesced into one write).  The section lists are copied on the main thread, then encoded and written to disk on a
+ *  background thread.
+ *  File format: magic number, format version, payload length, CRC32 of the payload, then the payload.  A snapshot that fails any of these checks (or
+ *  can't be parsed) is deleted and ignored.  Snapshots larger than MAX_SNAPSHOT_BYTES are written without the items section, or not at all.
+ *  Must only be used from the main thread.  Caller must invoke shutdown() when the user scope is destroyed. **/
+public class LocalSnapshotStore extends LoggingBase
+{
+    private static final int MAGIC = 0x50545353;
+    /** Increment when the payload format changes: snapshots written with other versions are discarded. **/
+    private static final int FORMAT_VERSION = 1;
+    private static final String FILE_PREFIX = "local_snapshot_";
+
+    /** Maximum size of the snapshot file (payload plus header). **/
+    static final int MAX_SNAPSHOT_BYTES = 256 * 1024;
+    /** Number of the newest chat messages stored: enough to fill the chat screen. **/
+    static final int CHAT_TAIL_SIZE = 20;
+    /** Changes within this period after the first change are written together. **/
+    static final long WRITE_DELAY_MS = 1000;
+    /** Reading the snapshot is on the startup path, so report reads that take longer than one frame. **/
+    static final long READ_BUDGET_MS = 16;
+
+    private final File mFile;
+    private final String mUserId;
+    private final DbMetrics mMetrics;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mWriteRunnable = this::write;
+    private boolean mIsWriteScheduled;
+    private boolean mIsShutdown;
+
+    private String mItemsListId;
+    private List<PineTaskItemExt> mItems;
+    private String mChatListId;
+    private List<ChatMessage> mChatMessages;
+    private String mMembersListId;
+    private List<MemberInfo> mMembers;
+    private List<PineTaskListWithCollaborators> mLists;
+
+    public LocalSnapshotStore(Context context, String userId, DbMetrics metrics)
+    {
+        mFile = new File(context.getCacheDir(), FILE_PREFIX + userId);
+        mUserId = userId;
+        mMetrics = metrics;
+        read();
+    }
+
+    /** Deletes the snapshots of all users (ex: when no user is signed in). **/
+    public static void deleteAll(Context context)
+    {
+        File[] files = context.getCacheDir().listFiles();
+        if (files == null) return;
+        for (File file : files)
+        {
+            if (file.getName().startsWith(FILE_PREFIX)) new AtomicFile(file).delete();
+        }
+    }
+
+    /** Returns the items stored for the list specified, or null if the snapshot doesn't contain its items. **/
+    public List<PineTaskItemExt> getItems(String listId)
+    {
+        return (mItems != null && listId.equals(mItemsListId)) ? mItems : null;
+    }
+
+    /** Returns the newest chat messages stored for the list specified (oldest first), or null if the snapshot doesn't contain its messages. **/
+    public List<ChatMessage> getChatMessages(String listId)
+    {
+        return (mChatMessages != null && listId.equals(mChatListId)) ? mChatMessages : null;
+    }
+
+    /** Returns the members stored for the list specified, or null if the snapshot doesn't contain its members. **/
+    public List<MemberInfo> getMembers(String listId)
+    {
+        return (mMembers != null && listId.equals(mMembersListId)) ? mMembers : null;
+    }
+
+    /** Returns the user's lists as last stored, or null if the snapshot doesn't contain them. **/
+    public List<PineTaskListWithCollaborators> getLists()
+    {
+        return mLists;
+    }
+
+    /** The section setters below hold the list provided by reference, and encode it when the snapshot is next written, so they should be called again
+     *  each time the list changes (or is replaced). **/
+    public void setItems(String listId, List<PineTaskItemExt> items)
+    {
+        mItemsListId = listId;
+        mItems = items;
+        scheduleWrite();
+    }
+
+    public void setChatMessages(String listId, List<ChatMessage> chatMessages)
+    {
+        mChatListId = listId;
+        mChatMessages = chatMessages;
+        scheduleWrite();
+    }
+
+    public void setMembers(String listId, List<MemberInfo> members)
+    {
+        mMembersListId = listId;
+        mMembers = members;
+        scheduleWrite();
+    }
+
+    public void setLists(List<PineTaskListWithCollaborators> lists)
+    {
+        mLists = lists;
+        scheduleWrite();
+    }
+
+    /** Writes any pending changes, and stops accepting further changes. **/
+    public void shutdown()
+    {
+        if (mIsWriteScheduled)
+        {
+            mHandler.removeCallbacks(mWriteRunnable);
+            write();
+        }
+        mIsShutdown = true;
+    }
+
+    private void scheduleWrite()
+    {
+        if (mIsWriteScheduled || mIsShutdown) return;
+        mIsWriteScheduled = true;
+        mHandler.postDelayed(mWriteRunnable, WRITE_DELAY_MS);
+    }
+
+    /** Copies of the section lists, taken on the main thread so that they can be encoded in the background while the originals keep changing. **/
+    private static class Sections
+    {
+        String ItemsListId;
+        List<PineTaskItemExt> Items;
+        String ChatListId;
+        List<ChatMessage> ChatMessages;
+        String MembersListId;
+        List<MemberInfo> Members;
+        List<PineTaskListWithCollaborators> Lists;
+    }
+
+    /** Copies the sections on the main thread, then encodes the snapshot and writes it to disk in the background. **/
+    private void write()
+    {
+        mIsWriteScheduled = false;
+        Sections sections = new Sections();
+        sections.ItemsListId = mItemsListId;
+        sections.Items = copyOf(mItems);
+        sections.ChatListId = mChatListId;
+        sections.ChatMessages = (mChatMessages == null) ? null : new ArrayList<>(mChatMessages.subList(Math.max(0, mChatMessages.size() - CHAT_TAIL_SIZE), mChatMessages.size()));
+        sections.MembersListId = mMembersListId;
+        sections.Members = copyOf(mMembers);
+        sections.Lists = copyOf(mLists);
+        Completable.fromAction(() -> writeFile(encodeWithinLimit(sections)))
+                .subscribeOn(Schedulers.single())
+                .subscribe(() -> {}, ex -> logErrorAndException(ex, "Error writing local snapshot"));
+    }
+
+    private static <T> List<T> copyOf(List<T> list)
+    {
+        return (list == null) ? null : new ArrayList<>(list);
+    }
+
+    /** Runs on a background thread.  Encodes the sections, leaving out the items if the snapshot would be over MAX_SNAPSHOT_BYTES.  Returns null if it is
+     *  still over the limit without them. **/
+    private byte[] encodeWithinLimit(Sections sections) throws IOException
+    {
+        byte[] snapshot = encode(sections, true);
+        if (snapshot.length > MAX_SNAPSHOT_BYTES)
+        {
+            logMsg("write: snapshot is %d bytes with %d items, writing it without items", snapshot.length, sizeOf(sections.Items));
+            snapshot = encode(sections, false);
+        }
+        if (snapshot.length <= MAX_SNAPSHOT_BYTES) return snapshot;
+        logError("write: snapshot is %d bytes, over the limit of %d bytes: deleting it", snapshot.length, MAX_SNAPSHOT_BYTES);
+        return null;
+    }
+
+    /** Runs on a background thread (writes are serialized, so they can't be reordered).  Deletes the file if bytes is null. **/
+    private void writeFile(byte[] bytes) throws IOException
+    {
+        AtomicFile atomicFile = new AtomicFile(mFile);
+        if (bytes == null)
+        {
+            atomicFile.delete();
+            return;
+        }
+
+        FileOutputStream outputStream = atomicFile.startWrite();
+        try
+        {
+            outputStream.write(bytes);
+            atomicFile.finishWrite(outputStream);
+        }
+        catch (IOException ex)
+        {
+            atomicFile.failWrite(outputStream);
+            throw ex;
+        }
+    }
+
+    /** Reads the snapshot file, if there is one, discarding (and deleting) it if it fails validation. **/
+    private void read()
+    {
+        long startTime = SystemClock.elapsedRealtime();
+        AtomicFile atomicFile = new AtomicFile(mFile);
+        try
+        {
+            decode(atomicFile.readFully());
+        }
+        catch (FileNotFoundException ex)
+        {
+            logMsg("No local snapshot for user %s", mUserId);
+            return;
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            logErrorAndException(ex, "Local snapshot for user %s is invalid, deleting it", mUserId);
+            mItems = null;
+            mChatMessages = null;
+            mMembers = null;
+            mLists = null;
+            atomicFile.delete();
+            return;
+        }
+
+        long elapsedMs = SystemClock.elapsedRealtime() - startTime;
+        mMetrics.recordLatency("local snapshot read", elapsedMs);
+        logMsg("Read local snapshot in %d ms: %d items, %d chat messages, %d members, %d lists", elapsedMs, sizeOf(mItems), sizeOf(mChatMessages),
+                sizeOf(mMembers), sizeOf(mLists));
+        if (elapsedMs > READ_BUDGET_MS) logError("Reading local snapshot took %d ms, over the budget of %d ms", elapsedMs, READ_BUDGET_MS);
+    }
+
+    private static int sizeOf(List<?> list)
+    {
+        return (list == null) ? 0 : list.size();
+    }
+
+    private byte[] encode(Sections sections, boolean includeItems) throws IOException
+    {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payloadBytes);
+        out.writeUTF(mUserId);
+
+        boolean writeItems = includeItems && sections.Items != null;
+        out.writeBoolean(writeItems);
+        if (writeItems)
+        {
+            out.writeUTF(sections.ItemsListId);
+            out.writeInt(sections.Items.size());
+            for (PineTaskItemExt item : sections.Items)
+            {
+                writeString(out, item.getId());
+                writeString(out, item.getItemDescription());
+                writeString(out, item.getClaimedBy());
+                out.writeBoolean(item.getIsCompleted());
+                out.writeLong(item.getCreatedAtMs());
+                out.writeBoolean(item.getCost() != null);
+                if (item.getCost() != null) out.writeFloat(item.getCost());
+            }
+        }
+
+        out.writeBoolean(sections.ChatMessages != null);
+        if (sections.ChatMessages != null)
+        {
+            out.writeUTF(sections.ChatListId);
+            out.writeInt(sections.ChatMessages.size());
+            for (ChatMessage chatMessage : sections.ChatMessages)
+            {
+                writeString(out, chatMessage.getId());
+                out.writeLong(chatMessage.getCreatedAtMs());
+                writeString(out, chatMessage.getMessage());
+                writeString(out, chatMessage.getSenderId());
+                writeString(out, chatMessage.getSenderName());
+            }
+        }
+
+        out.writeBoolean(sections.Members != null);
+        if (sections.Members != null)
+        {
+            out.writeUTF(sections.MembersListId);
+            out.writeInt(sections.Members.size());
+            for (MemberInfo member : sections.Members)
+            {
+                writeString(out, member.Name);
+                writeString(out, member.UserId);
+                out.writeBoolean(member.IsOwner);
+                out.writeBoolean(member.CanBeDeleted);
+            }
+        }
+
+        out.writeBoolean(sections.Lists != null);
+        if (sections.Lists != null)
+        {
+            out.writeInt(sections.Lists.size());
+            for (PineTaskListWithCollaborators list : sections.Lists)
+            {
+                writeString(out, list.getId());
+                writeString(out, list.getName());
+                writeString(out, list.getOwnerId());
+                out.writeInt(list.getMemberCount());
+            }
+        }
+        out.flush();
+        byte[] payload = payloadBytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteArrayOutputStream fileBytes = new ByteArrayOutputStream(payload.length + 20);
+        DataOutputStream header = new DataOutputStream(fileBytes);
+        header.writeInt(MAGIC);
+        header.writeInt(FORMAT_VERSION);
+        header.writeInt(payload.length);
+        header.writeLong(crc.getValue());
+        header.write(payload);
+        header.flush();
+        return fileBytes.toByteArray();
+    }
+
+    /** Validates the header and checksum, then reads each section.  Throws IOException if the snapshot is invalid. **/
+    private void decode(byte[] bytes) throws IOException
+    {
+        if (bytes.length > MAX_SNAPSHOT_BYTES) throw new IOException(String.format("Snapshot is %d bytes, over the limit", bytes.length));
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (header.readInt() != MAGIC) throw new IOException("Invalid magic number");
+        int version = header.readInt();
+        if (version != FORMAT_VERSION) throw new IOException(String.format("Unsupported format version %d", version));
+        int payloadLength = header.readInt();
+        long expectedCrc = header.readLong();
+        if (payloadLength != header.available()) throw new IOException(String.format("Payload length %d doesn't match %d bytes remaining", payloadLength, header.available()));
+        byte[] payload = new byte[payloadLength];
+        header.readFully(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if (crc.getValue() != expectedCrc) throw new IOException("Checksum mismatch");
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        if (!mUserId.equals(in.readUTF())) throw new IOException("Snapshot is for a different user");
+
+        if (in.readBoolean())
+        {
+            mItemsListId = in.readUTF();
+            int count = in.readInt();
+            List<PineTaskItemExt> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+            {
+                PineTaskItemExt item = new PineTaskItemExt(readString(in), readString(in), false, mItemsListId);
+                item.setClaimedBy(readString(in));
+                item.setIsCompleted(in.readBoolean());
+                item.setCreatedAt(in.readLong());
+                if (in.readBoolean()) item.setCost(in.readFloat());
+                items.add(item);
+            }
+            mItems = items;
+        }
+
+        if (in.readBoolean())
+        {
+            mChatListId = in.readUTF();
+            int count = in.readInt();
+            List<ChatMessage> chatMessages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+            {
+                ChatMessage chatMessage = new ChatMessage();
+                chatMessage.setId(readString(in));
+                chatMessage.setCreatedAt(in.readLong());
+                chatMessage.setMessage(readString(in));
+                chatMessage.setSenderId(readString(in));
+                chatMessage.setSenderName(readString(in));
+                chatMessages.add(chatMessage);
+            }
+            mChatMessages = chatMessages;
+        }
+
+        if (in.readBoolean())
+        {
+            mMembersListId = in.readUTF();
+            int count = in.readInt();
+            List<MemberInfo> members = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) members.add(new MemberInfo(readString(in), readString(in), in.readBoolean(), in.readBoolean()));
+            mMembers = members;
+        }
+
+        if (in.readBoolean())
+        {
+            int count = in.readInt();
+            List<PineTaskListWithCollaborators> lists = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) lists.add(new PineTaskListWithCollaborators(readString(in), readString(in), readString(in), in.readInt()));
+            mLists = Collections.unmodifiableList(lists);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
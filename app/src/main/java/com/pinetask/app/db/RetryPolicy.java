@@ -0,0 +1,148 @@
+package com.pinetask.app.db;
+
+import com.google.firebase.database.DatabaseError;
+import com.pinetask.app.common.LoggingBase;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/** Re-subscribes to database subscriptions that fail with a DbOperationCanceledException, using exponential backoff with jitter (capped at a maximum delay).
+ *  Each database path has a circuit breaker: once a path has failed the number of times specified in a row, the breaker trips, and further retries for that
+ *  path also wait until the client is connected to the database (per .info/connected), so that subscriptions don't keep failing while offline.
+ *  A path's failure count (and its breaker) is reset as soon as a retried subscription emits an item.
+ *  Other errors (ex: data that can't be deserialized), and permission denied errors (ex: the user's access to a list was revoked), would fail again in the
+ *  same way, so they are passed on without retrying. **/
+public class RetryPolicy extends LoggingBase
+{
+    public static final long DEFAULT_INITIAL_DELAY_MS = 1000;
+    public static final long DEFAULT_MAX_DELAY_MS = 60000;
+    public static final double DEFAULT_JITTER = 0.5;
+    public static final int DEFAULT_FAILURES_BEFORE_TRIP = 5;
+
+    private final Observable<Boolean> mConnectionState;
+    private final DbMetrics mMetrics;
+    private final Scheduler mScheduler;
+    private final Random mRandom;
+    private final long mInitialDelayMs;
+    private final long mMaxDelayMs;
+    private final double mJitter;
+    private final int mFailuresBeforeTrip;
+
+    /** Number of consecutive failures for each path, since the last time a subscription to the path emitted an item.  Concurrent, since it is checked
+     *  (without locking) for every item emitted; only paths that have failed are present. **/
+    private final Map<String, Integer> mConsecutiveFailures = new ConcurrentHashMap<>();
+
+    private final AtomicLong mRetryCount = new AtomicLong();
+    public long getRetryCount() { return mRetryCount.get(); }
+
+    private final AtomicLong mBreakerTripCount = new AtomicLong();
+    public long getBreakerTripCount() { return mBreakerTripCount.get(); }
+
+    /** Creates a policy using the default delays.  connectionState must emit the current connection state on subscription, and then each time it changes. **/
+    public RetryPolicy(Observable<Boolean> connectionState, DbMetrics metrics)
+    {
+        this(connectionState, metrics, Schedulers.computation(), new Random(), DEFAULT_INITIAL_DELAY_MS, DEFAULT_MAX_DELAY_MS, DEFAULT_JITTER, DEFAULT_FAILURES_BEFORE_TRIP);
+    }
+
+    /** @param jitter Fraction of each delay that is randomized (0 = no jitter, 1 = anywhere between zero and the full delay). **/
+    public RetryPolicy(Observable<Boolean> connectionState, DbMetrics metrics, Scheduler scheduler, Random random, long initialDelayMs, long maxDelayMs, double jitter,
+                       int failuresBeforeTrip)
+    {
+        mConnectionState = connectionState;
+        mMetrics = metrics;
+        mScheduler = scheduler;
+        mRandom = random;
+        mInitialDelayMs = initialDelayMs;
+        mMaxDelayMs = maxDelayMs;
+        mJitter = jitter;
+        mFailuresBeforeTrip = failuresBeforeTrip;
+    }
+
+    /** Returns a transformer that applies the policy to a subscription to the path specified.  Retries are counted in the metrics under the operation description. **/
+    public <T> ObservableTransformer<T, T> forPath(String path, String operationDescription)
+    {
+        return upstream -> upstream
+                .doOnNext(__ -> onSuccess(path))
+                .retryWhen(errors -> errors.flatMap(ex -> getRetrySignal(path, operationDescription, ex)));
+    }
+
+    /** Returns true if the circuit breaker for the path specified has tripped. **/
+    public boolean isBreakerTripped(String path)
+    {
+        return getConsecutiveFailures(path) >= mFailuresBeforeTrip;
+    }
+
+    /** Returns the delay before the retry following the number of consecutive failures specified, before jitter is applied:
+     *  the initial delay, doubled for each further failure, up to the maximum delay. **/
+    public long getBaseDelayMs(int consecutiveFailures)
+    {
+        long delayMs = mInitialDelayMs;
+        for (int i = 1; i < consecutiveFailures && delayMs < mMaxDelayMs; i++) delayMs *= 2;
+        return Math.min(delayMs, mMaxDelayMs);
+    }
+
+    private int getConsecutiveFailures(String path)
+    {
+        Integer failures = mConsecutiveFailures.get(path);
+        return failures == null ? 0 : failures;
+    }
+
+    private void onSuccess(String path)
+    {
+        if (mConsecutiveFailures.isEmpty()) return;
+        Integer failures = mConsecutiveFailures.remove(path);
+        if (failures != null && failures >= mFailuresBeforeTrip) logMsg("Circuit breaker for %s reset after successful retry", path);
+    }
+
+    private synchronized int onFailure(String path)
+    {
+        int failures = getConsecutiveFailures(path) + 1;
+        mConsecutiveFailures.put(path, failures);
+        return failures;
+    }
+
+    /** Returns an Observable that emits when the subscription should be retried, or an error if it shouldn't be. **/
+    private Observable<?> getRetrySignal(String path, String operationDescription, Throwable ex)
+    {
+        if (!(ex instanceof DbOperationCanceledException))
+        {
+            logError("%s: not retrying after error %s", operationDescription, ex.getMessage());
+            return Observable.error(ex);
+        }
+        if (((DbOperationCanceledException) ex).Error.getCode() == DatabaseError.PERMISSION_DENIED)
+        {
+            logError("%s: not retrying after permission denied for %s", operationDescription, path);
+            return Observable.error(ex);
+        }
+
+        int failures = onFailure(path);
+        long delayMs = getBaseDelayMs(failures);
+        delayMs -= (long) (delayMs * mJitter * mRandom.nextDouble());
+        mRetryCount.incrementAndGet();
+        mMetrics.incrementCounter("retries: " + operationDescription);
+
+        Observable<Long> delay = Observable.timer(delayMs, TimeUnit.MILLISECONDS, mScheduler);
+        if (failures < mFailuresBeforeTrip)
+        {
+            logMsg("%s: error (%s), retry %d for %s in %d ms", operationDescription, ex.getMessage(), failures, path, delayMs);
+            return delay;
+        }
+
+        if (failures == mFailuresBeforeTrip)
+        {
+            logError("%s: circuit breaker tripped for %s after %d consecutive failures", operationDescription, path, failures);
+            mBreakerTripCount.incrementAndGet();
+            mMetrics.incrementCounter("breaker trips: " + operationDescription);
+        }
+        logMsg("%s: error (%s), retry %d for %s in %d ms, once connected", operationDescription, ex.getMessage(), failures, path, delayMs);
+        return Observable.zip(delay, mConnectionState.filter(connected -> connected).take(1), (__, connected) -> connected);
+    }
+}
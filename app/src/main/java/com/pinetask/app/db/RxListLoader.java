@@ -1,38 +1,42 @@
 package com.pinetask.app.db;
 
 import com.pinetask.app.common.AddedEvent;
-import com.pinetask.app.common.ChildEventBase;
-import com.pinetask.app.common.DeletedEvent;
 import com.pinetask.app.common.PineTaskApplication;
-import com.pinetask.app.common.PineTaskList;
 import com.pinetask.app.common.PineTaskListWithCollaborators;
 import com.pinetask.app.common.LoggingBase;
+import com.pinetask.app.common.PineTaskUtil;
+import com.pinetask.app.common.UpdatedEvent;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
-import io.reactivex.observables.ConnectableObservable;
 
 /** Provides callbacks for events related to the PineTaskLists owned by a specified user:
  *   - All accessible lists (ie, owned by the user or shared with them)
  *   - List added events
  *   - List deleted events
- *   - List updated (ie, renamed) events
+ *   - List updated (ie, renamed, or members added / removed) events
+ * All of these come from the user's list summaries (/users/$userId/list_summaries): the lists are loaded with a single read, and a single listener on
+ * the summaries reports later changes for all of the lists.  Callbacks are only invoked for real changes: the listener's initial events, and summary
+ * rewrites that leave the summary unchanged, are ignored.
  * Caller must invoke shutdown() in order to dispose of subscriptions.
  */
 public class RxListLoader extends LoggingBase
 {
     String mUserId;
     RxListLoaderCallbacks mCallback;
-    Disposable mAddedOrDeletedSubscription;
-    List<Disposable> mListInfoSubscriptions = new ArrayList<>();
+    Disposable mListSummariesSubscription;
     List<PineTaskListWithCollaborators> mLists;
+
+    /** The lists in mLists, keyed by ID, so that events can be checked against the current list without searching mLists. **/
+    Map<String, PineTaskListWithCollaborators> mListsById = new HashMap<>();
     @Inject DbHelper mDbHelper;
 
     /** Load all PineTaskLists that the user has access to, and then invoke callback::onListsLoaded().
@@ -43,17 +47,20 @@ public class RxListLoader extends LoggingBase
         PineTaskApplication.getInstance().getAppComponent().inject(this);
         mCallback = callback;
 
-        mDbHelper.getListIdsForUser(userId)
-                .flatMap(mDbHelper::tryGetPineTaskList)
-                .flatMapSingle(mDbHelper::getPineTaskListWithCollaborators)
-                .toSortedList()
+        mDbHelper.getListSummaries(userId)
+                .map(lists ->
+                {
+                    Collections.sort(lists);
+                    return lists;
+                })
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(lists ->
                 {
                     logMsg("Finished load of %d lists", lists.size());
                     mLists = lists;
+                    for (PineTaskListWithCollaborators list : lists) mListsById.put(list.getId(), list);
                     mCallback.onListsLoaded(lists);
-                    subscribeToChanges(lists);
+                    subscribeToChanges();
                 }, ex ->
                 {
                     logError("Error loading lists");
@@ -68,115 +75,98 @@ public class RxListLoader extends LoggingBase
         return mLists;
     }
 
-    /** Set up subscription to list renamed/added/deleted events.  Caller is responsible to call shutdown() when subscription no longer needed. **/
-    private void subscribeToChanges(List<PineTaskListWithCollaborators> lists)
+    /** Returns the loaded list with the ID specified, or null if there isn't one. **/
+    public PineTaskListWithCollaborators getList(String listId)
     {
-        /** Subscribe to changes when a list is renamed. **/
-        for (PineTaskListWithCollaborators list : lists)
-        {
-            subscribeToListInfoChanges(list.getKey());
-        }
-
-        // Build stream that will emit both list added / list deleted events.
-        ConnectableObservable<ChildEventBase<String>> connection = mDbHelper.getListAddedOrDeletedEvents(mUserId).observeOn(AndroidSchedulers.mainThread()).publish();
+        return mListsById.get(listId);
+    }
 
-        // Subscribe to stream filtered to only AddedEvents.
-        connection.filter(event -> event instanceof AddedEvent)
-                .map(event -> event.Item)
-                .flatMap(mDbHelper::tryGetPineTaskList)
-                .flatMapSingle(mDbHelper::getPineTaskListWithCollaborators)
-                .subscribe(this::onListAdded, mCallback::onError);
+    /** Compares a fresh read of the user's list summaries with the loaded lists, and applies the differences as if they had been reported by the listener. **/
+    public void reconcile(List<PineTaskListWithCollaborators> lists)
+    {
+        if (mLists == null) return;
 
-        // Subscribe to stream filtered to only DeletedEvents.
-        connection.filter(event -> event instanceof DeletedEvent)
-                .map(event -> event.Item)
-                .subscribe(this::onListDeleted, mCallback::onError);
+        Map<String, PineTaskListWithCollaborators> freshListsById = new HashMap<>();
+        for (PineTaskListWithCollaborators list : lists) freshListsById.put(list.getKey(), list);
+        for (String listId : new ArrayList<>(mListsById.keySet()))
+        {
+            if (!freshListsById.containsKey(listId)) onListDeleted(listId);
+        }
+        for (PineTaskListWithCollaborators list : lists) onListUpdated(list);
+    }
 
-        // Connect subscription and save reference so we can dispose later.
-        mAddedOrDeletedSubscription = connection.connect();
+    /** Set up subscription to list renamed/added/deleted events.  Caller is responsible to call shutdown() when subscription no longer needed.
+     *  The listener initially reports an AddedEvent for every list, which are ignored as duplicates of the lists already loaded. **/
+    private void subscribeToChanges()
+    {
+        mListSummariesSubscription = mDbHelper.subscribeListSummaries(mUserId)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(event ->
+                {
+                    if (event instanceof AddedEvent) onListAdded(event.Item);
+                    else if (event instanceof UpdatedEvent) onListUpdated(event.Item);
+                    else onListDeleted(event.Item.getId());
+                }, mCallback::onError);
     }
 
     public void onListAdded(PineTaskListWithCollaborators list)
     {
         // If mLists already has list with the same ID, then ignore.
-        for (PineTaskListWithCollaborators l : mLists)
+        if (mListsById.containsKey(list.getKey()))
         {
-            if (l.getKey().equals(list.getKey()))
-            {
-                logMsg("onListAdded: duplicate list %s, ignoring", list.getKey());
-                return;
-            }
+            logMsg("onListAdded: duplicate list %s, ignoring", list.getKey());
+            return;
         }
 
         logMsg("onListAdded: adding list %s", list.getKey());
         mLists.add(list);
+        mListsById.put(list.getKey(), list);
         Collections.sort(mLists);
-        subscribeToListInfoChanges(list.getId());
         mCallback.onListAdded(list);
     }
 
     public void onListDeleted(String listId)
     {
         logMsg("List deleted: %s", listId);
-        Iterator<PineTaskListWithCollaborators> iter = mLists.iterator();
-        while (iter.hasNext())
-        {
-            PineTaskList list = iter.next();
-            if (list.getId().equals(listId))
-            {
-                iter.remove();
-                break;
-            }
-        }
+        PineTaskListWithCollaborators list = mListsById.remove(listId);
+        if (list != null) mLists.remove(list);
         mCallback.onListDeleted(listId);
     }
 
     private void onListUpdated(PineTaskListWithCollaborators updatedList)
     {
         logMsg("List updated: %s (name=%s)", updatedList.getKey(), updatedList.getName());
-        for (int i=0;i<mLists.size();i++)
+        PineTaskListWithCollaborators list = mListsById.get(updatedList.getKey());
+        if (list == null)
         {
-            PineTaskListWithCollaborators list  = mLists.get(i);
-            if (list.equals(updatedList))
-            {
-                // Event will always fire initially due to how Firebase's ValueEventListener works.  Only call onListUpdated callback if list info has actually changed.
-                if (list.getName().equals(updatedList.getName()) && list.getOwnerId().equals(updatedList.getOwnerId()))
-                {
-                    logMsg("-- onListUpdated: list is unchanged, won't fire onListUpdated");
-                }
-                else
-                {
-                    mLists.set(i, updatedList);
-                    mCallback.onListUpdated(updatedList);
-                }
-                break;
-            }
+            // Summary was written for a list that hasn't been added yet (ex: a backfill racing with the listener being attached).
+            onListAdded(updatedList);
+            return;
         }
-    }
 
-    /** Subscribe to any changes to the PineTaskList with the ID provided, so we notify the callback of "list renamed" events. **/
-    private void subscribeToListInfoChanges(String listId)
-    {
-        logMsg("subscribeToListInfoChanges for list %s", listId);
-        Disposable disposable = mDbHelper.subscribeListInfo(listId)
-                .flatMapSingle(mDbHelper::getPineTaskListWithCollaborators)
-                .subscribeOn(AndroidSchedulers.mainThread())
-                .subscribe(this::onListUpdated, mCallback::onError);
-        mListInfoSubscriptions.add(disposable);
+        // Summaries are rewritten in full when any member changes the list, so only call onListUpdated callback if the summary has actually changed.
+        if (list.hasSameSummary(updatedList))
+        {
+            logMsg("-- onListUpdated: list is unchanged, won't fire onListUpdated");
+            return;
+        }
+
+        mLists.set(mLists.indexOf(list), updatedList);
+        mListsById.put(updatedList.getKey(), updatedList);
+        if (!PineTaskUtil.equalsOrNull(list.getName(), updatedList.getName())) Collections.sort(mLists);
+        mCallback.onListUpdated(updatedList);
     }
 
-    /** Must be called by the user when loader is no longer needed.
-     * Dispose of subscription for list added / list deleted events, and dispose of subscription for "list info" for each of the user's lists. **/
+    /** Must be called by the user when loader is no longer needed.  Dispose of subscription for list summary events. **/
     public void shutdown()
     {
-        if (mAddedOrDeletedSubscription != null)
+        if (mListSummariesSubscription != null)
         {
-            logMsg("shutdown: disposing mAddedOrDeletedSubscription");
-            mAddedOrDeletedSubscription.dispose();
-            mAddedOrDeletedSubscription=null;
+            logMsg("shutdown: disposing mListSummariesSubscription");
+            mListSummariesSubscription.dispose();
+            mListSummariesSubscription=null;
         }
-        logMsg("shutdown: disposing %d list info subscriptions", mListInfoSubscriptions.size());
-        for (Disposable d : mListInfoSubscriptions) d.dispose();
         if (mLists!=null) mLists.clear();
+        mListsById.clear();
     }
 }
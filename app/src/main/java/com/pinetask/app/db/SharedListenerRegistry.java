@@ -0,0 +1,275 @@
+package com.pinetask.app.db;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+import com.pinetask.app.common.AddedEvent;
+import com.pinetask.app.common.ChildEventBase;
+import com.pinetask.app.common.DeletedEvent;
+import com.pinetask.app.common.LoggingBase;
+import com.pinetask.app.common.UpdatedEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+
+/** Multiplexes Firebase listeners so that at most one ValueEventListener and one ChildEventListener is attached per database location, regardless of
+ *  how many subscribers there are.  The first subscriber attaches the Firebase listener, later subscribers are immediately replayed the current state
+ *  (the last value snapshot, or an AddedEvent for each known child), and the listener is detached when the last subscriber is disposed.
+ *  All entry bookkeeping and event fan-out is done while holding the registry lock, so a late subscriber can never miss or duplicate an event. **/
+public class SharedListenerRegistry extends LoggingBase
+{
+    private final Map<String, ValueListenerEntry> mValueListeners = new HashMap<>();
+    private final Map<String, ChildListenerEntry> mChildListeners = new HashMap<>();
+
+    /** Returns an Observable that emits the snapshot at the location specified whenever it changes. **/
+    public Observable<DataSnapshot> subscribeValueEvents(DatabaseReference ref, String operationDescription)
+    {
+        return subscribeValueEvents(ref, ref.toString(), operationDescription);
+    }
+
+    /** Returns an Observable that emits the snapshot for the query specified whenever it changes.  The key must uniquely identify the query (location plus
+     *  any ordering / limit parameters), since all subscribers using the same key will share a single listener. **/
+    public Observable<DataSnapshot> subscribeValueEvents(Query query, String key, String operationDescription)
+    {
+        return subscribe(mValueListeners, key, () -> new ValueListenerEntry(query, key, operationDescription));
+    }
+
+    /** Returns an Observable that emits added / updated / deleted events for children of the location specified. **/
+    public Observable<ChildEventBase<DataSnapshot>> subscribeChildEvents(DatabaseReference ref, String operationDescription)
+    {
+        return subscribeChildEvents(ref, ref.toString(), operationDescription);
+    }
+
+    /** Returns an Observable that emits added / updated / deleted events for children matching the query specified.  The key must uniquely identify the query. **/
+    public Observable<ChildEventBase<DataSnapshot>> subscribeChildEvents(Query query, String key, String operationDescription)
+    {
+        return subscribe(mChildListeners, key, () -> new ChildListenerEntry(query, key, operationDescription));
+    }
+
+    /** Returns the number of Firebase listeners currently attached through the registry. **/
+    public synchronized int getAttachedListenerCount()
+    {
+        return mValueListeners.size() + mChildListeners.size();
+    }
+
+    private interface EntryFactory<L>
+    {
+        L create();
+    }
+
+    private <E, L extends ListenerEntry<E>> Observable<E> subscribe(Map<String, L> entries, String key, EntryFactory<L> factory)
+    {
+        return Observable.create((ObservableEmitter<E> emitter) ->
+        {
+            L entry;
+            synchronized (this)
+            {
+                entry = entries.get(key);
+                if (entry == null)
+                {
+                    entry = factory.create();
+                    entries.put(key, entry);
+                    entry.mEmitters.add(emitter);
+                    logMsg("Attaching shared listener at %s", key);
+                    entry.attach();
+                }
+                else
+                {
+                    entry.mEmitters.add(emitter);
+                    logMsg("Sharing existing listener at %s (%d subscribers)", key, entry.mEmitters.size());
+                    entry.replay(emitter);
+                }
+            }
+
+            final L subscribedEntry = entry;
+            emitter.setCancellable(() -> removeSubscriber(entries, subscribedEntry, emitter));
+        });
+    }
+
+    /** Removes the subscriber from the entry, and detaches the Firebase listener if it was the last one. **/
+    private synchronized <E> void removeSubscriber(Map<String, ? extends ListenerEntry<E>> entries, ListenerEntry<E> entry, ObservableEmitter<E> emitter)
+    {
+        entry.mEmitters.remove(emitter);
+        if (entry.mEmitters.isEmpty() && entries.get(entry.mKey) == entry)
+        {
+            logMsg("Last subscriber disposed, detaching listener at %s", entry.mKey);
+            entries.remove(entry.mKey);
+            entry.detach();
+        }
+    }
+
+    /** Base class for the bookkeeping of a single shared Firebase listener. **/
+    private abstract class ListenerEntry<E>
+    {
+        final Query mQuery;
+        final String mKey;
+        final String mOperationDescription;
+        final List<ObservableEmitter<E>> mEmitters = new ArrayList<>();
+
+        ListenerEntry(Query query, String key, String operationDescription)
+        {
+            mQuery = query;
+            mKey = key;
+            mOperationDescription = operationDescription;
+        }
+
+        abstract void attach();
+        abstract void detach();
+
+        /** Sends the current state to a subscriber that joined after the listener was attached. **/
+        abstract void replay(ObservableEmitter<E> emitter);
+
+        /** Must be called while holding the registry lock. **/
+        void emit(E event)
+        {
+            for (ObservableEmitter<E> emitter : new ArrayList<>(mEmitters))
+            {
+                if (!emitter.isDisposed()) emitter.onNext(event);
+            }
+        }
+
+        /** Called when Firebase cancels the listener: the entry is removed first so that a retrying subscriber attaches a fresh listener. **/
+        void cancel(Map<String, ? extends ListenerEntry<E>> entries, DatabaseError databaseError)
+        {
+            List<ObservableEmitter<E>> emitters;
+            synchronized (SharedListenerRegistry.this)
+            {
+                logError("Listener at %s cancelled: %s", mKey, databaseError);
+                if (entries.get(mKey) == this) entries.remove(mKey);
+                detach();
+                emitters = new ArrayList<>(mEmitters);
+                mEmitters.clear();
+            }
+            for (ObservableEmitter<E> emitter : emitters)
+            {
+                if (!emitter.isDisposed()) emitter.onError(new DbOperationCanceledException(mQuery, databaseError, mOperationDescription));
+            }
+        }
+    }
+
+    private class ValueListenerEntry extends ListenerEntry<DataSnapshot> implements ValueEventListener
+    {
+        DataSnapshot mLastSnapshot;
+
+        ValueListenerEntry(Query query, String key, String operationDescription)
+        {
+            super(query, key, operationDescription);
+        }
+
+        @Override
+        void attach()
+        {
+            mQuery.addValueEventListener(this);
+        }
+
+        @Override
+        void detach()
+        {
+            mQuery.removeEventListener(this);
+        }
+
+        @Override
+        void replay(ObservableEmitter<DataSnapshot> emitter)
+        {
+            if (mLastSnapshot != null) emitter.onNext(mLastSnapshot);
+        }
+
+        @Override
+        public void onDataChange(DataSnapshot dataSnapshot)
+        {
+            synchronized (SharedListenerRegistry.this)
+            {
+                mLastSnapshot = dataSnapshot;
+                emit(dataSnapshot);
+            }
+        }
+
+        @Override
+        public void onCancelled(DatabaseError databaseError)
+        {
+            cancel(mValueListeners, databaseError);
+        }
+    }
+
+    private class ChildListenerEntry extends ListenerEntry<ChildEventBase<DataSnapshot>> implements ChildEventListener
+    {
+        /** Current children, in the order they were added, so that late subscribers receive the same sequence of AddedEvents as the first one did. **/
+        final Map<String, DataSnapshot> mChildren = new LinkedHashMap<>();
+
+        ChildListenerEntry(Query query, String key, String operationDescription)
+        {
+            super(query, key, operationDescription);
+        }
+
+        @Override
+        void attach()
+        {
+            mQuery.addChildEventListener(this);
+        }
+
+        @Override
+        void detach()
+        {
+            mQuery.removeEventListener(this);
+        }
+
+        @Override
+        void replay(ObservableEmitter<ChildEventBase<DataSnapshot>> emitter)
+        {
+            for (DataSnapshot child : mChildren.values())
+            {
+                emitter.onNext(new AddedEvent<>(child));
+            }
+        }
+
+        @Override
+        public void onChildAdded(DataSnapshot dataSnapshot, String previousChildName)
+        {
+            synchronized (SharedListenerRegistry.this)
+            {
+                mChildren.put(dataSnapshot.getKey(), dataSnapshot);
+                emit(new AddedEvent<>(dataSnapshot));
+            }
+        }
+
+        @Override
+        public void onChildChanged(DataSnapshot dataSnapshot, String previousChildName)
+        {
+            synchronized (SharedListenerRegistry.this)
+            {
+                mChildren.put(dataSnapshot.getKey(), dataSnapshot);
+                emit(new UpdatedEvent<>(dataSnapshot));
+            }
+        }
+
+        @Override
+        public void onChildRemoved(DataSnapshot dataSnapshot)
+        {
+            synchronized (SharedListenerRegistry.this)
+            {
+                mChildren.remove(dataSnapshot.getKey());
+                emit(new DeletedEvent<>(dataSnapshot));
+            }
+        }
+
+        @Override
+        public void onChildMoved(DataSnapshot dataSnapshot, String previousChildName)
+        {
+        }
+
+        @Override
+        public void onCancelled(DatabaseError databaseError)
+        {
+            cancel(mChildListeners, databaseError);
+        }
+    }
+}
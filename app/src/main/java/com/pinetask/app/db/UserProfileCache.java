@@ -0,0 +1,130 @@
+package com.pinetask.app.db;
+
+import com.pinetask.app.common.LoggingBase;
+import com.pinetask.app.common.UserScope;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.subjects.BehaviorSubject;
+
+/** In-memory LRU cache of user names, to avoid issuing a database read every time a user name needs to be displayed (ex: "claimed by" initials in the list item rows).
+ *  Each cached entry keeps a live listener on /users/$userId/userName, so the cached value is replaced whenever the user changes their name.
+ *  When the cache is full, the least recently used entry is evicted and its listener is detached.  Must call shutdown() when done to detach all listeners. **/
+@UserScope
+public class UserProfileCache extends LoggingBase
+{
+    /** Maximum number of users to keep cached. **/
+    public static final int MAX_ENTRIES = 100;
+
+    private DbHelper mDbHelper;
+    private Map<String, CacheEntry> mEntries;
+
+    private int mHitCount;
+    public synchronized int getHitCount() { return mHitCount; }
+
+    private int mMissCount;
+    public synchronized int getMissCount() { return mMissCount; }
+
+    private int mInvalidationCount;
+    public synchronized int getInvalidationCount() { return mInvalidationCount; }
+
+    private int mEvictionCount;
+    public synchronized int getEvictionCount() { return mEvictionCount; }
+
+    @Inject
+    public UserProfileCache(DbHelper dbHelper)
+    {
+        mDbHelper = dbHelper;
+        mEntries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest)
+            {
+                if (size() <= MAX_ENTRIES) return false;
+                logMsg("Evicting cached user name for %s", eldest.getKey());
+                mEvictionCount++;
+                eldest.getValue().dispose();
+                return true;
+            }
+        };
+    }
+
+    /** Cached value and live listener for a single user. **/
+    private static class CacheEntry
+    {
+        BehaviorSubject<String> mUserName = BehaviorSubject.create();
+        Disposable mSubscription;
+
+        /** Detaches the listener.  Anyone still waiting for the first value will get an error instead of waiting forever. **/
+        void dispose()
+        {
+            if (mSubscription != null) mSubscription.dispose();
+            if (!mUserName.hasValue() && !mUserName.hasThrowable()) mUserName.onComplete();
+        }
+    }
+
+    /** Returns the cached user name for the user specified, or null if it hasn't been loaded yet.  Does not start a database request. **/
+    public synchronized String getCachedUserName(String userId)
+    {
+        CacheEntry entry = mEntries.get(userId);
+        if (entry != null && entry.mUserName.hasValue())
+        {
+            mHitCount++;
+            return entry.mUserName.getValue();
+        }
+        return null;
+    }
+
+    /** Returns a Single that emits the name of the user specified: from memory if cached, otherwise once the listener for the user has returned its first value. **/
+    public synchronized Single<String> getUserName(String userId)
+    {
+        CacheEntry entry = mEntries.get(userId);
+        if (entry != null)
+        {
+            if (entry.mUserName.hasValue())
+            {
+                mHitCount++;
+                return Single.just(entry.mUserName.getValue());
+            }
+            // Request for this user is already in progress: wait for it rather than starting another one.
+            return entry.mUserName.firstOrError();
+        }
+
+        mMissCount++;
+        CacheEntry newEntry = new CacheEntry();
+        mEntries.put(userId, newEntry);
+        newEntry.mSubscription = mDbHelper.getUserNameObservable(userId).subscribe(userName -> onUserNameChanged(newEntry, userId, userName), ex -> onLoadError(newEntry, userId, ex));
+        return newEntry.mUserName.firstOrError();
+    }
+
+    private synchronized void onUserNameChanged(CacheEntry entry, String userId, String userName)
+    {
+        if (entry.mUserName.hasValue())
+        {
+            logMsg("User name for %s changed, replacing cached value", userId);
+            mInvalidationCount++;
+        }
+        entry.mUserName.onNext(userName);
+    }
+
+    /** On error, drop the entry so the next request will try again. **/
+    private synchronized void onLoadError(CacheEntry entry, String userId, Throwable ex)
+    {
+        logErrorAndException(ex, "Error loading user name for %s", userId);
+        if (mEntries.get(userId) == entry) mEntries.remove(userId);
+        entry.mUserName.onError(ex);
+    }
+
+    /** Detaches all listeners and clears the cache. **/
+    public synchronized void shutdown()
+    {
+        logMsg("Shutting down: %d entries, hits=%d, misses=%d, invalidations=%d, evictions=%d", mEntries.size(), mHitCount, mMissCount, mInvalidationCount, mEvictionCount);
+        for (CacheEntry entry : mEntries.values()) entry.dispose();
+        mEntries.clear();
+    }
+}
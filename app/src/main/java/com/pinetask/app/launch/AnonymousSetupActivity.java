@@ -35,7 +35,8 @@ public class AnonymousSetupActivity extends PineTaskActivity
 
         /** Start async process to setup anonymous account. When done, set username for the new FirebaseUser, and set the is_anonymous flag to true. **/
         AnonymousAccountCreator.createAnonymousAccount()
-            .flatMapCompletable((FirebaseUser user) -> mDbHelper.setUserName(user.getUid(), name).andThen(mDbHelper.setIsAnonymous(user.getUid(), true)))
+            .flatMapCompletable((FirebaseUser user) -> mDbHelper.setUserName(user.getUid(), name).andThen(mDbHelper.setIsAnonymous(user.getUid(), true))
+                    .doOnComplete(() -> mPrefsManager.setCachedAccountState(user.getUid(), true)))
             .subscribe(activityObserver("create anonymous user", () -> setResultAndFinish(RESULT_OK)));
     }
 
@@ -1,5 +1,6 @@
 package com.pinetask.app.launch;
 
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 
@@ -7,7 +8,12 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.pinetask.app.main.MainActivity;
 import com.pinetask.app.R;
+import com.pinetask.app.common.Logger;
 import com.pinetask.app.common.PineTaskActivity;
+import com.pinetask.app.common.PrefsManager;
+import com.pinetask.app.common.StartupTimer;
+import com.pinetask.app.db.DbHelper;
+import com.pinetask.app.db.LocalSnapshotStore;
 
 public class LaunchActivity extends PineTaskActivity
 {
@@ -48,6 +54,9 @@ public class LaunchActivity extends PineTaskActivity
      *  1) First-launch tutorial
      *  2) Sign in / sign up
      *  3) Main activity
+     *  Whether a signed in user is anonymous is normally taken from the account state cached in shared prefs, so the next activity is started
+     *  immediately, and the cached value is then revalidated against the database in the background.  The database is only waited for if nothing
+     *  is cached yet for the user (ie, the first launch after upgrading).
      **/
     private void launchNextStep()
     {
@@ -57,30 +66,70 @@ public class LaunchActivity extends PineTaskActivity
         {
             // First launch: start activity prompting to setup an account or choose anonymous login.
             logMsg("onCreate: FirebaseAuth reports user is not signed in. Starting sign up / anonymous chooser activity.");
+            mPrefsManager.clearCachedAccountState();
+            LocalSnapshotStore.deleteAll(this);
             launchSignupOrAnonyousLoginActivity();
+            return;
+        }
+
+        // Check if signed in user is anonymous, or has completed account setup. If anonymous, launch activity asking if they want to complete account setup now.
+        FirebaseUser user = auth.getCurrentUser();
+        Boolean cachedIsAnonymous = mPrefsManager.getCachedIsAnonymous(user.getUid());
+        if (cachedIsAnonymous != null)
+        {
+            logMsg("onCreate: using cached account state for user %s (isAnonymous=%b)", user.getUid(), cachedIsAnonymous);
+            launchForAccountState(user.getUid(), cachedIsAnonymous);
+            revalidateAccountState(getApplicationContext(), mDbHelper, mPrefsManager, user.getUid(), cachedIsAnonymous);
         }
         else
         {
-            // Check if signed in user is anonymous, or has completed account setup. If anonymous, launch activity asking if they want to complete account setup now.
-            FirebaseUser user = auth.getCurrentUser();
+            logMsg("onCreate: no cached account state for user %s, reading it", user.getUid());
             mDbHelper.getIsAnonymous(user.getUid()).subscribe(singleObserver((Boolean isAnonymous) ->
             {
-                if (isAnonymous)
-                {
-                    logMsg("onCreate: FirebaseAuth reports anonymous user %s is signed in.  Launching SignupOrAnonymousLoginActivity.", user.getUid());
-                    launchSignupOrAnonyousLoginActivity();
-                }
-                else
-                {
-                    logMsg("onCreate: FirebaseAuth reports user %s is already signed in, launching MainActivity", user.getUid());
-                    Intent intent = MainActivity.buildLaunchIntent(this, user.getUid(), null);
-                    startActivity(intent);
-                    finish();
-                }
+                mPrefsManager.setCachedAccountState(user.getUid(), isAnonymous);
+                launchForAccountState(user.getUid(), isAnonymous);
             }));
         }
     }
 
+    private void launchForAccountState(String userId, boolean isAnonymous)
+    {
+        StartupTimer.onMilestone("LaunchActivity routed");
+        if (isAnonymous)
+        {
+            logMsg("onCreate: anonymous user %s is signed in.  Launching SignupOrAnonymousLoginActivity.", userId);
+            launchSignupOrAnonyousLoginActivity();
+        }
+        else
+        {
+            logMsg("onCreate: user %s is already signed in, launching MainActivity", userId);
+            Intent intent = MainActivity.buildLaunchIntent(this, userId, null);
+            startActivity(intent);
+            finish();
+        }
+    }
+
+    /** Reads the user's anonymous status from the database and updates the cached account state.  If the cached value was wrong (ex: the account setup
+     *  was completed on another device), the task is restarted with the activity that should have been launched.  This outlives LaunchActivity (which
+     *  has already finished), so it only holds on to the application context. **/
+    private static void revalidateAccountState(Context appContext, DbHelper dbHelper, PrefsManager prefsManager, String userId, boolean cachedIsAnonymous)
+    {
+        dbHelper.getIsAnonymous(userId).subscribe(isAnonymous ->
+        {
+            prefsManager.setCachedAccountState(userId, isAnonymous);
+            if (isAnonymous == cachedIsAnonymous) return;
+
+            Logger.logError(LaunchActivity.class, "Cached account state for user %s was wrong (isAnonymous=%b), redirecting", userId, isAnonymous);
+            Intent intent = isAnonymous ? new Intent(appContext, SignupOrAnonymousLoginActivity.class) : MainActivity.buildLaunchIntent(appContext, userId, null);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+            appContext.startActivity(intent);
+        }, ex ->
+        {
+            Logger.logError(LaunchActivity.class, "Error revalidating cached account state for user %s", userId);
+            Logger.logException(LaunchActivity.class, ex);
+        });
+    }
+
     private void launchSignupOrAnonyousLoginActivity()
     {
         Intent intent = new Intent(this, SignupOrAnonymousLoginActivity.class);
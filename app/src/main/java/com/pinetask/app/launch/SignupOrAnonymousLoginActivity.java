@@ -92,7 +92,9 @@ public class SignupOrAnonymousLoginActivity extends PineTaskActivity
                 mSignUpLaterButton.setVisibility(View.GONE);
                 mIntroMessageTextView.setText(R.string.finishing_account_setup);
                 logMsg("createNewUser: FirebaseUser is: uid=%s, name=%s, email=%s, photoUri=%s", user.getUid(), user.getDisplayName(), user.getEmail(), user.getPhotoUrl());
-                mDbHelper.setUserName(user.getUid(), user.getDisplayName()).andThen(mDbHelper.setIsAnonymous(user.getUid(), false)).subscribe(activityObserver("setup new user", ()->
+                mDbHelper.setUserName(user.getUid(), user.getDisplayName()).andThen(mDbHelper.setIsAnonymous(user.getUid(), false))
+                        .doOnComplete(() -> mPrefsManager.setCachedAccountState(user.getUid(), false))
+                        .subscribe(activityObserver("setup new user", ()->
                 {
                     launchMainActivity(user);
                     finish();
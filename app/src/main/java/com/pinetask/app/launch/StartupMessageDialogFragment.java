@@ -67,6 +67,7 @@ public class StartupMessageDialogFragment extends PineTaskDialogFragment
             int version = getArguments().getInt(VERSION_KEY);
             logMsg("Updating user %s last read startup message to version %d", userId, version);
             mDbHelper.setUserStartupMessageVersion(userId, version);
+            mPrefsManager.setStartupMessageReadVersion(userId, version);
         }
         dismiss();
     }
@@ -15,26 +15,32 @@ import com.pinetask.app.hints.HintManager;
 import com.pinetask.app.common.Logger;
 import com.pinetask.app.common.PineTaskApplication;
 import com.pinetask.app.common.PrefsManager;
-import com.pinetask.app.db.DbHelper;
+import com.pinetask.app.common.StartupTimer;
+import com.pinetask.app.db.UserProfileCache;
 import com.pinetask.app.hints.HintType;
 
 import java.text.NumberFormat;
-import java.util.List;
 
 import javax.inject.Inject;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
 
-public class ListItemAdapter extends RecyclerView.Adapter<ListItemAdapter.ItemViewHolder>
+/** Adapter for the RecyclerView that shows the items in the active list.  Items are read directly from the ListItemStore shared with the presenter, which
+ *  notifies the adapter as it changes. **/
+public class ListItemAdapter extends RecyclerView.Adapter<ListItemAdapter.ItemViewHolder> implements ListItemStore.Listener
 {
-    private List<PineTaskItemExt> mItems;
+    private ListItemStore mItemStore;
     private ListItemsFragment mListItemsFragment;
     private boolean mShowCostField;
-    @Inject DbHelper mDbHelper;
+
+    /** Set once the first row has been bound, so that the time to the first rendered row is only recorded once. **/
+    private boolean mFirstRowTimed;
+    private boolean mIsAttached;
     @Inject ListItemsPresenter mListItemsPresenter;
     @Inject PrefsManager mPrefsManager;
     @Inject HintManager mHintManager;
+    @Inject UserProfileCache mUserProfileCache;
 
     // IDs for pop-up menu items
     private final int MENU_ITEM_DELETE = 0;
@@ -42,11 +48,11 @@ public class ListItemAdapter extends RecyclerView.Adapter<ListItemAdapter.ItemVi
     private final int MENU_ITEM_UNCOMPLETE = 2;
     private final int MENU_ITEM_EDIT = 3;
 
-    public ListItemAdapter(ListItemsFragment listItemsFragment, List<PineTaskItemExt> items)
+    public ListItemAdapter(ListItemsFragment listItemsFragment)
     {
         mListItemsFragment = listItemsFragment;
-        mItems = items;
         PineTaskApplication.getInstance().getUserComponent().inject(this);
+        mItemStore = mListItemsPresenter.getItemStore();
     }
 
     public static class ItemViewHolder extends RecyclerView.ViewHolder
@@ -77,8 +83,14 @@ public class ListItemAdapter extends RecyclerView.Adapter<ListItemAdapter.ItemVi
     @Override
     public void onBindViewHolder(ItemViewHolder holder, int position)
     {
-        final PineTaskItemExt item = mItems.get(position);
+        final PineTaskItemExt item = mItemStore.get(position);
         logMsg("onBindViewHolder for item %s (%s)", item.getId(), item.getItemDescription());
+        if (!mFirstRowTimed)
+        {
+            // Runs after the layout pass that this bind is part of has been drawn.
+            mFirstRowTimed = true;
+            holder.itemView.post(() -> StartupTimer.onMilestone("First list row rendered"));
+        }
 
         // Show item description text.  If marked as completed, show text with strikethrough and use lighter color.
         holder.mItemDescriptionTextView.setText(item.getItemDescription());
@@ -163,74 +175,92 @@ public class ListItemAdapter extends RecyclerView.Adapter<ListItemAdapter.ItemVi
         }, 300);
     }
 
-    /** Initiate async query to find out the name of the user with the specified username.  When query returns, populates the "claimed by" textview in the holder provided. **/
+    /** Populates the "claimed by" textview in the holder provided with the initial of the user who claimed the item.  The user name is normally served from the
+     *  UserProfileCache; if it isn't cached yet, an async query is made and the textview is populated when it returns (if the holder hasn't been rebound since). **/
     private void populateClaimedBy(final ItemViewHolder holder, final String claimedBy)
     {
-        mDbHelper.getUserNameSingle(claimedBy).subscribe(data ->
+        holder.mClaimedByTextView.setTag(claimedBy);
+        String cachedUserName = mUserProfileCache.getCachedUserName(claimedBy);
+        if (cachedUserName != null)
+        {
+            holder.mClaimedByTextView.setText(getInitial(cachedUserName));
+            return;
+        }
+
+        holder.mClaimedByTextView.setText("");
+        mUserProfileCache.getUserName(claimedBy).subscribe(data ->
         {
-            holder.mClaimedByTextView.setText((data != null && data.length() > 0) ? data.substring(0, 1) : "?");
+            if (claimedBy.equals(holder.mClaimedByTextView.getTag())) holder.mClaimedByTextView.setText(getInitial(data));
         }, ex ->
         {
             Logger.logErrorAndException(getClass(), ex, "Error getting user name for user %s", claimedBy);
         });
     }
 
+    private String getInitial(String userName)
+    {
+        return (userName != null && userName.length() > 0) ? userName.substring(0, 1) : "?";
+    }
+
     @Override
     public int getItemCount()
     {
-        return mItems.size();
+        return mItemStore.size();
     }
 
-    public void clear()
+    /** Receive changes from the item store for as long as the adapter is attached to the RecyclerView, so the RecyclerView never sees the store change unannounced. **/
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView)
     {
-        mItems.clear();
+        super.onAttachedToRecyclerView(recyclerView);
+        mIsAttached = true;
+        mItemStore.setListener(this);
         notifyDataSetChanged();
     }
 
-    /** Add the item if not already in the list **/
-    public void add(PineTaskItemExt item)
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView)
     {
-        logMsg("Adding item %s (%s)", item.getId(), item.getItemDescription());
-        if (findItem(item.getId()) == -1)
-        {
-            mItems.add(item);
-            notifyItemInserted(mItems.size() - 1);
-        }
+        super.onDetachedFromRecyclerView(recyclerView);
+        mIsAttached = false;
+        mItemStore.removeListener(this);
     }
 
-    /** Return the index of the item, or -1 if not found **/
-    private int findItem(String key)
+    /** Show the items in a different store (ex: the store of another list, when the active list changes). **/
+    public void setItemStore(ListItemStore itemStore)
     {
-        for (int i = 0; i< mItems.size(); i++)
+        if (itemStore == mItemStore) return;
+        if (mIsAttached)
         {
-            PineTaskItemExt item = mItems.get(i);
-            if (item.getId().equals(key)) return i;
+            mItemStore.removeListener(this);
+            itemStore.setListener(this);
         }
-        return -1;
+        mItemStore = itemStore;
+        notifyDataSetChanged();
     }
 
-    /** Removes the item with the key provided. **/
-    public void remove(String key)
+    @Override
+    public void onItemsReset()
     {
-        logMsg("Removing item %s", key);
-        int i = findItem(key);
-        if (i != -1)
-        {
-            mItems.remove(i);
-            notifyItemRemoved(i);
-        }
+        notifyDataSetChanged();
     }
 
-    public void update(PineTaskItemExt updatedItem)
+    @Override
+    public void onItemInserted(int position)
     {
-        logMsg("Updating item %s (%s)", updatedItem.getId(), updatedItem.getItemDescription());
-        int i = findItem(updatedItem.getId());
-        if (i != -1)
-        {
-            PineTaskItemExt oldItem = mItems.get(i);
-            oldItem.updateFrom(updatedItem);
-            notifyItemChanged(i);
-        }
+        notifyItemInserted(position);
+    }
+
+    @Override
+    public void onItemChanged(int position)
+    {
+        notifyItemChanged(position);
+    }
+
+    @Override
+    public void onItemRemoved(int position)
+    {
+        notifyItemRemoved(position);
     }
 
     protected void logMsg(String msg, Object...args)
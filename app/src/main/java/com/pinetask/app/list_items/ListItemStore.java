@@ -0,0 +1,282 @@
+package com.pinetask.app.list_items;
+
+import com.pinetask.app.common.AddedEvent;
+import com.pinetask.app.common.ChildEventBase;
+import com.pinetask.app.common.ChildEventBatcher;
+import com.pinetask.app.common.DeletedEvent;
+import com.pinetask.app.common.LoggingBase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Ordered store of the items in the active list, indexed by item ID.  Shared by ListItemsRepository, ListItemsPresenter and ListItemAdapter so that there
+ *  is only one copy of the list in memory.  Lookup by ID is O(1); positions are stable (items stay in the order they were added) so they can be used directly
+ *  as adapter positions.  Each change is reported to the listener (normally the adapter) as it is made.  Must only be used from the main thread.
+ *  Aggregates (total cost, completed / claimed counts) are maintained incrementally: each change subtracts the item's previous contribution and adds the new one. **/
+public class ListItemStore extends LoggingBase
+{
+    /** Notified of changes to the store, using the same granularity as RecyclerView.Adapter notifications. **/
+    public interface Listener
+    {
+        void onItemsReset();
+        void onItemInserted(int position);
+        void onItemChanged(int position);
+        void onItemRemoved(int position);
+    }
+
+    private final List<PineTaskItemExt> mItems = new ArrayList<>();
+    private final Map<String, Integer> mPositions = new HashMap<>();
+    private Listener mListener;
+
+    /** What each item last contributed to the aggregates.  Needed because items are often modified in place before update() is called. **/
+    private final Map<String, Contribution> mContributions = new HashMap<>();
+    private final Map<String, Integer> mClaimedCountByUser = new HashMap<>();
+    private long mTotalCostCents;
+    private int mCompletedCount;
+    private int mClaimedCount;
+
+    private static class Contribution
+    {
+        long CostCents;
+        boolean IsCompleted;
+        String ClaimedBy;
+
+        Contribution(PineTaskItemExt item)
+        {
+            CostCents = (item.getCost() == null) ? 0 : Math.round(item.getCost() * 100.0);
+            IsCompleted = item.getIsCompleted();
+            ClaimedBy = item.getClaimedBy();
+        }
+    }
+
+    public void setListener(Listener listener)
+    {
+        mListener = listener;
+    }
+
+    /** Removes the listener, if it is still the current one. **/
+    public void removeListener(Listener listener)
+    {
+        if (mListener == listener) mListener = null;
+    }
+
+    public int size()
+    {
+        return mItems.size();
+    }
+
+    public PineTaskItemExt get(int position)
+    {
+        return mItems.get(position);
+    }
+
+    /** Returns a read-only view of the items, in display order. **/
+    public List<PineTaskItemExt> getItems()
+    {
+        return Collections.unmodifiableList(mItems);
+    }
+
+    /** Returns the position of the item with the ID specified, or -1 if not found. **/
+    public int indexOf(String id)
+    {
+        Integer position = (id == null) ? null : mPositions.get(id);
+        return (position == null) ? -1 : position;
+    }
+
+    public boolean contains(String id)
+    {
+        return indexOf(id) != -1;
+    }
+
+    /** Returns the item with the ID specified, or null if not found. **/
+    public PineTaskItemExt getById(String id)
+    {
+        int position = indexOf(id);
+        return (position == -1) ? null : mItems.get(position);
+    }
+
+    /** Replaces the contents of the store with the items provided. **/
+    public void setAll(List<PineTaskItemExt> items)
+    {
+        mItems.clear();
+        mPositions.clear();
+        resetAggregates();
+        for (PineTaskItemExt item : items) addWithoutNotifying(item);
+        if (mListener != null) mListener.onItemsReset();
+    }
+
+    public void clear()
+    {
+        mItems.clear();
+        mPositions.clear();
+        resetAggregates();
+        if (mListener != null) mListener.onItemsReset();
+    }
+
+    /** Adds the item to the end of the list, unless an item with the same ID is already present.  Returns true if it was added. **/
+    public boolean add(PineTaskItemExt item)
+    {
+        int position = addWithoutNotifying(item);
+        if (position != -1 && mListener != null) mListener.onItemInserted(position);
+        return position != -1;
+    }
+
+    /** Copies the contents of the item provided into the stored item with the same ID, so that references held elsewhere (ex: by view holders) stay current. **/
+    public boolean update(PineTaskItemExt item)
+    {
+        int position = updateWithoutNotifying(item);
+        if (position != -1 && mListener != null) mListener.onItemChanged(position);
+        return position != -1;
+    }
+
+    /** Removes the item with the ID specified.  Returns true if it was found. **/
+    public boolean remove(String id)
+    {
+        int position = removeWithoutNotifying(id);
+        if (position != -1 && mListener != null) mListener.onItemRemoved(position);
+        return position != -1;
+    }
+
+    /** Applies a batch of added / updated / deleted events.  Small batches are reported to the listener one change at a time; batches larger than
+     *  ChildEventBatcher.LARGE_BATCH_SIZE are applied first and then reported as a single reset. **/
+    public void applyEvents(List<ChildEventBase<PineTaskItemExt>> events)
+    {
+        if (events.size() <= ChildEventBatcher.LARGE_BATCH_SIZE)
+        {
+            for (ChildEventBase<PineTaskItemExt> event : events)
+            {
+                if (event instanceof AddedEvent) add(event.Item);
+                else if (event instanceof DeletedEvent) remove(event.Item.getId());
+                else update(event.Item);
+            }
+            return;
+        }
+
+        // The batcher has already collapsed events for the same ID, so deletions can be applied last, in a single pass over the list.
+        logMsg("Applying batch of %d events", events.size());
+        Set<String> deletedIds = new HashSet<>();
+        for (ChildEventBase<PineTaskItemExt> event : events)
+        {
+            if (event instanceof AddedEvent) addWithoutNotifying(event.Item);
+            else if (event instanceof DeletedEvent) deletedIds.add(event.Item.getId());
+            else updateWithoutNotifying(event.Item);
+        }
+        if (deletedIds.size() > 0) removeAllWithoutNotifying(deletedIds);
+        if (mListener != null) mListener.onItemsReset();
+    }
+
+    /** Removes all items with the IDs specified and re-indexes the remaining items once. **/
+    private void removeAllWithoutNotifying(Set<String> ids)
+    {
+        List<PineTaskItemExt> remainingItems = new ArrayList<>(mItems.size());
+        for (PineTaskItemExt item : mItems)
+        {
+            if (!ids.contains(item.getId())) remainingItems.add(item);
+        }
+        mItems.clear();
+        mPositions.clear();
+        resetAggregates();
+        for (PineTaskItemExt item : remainingItems) addWithoutNotifying(item);
+    }
+
+    private int addWithoutNotifying(PineTaskItemExt item)
+    {
+        if (item.getId() == null || mPositions.containsKey(item.getId())) return -1;
+        mItems.add(item);
+        int position = mItems.size() - 1;
+        mPositions.put(item.getId(), position);
+        addContribution(item);
+        return position;
+    }
+
+    private int updateWithoutNotifying(PineTaskItemExt item)
+    {
+        int position = indexOf(item.getId());
+        if (position != -1)
+        {
+            PineTaskItemExt existingItem = mItems.get(position);
+            if (existingItem != item) existingItem.updateFrom(item);
+            removeContribution(existingItem.getId());
+            addContribution(existingItem);
+        }
+        return position;
+    }
+
+    /** Removes the item and shifts the positions of the items after it down by one. **/
+    private int removeWithoutNotifying(String id)
+    {
+        int position = indexOf(id);
+        if (position != -1)
+        {
+            mItems.remove(position);
+            mPositions.remove(id);
+            removeContribution(id);
+            for (int i = position; i < mItems.size(); i++) mPositions.put(mItems.get(i).getId(), i);
+        }
+        return position;
+    }
+
+    /** Total cost of all items, in cents. **/
+    public long getTotalCostCents()
+    {
+        return mTotalCostCents;
+    }
+
+    public int getCompletedCount()
+    {
+        return mCompletedCount;
+    }
+
+    public int getClaimedCount()
+    {
+        return mClaimedCount;
+    }
+
+    /** Number of items claimed by the user specified. **/
+    public int getClaimedCount(String userId)
+    {
+        Integer count = mClaimedCountByUser.get(userId);
+        return (count == null) ? 0 : count;
+    }
+
+    private void resetAggregates()
+    {
+        mContributions.clear();
+        mClaimedCountByUser.clear();
+        mTotalCostCents = 0;
+        mCompletedCount = 0;
+        mClaimedCount = 0;
+    }
+
+    private void addContribution(PineTaskItemExt item)
+    {
+        Contribution contribution = new Contribution(item);
+        mContributions.put(item.getId(), contribution);
+        applyContribution(contribution, 1);
+    }
+
+    private void removeContribution(String id)
+    {
+        Contribution contribution = mContributions.remove(id);
+        if (contribution != null) applyContribution(contribution, -1);
+    }
+
+    /** Adds (sign = 1) or subtracts (sign = -1) the contribution to / from the aggregates. **/
+    private void applyContribution(Contribution contribution, int sign)
+    {
+        mTotalCostCents += sign * contribution.CostCents;
+        if (contribution.IsCompleted) mCompletedCount += sign;
+        if (contribution.ClaimedBy != null)
+        {
+            mClaimedCount += sign;
+            int count = getClaimedCount(contribution.ClaimedBy) + sign;
+            if (count > 0) mClaimedCountByUser.put(contribution.ClaimedBy, count);
+            else mClaimedCountByUser.remove(contribution.ClaimedBy);
+        }
+    }
+}
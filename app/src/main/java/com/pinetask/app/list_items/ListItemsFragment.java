@@ -8,6 +8,7 @@ import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.TextView;
 
 import com.pinetask.app.R;
@@ -19,8 +20,6 @@ import com.pinetask.app.hints.HintType;
 import com.pinetask.app.main.CostInputDialogFragment;
 import com.pinetask.app.main.MainActivity;
 
-import java.util.ArrayList;
-
 import javax.inject.Inject;
 
 import butterknife.BindView;
@@ -54,13 +53,21 @@ public class ListItemsFragment extends PineTaskFragment implements ListItemsView
     {
         View view = inflater.inflate(R.layout.list_items_fragment, container, false);
         ButterKnife.bind(this, view);
-        mItemsListAdapter = new ListItemAdapter(this, new ArrayList<>());
+        mItemsListAdapter = new ListItemAdapter(this);
         mItemsRecyclerView.setAdapter(mItemsListAdapter);
         mItemsRecyclerView.setLayoutManager(new LinearLayoutManager(getActivity()));
         PineTaskApplication.getInstance().getUserComponent().inject(this);
         return view;
     }
 
+    /** Detach the adapter so that it stops listening to the (presenter-owned) item store. **/
+    @Override
+    public void onDestroyView()
+    {
+        super.onDestroyView();
+        mItemsRecyclerView.setAdapter(null);
+    }
+
     @Override
     public void onPause()
     {
@@ -93,35 +100,33 @@ public class ListItemsFragment extends PineTaskFragment implements ListItemsView
     }
 
     @Override
-    public void addItem(PineTaskItemExt item)
+    public void setItemStore(ListItemStore itemStore)
     {
-        mItemsListAdapter.add(item);
+        mItemsListAdapter.setItemStore(itemStore);
     }
 
     @Override
-    public void notifyNewItemAdded(PineTaskItemExt item)
+    public void showItems(Runnable onDrawn)
     {
-        String msg = String.format(getString(R.string.x_has_been_added), item.getItemDescription());
-        MainActivity mainActivity = (MainActivity) getActivity();
-        mainActivity.showNotificationText(msg, 1000);
-    }
-
-    @Override
-    public void clearListItems()
-    {
-        mItemsListAdapter.clear();
-    }
-
-    @Override
-    public void removeItem(String itemId)
-    {
-        mItemsListAdapter.remove(itemId);
+        mItemsListAdapter.notifyDataSetChanged();
+        mItemsRecyclerView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener()
+        {
+            @Override
+            public boolean onPreDraw()
+            {
+                mItemsRecyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                onDrawn.run();
+                return true;
+            }
+        });
     }
 
     @Override
-    public void updateItem(PineTaskItemExt item)
+    public void notifyNewItemAdded(PineTaskItemExt item)
     {
-        mItemsListAdapter.update(item);
+        String msg = String.format(getString(R.string.x_has_been_added), item.getItemDescription());
+        MainActivity mainActivity = (MainActivity) getActivity();
+        mainActivity.showNotificationText(msg, 1000);
     }
 
     @Override
@@ -176,8 +181,8 @@ public class ListItemsFragment extends PineTaskFragment implements ListItemsView
     }
 
     @Override
-    public void showTotalCost(float total)
+    public void showTotalCost(long totalCents)
     {
-        mTotalTextView.setText(String.format("$%.2f", total));
+        mTotalTextView.setText(String.format("$%.2f", totalCents / 100.0));
     }
 }
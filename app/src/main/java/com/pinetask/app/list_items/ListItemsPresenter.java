@@ -11,5 +11,6 @@ public interface ListItemsPresenter
     void claimItem(PineTaskItemExt item);
     void unclaimItem(PineTaskItemExt item);
     void setCompletedStatus(PineTaskItemExt item, boolean isCompleted);
+    ListItemStore getItemStore();
 }
 
@@ -10,14 +10,16 @@ import com.pinetask.app.active_list_manager.ShoppingTripStartedEvent;
 import com.pinetask.app.common.AddedEvent;
 import com.pinetask.app.common.BasePresenter;
 import com.pinetask.app.common.ChildEventBase;
-import com.pinetask.app.common.DeletedEvent;
+import com.pinetask.app.common.ChildEventBatcher;
+import com.pinetask.app.common.ListRepositoryCache;
 import com.pinetask.app.common.PineTaskApplication;
 import com.pinetask.app.common.PineTaskList;
 import com.pinetask.app.common.PrefsManager;
 import com.pinetask.app.common.SoundManager;
-import com.pinetask.app.common.UpdatedEvent;
 import com.pinetask.app.db.DbHelper;
+import com.pinetask.app.db.LocalSnapshotStore;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import io.reactivex.disposables.Disposable;
@@ -33,8 +35,15 @@ public class ListItemsPresenterImpl extends BasePresenter implements ListItemsPr
     private ActiveListManager mActiveListManager;
     private SoundManager mSoundManager;
     private PrefsManager mPrefsManager;
+    private ListRepositoryCache mRepositoryCache;
+    private LocalSnapshotStore mSnapshotStore;
 
-    public ListItemsPresenterImpl(PineTaskApplication application, DbHelper dbHelper, ActiveListManager activeListManager, String userId, SoundManager soundManager, PrefsManager prefsManager)
+    /** Item store of the active list's repository (each warm list in mRepositoryCache has its own), shared with the adapter. **/
+    private ListItemStore mItemStore = new ListItemStore();
+    private ChildEventBatcher<PineTaskItemExt> mItemEventBatcher = new ChildEventBatcher<>(PineTaskItemExt::getId, this::processChildEvents);
+
+    public ListItemsPresenterImpl(PineTaskApplication application, DbHelper dbHelper, ActiveListManager activeListManager, String userId, SoundManager soundManager, PrefsManager prefsManager,
+                                  ListRepositoryCache repositoryCache, LocalSnapshotStore snapshotStore)
     {
         mApplication = application;
         mDbHelper = dbHelper;
@@ -42,6 +51,8 @@ public class ListItemsPresenterImpl extends BasePresenter implements ListItemsPr
         mActiveListManager = activeListManager;
         mSoundManager = soundManager;
         mPrefsManager = prefsManager;
+        mRepositoryCache = repositoryCache;
+        mSnapshotStore = snapshotStore;
         mActiveListSubscription = activeListManager.subscribe(this::onActiveListEvent, ex -> logError("Error getting event from ActiveListManager"));
     }
 
@@ -54,6 +65,8 @@ public class ListItemsPresenterImpl extends BasePresenter implements ListItemsPr
         }
         else if (event instanceof NoListsAvailableEvent)
         {
+            detachRepository();
+            setItemStore(new ListItemStore());
             if (mView != null)
             {
                 mView.hideListItemsLayouts();
@@ -74,12 +87,11 @@ public class ListItemsPresenterImpl extends BasePresenter implements ListItemsPr
     public void attachView(ListItemsView view)
     {
         mView = view;
+        mView.setItemStore(mItemStore);
         if (mListItemsRepository != null)
         {
             showListItemLayouts();
-            mView.clearListItems();
-            for (PineTaskItemExt item : mListItemsRepository.getItems()) addItemToViewAndNotifyIfNewItem(item);
-            updateDisplayedTotalCost();
+            showItemsAndNotifyIfNewItems(mItemStore.getItems(), () -> {});
         }
         checkForItemToAutoAdd();
     }
@@ -90,11 +102,20 @@ public class ListItemsPresenterImpl extends BasePresenter implements ListItemsPr
         mView = null;
     }
 
+    /** The item store is shared with the adapter, which reads items from it directly. **/
+    @Override
+    public ListItemStore getItemStore()
+    {
+        return mItemStore;
+    }
+
     @Override
     public void shutdown()
     {
+        // Repositories are shut down by the ListRepositoryCache.
         if (mActiveListSubscription != null) mActiveListSubscription.dispose();
-        if (mListItemsRepository != null) mListItemsRepository.shutdown();
+        detachRepository();
+        mDbHelper.flushPendingWrites();
     }
 
     private void showListItemLayouts()
@@ -106,19 +127,63 @@ public class ListItemsPresenterImpl extends BasePresenter implements ListItemsPr
         }
     }
 
+    /** Show the items of the list specified: if its repository is still warm in the cache, its items are shown immediately (and brought up to date by the
+     *  repository), otherwise a new repository is created to load them.  In that case, the items saved in the local snapshot (if it is for the same list)
+     *  are shown until the repository's initial load replaces them. **/
     private void loadItemsForList(PineTaskList list)
     {
         logMsg("Loading items for list %s", list.getId());
-        if (mListItemsRepository != null) mListItemsRepository.shutdown();
-        if (mView != null)
+        detachRepository();
+        mDbHelper.flushPendingWrites();
+        if (mView != null) mView.showListItemsLayouts();
+
+        mListItemsRepository = mRepositoryCache.get(list.getId(), ListItemsRepository.class);
+        if (mListItemsRepository != null)
         {
-            mView.clearListItems();
-            mView.showListItemsLayouts();
+            logMsg("Using warm repository for list %s (%d items)", list.getId(), mListItemsRepository.getItemStore().size());
+            setItemStore(mListItemsRepository.getItemStore());
+            mListItemsRepository.setCallbacks(this::onInitialItemsLoaded, mItemEventBatcher::add, this::onListItemsLoadError);
+            showItemsAndNotifyIfNewItems(mItemStore.getItems(), () -> {});
+            saveSnapshot();
+        }
+        else
+        {
+            ListItemStore itemStore = new ListItemStore();
+            List<PineTaskItemExt> snapshotItems = mSnapshotStore.getItems(list.getId());
+            if (snapshotItems != null)
+            {
+                logMsg("Showing %d items from local snapshot for list %s", snapshotItems.size(), list.getId());
+                itemStore.setAll(snapshotItems);
+            }
+            setItemStore(itemStore);
+            if (snapshotItems != null) showItemsAndNotifyIfNewItems(mItemStore.getItems(), () -> {});
+            mListItemsRepository = new ListItemsRepository(mDbHelper, mPrefsManager, list, mItemStore, this::onInitialItemsLoaded, mItemEventBatcher::add, this::onListItemsLoadError);
+            mRepositoryCache.put(list.getId(), mListItemsRepository);
         }
-        mListItemsRepository = new ListItemsRepository(mDbHelper, list, this::processChildEvent, this::onListItemsLoadError);
         checkForItemToAutoAdd();
     }
 
+    /** Stop receiving events from the current repository, which stays in the cache.  Pending events are applied to its store first. **/
+    private void detachRepository()
+    {
+        mItemEventBatcher.flush();
+        if (mListItemsRepository != null) mListItemsRepository.clearCallbacks();
+        mListItemsRepository = null;
+    }
+
+    /** Pass the active list's items to the local snapshot, which will save them shortly.  Nothing is saved until the initial load has completed, so that
+     *  a partly loaded list doesn't replace the saved one. **/
+    private void saveSnapshot()
+    {
+        if (mListItemsRepository != null && mListItemsRepository.isInitialLoadComplete()) mSnapshotStore.setItems(mListItemsRepository.getListId(), mItemStore.getItems());
+    }
+
+    private void setItemStore(ListItemStore itemStore)
+    {
+        mItemStore = itemStore;
+        if (mView != null) mView.setItemStore(itemStore);
+    }
+
     /** If the app was launched with an Intent to automatically add a list item, add it now. **/
     private void checkForItemToAutoAdd() {
         PineTaskList activeList = mActiveListManager.getActiveList();
@@ -131,26 +196,72 @@ public class ListItemsPresenterImpl extends BasePresenter implements ListItemsPr
         }
     }
 
-    private void processChildEvent(ChildEventBase childEvent)
+    /** Show all items from the initial load in one go, and record how long it took from starting the load until the list was drawn. **/
+    private void onInitialItemsLoaded(List<PineTaskItemExt> items)
+    {
+        long startTime = (mListItemsRepository != null) ? mListItemsRepository.getStartTime() : System.currentTimeMillis();
+        saveSnapshot();
+        showItemsAndNotifyIfNewItems(items, () ->
+        {
+            long elapsedMs = System.currentTimeMillis() - startTime;
+            logMsg("Time to first render for %d items: %d ms", items.size(), elapsedMs);
+            mDbHelper.getMetrics().recordLatency(getFirstRenderOperationDescription(items.size()), elapsedMs);
+        });
+    }
+
+    /** Metrics for time to first render are grouped by order of magnitude of the list size, so that large lists can be compared with each other. **/
+    private String getFirstRenderOperationDescription(int itemCount)
+    {
+        int bucket = 10;
+        while (bucket <= itemCount) bucket *= 10;
+        return String.format("list items first render (<%d items)", bucket);
+    }
+
+    /** Show the items in the view, and notify if any of them are new. **/
+    private void showItemsAndNotifyIfNewItems(List<PineTaskItemExt> items, Runnable onDrawn)
+    {
+        if (mView != null)
+        {
+            mView.showItems(onDrawn);
+            notifyIfNewItems(items);
+            updateDisplayedTotalCost();
+        }
+    }
+
+    /** Apply a batch of child events (collected over one frame by mItemEventBatcher) to the item store, which notifies the adapter.  If any new items were added,
+     *  show a notification for the newest one and play the "item added" sound once for the whole batch. **/
+    private void processChildEvents(List<ChildEventBase<PineTaskItemExt>> events)
     {
+        mItemStore.applyEvents(events);
+        saveSnapshot();
         if (mView != null)
         {
-            if (childEvent instanceof AddedEvent)
+            List<PineTaskItemExt> addedItems = new ArrayList<>();
+            for (ChildEventBase<PineTaskItemExt> event : events)
             {
-                AddedEvent<PineTaskItemExt> addedEvent = (AddedEvent<PineTaskItemExt>) childEvent;
-                addItemToViewAndNotifyIfNewItem(addedEvent.Item);
+                if (event instanceof AddedEvent) addedItems.add(event.Item);
             }
-            else if (childEvent instanceof DeletedEvent)
-            {
-                DeletedEvent<PineTaskItemExt> deletedEvent = (DeletedEvent<PineTaskItemExt>) childEvent;
-                mView.removeItem(deletedEvent.Item.getId());
-            }
-            else if (childEvent instanceof UpdatedEvent)
+            notifyIfNewItems(addedItems);
+            updateDisplayedTotalCost();
+        }
+    }
+
+    /** If any of the items are new, show a notification for the newest one and play the "item added" sound once.  Clears the "new" flag of each item. **/
+    private void notifyIfNewItems(List<PineTaskItemExt> items)
+    {
+        PineTaskItemExt newestNewItem = null;
+        for (PineTaskItemExt item : items)
+        {
+            if (item.getIsNewItem())
             {
-                UpdatedEvent<PineTaskItemExt> updatedEvent = (UpdatedEvent<PineTaskItemExt>) childEvent;
-                mView.updateItem(updatedEvent.Item);
+                newestNewItem = item;
+                item.setIsNewItem(false);
             }
-            updateDisplayedTotalCost();
+        }
+        if (newestNewItem != null && mView != null)
+        {
+            mView.notifyNewItemAdded(newestNewItem);
+            mSoundManager.playItemAddedSound();
         }
     }
 
@@ -174,9 +285,9 @@ public class ListItemsPresenterImpl extends BasePresenter implements ListItemsPr
             }, ex ->
             {
                 logAndShowError(ex, mApplication.getString(R.string.error_adding_item_x), item.getItemDescription());
-                if (mView != null) mView.removeItem(item.getId());
+                mItemStore.remove(item.getId());
             });
-            addItemToViewAndNotifyIfNewItem(item);
+            addItemAndNotifyIfNewItem(item);
         }
         else
         {
@@ -184,11 +295,12 @@ public class ListItemsPresenterImpl extends BasePresenter implements ListItemsPr
         }
     }
 
-    private void addItemToViewAndNotifyIfNewItem(PineTaskItemExt item)
+    private void addItemAndNotifyIfNewItem(PineTaskItemExt item)
     {
+        mItemStore.add(item);
+        saveSnapshot();
         if (mView != null)
         {
-            mView.addItem(item);
             if (item.getIsNewItem())
             {
                 mView.notifyNewItemAdded(item);
@@ -199,17 +311,33 @@ public class ListItemsPresenterImpl extends BasePresenter implements ListItemsPr
         }
     }
 
+    /** The total is maintained incrementally by the item store, so this is cheap enough to call after every change. **/
     private void updateDisplayedTotalCost()
     {
-        if (mView != null) mView.showTotalCost(mListItemsRepository.getTotalCost());
+        if (mView != null) mView.showTotalCost(mItemStore.getTotalCostCents());
+    }
+
+    /** Returns true if the items shown are from the database, so they can be modified.  Until the repository's initial load has completed, they may be from
+     *  the local snapshot, which can be out of date: updating a snapshot item would write its stale fields over collaborators' changes (DbHelper doesn't know
+     *  the item's server state yet), or recreate an item deleted by another member.  In that case, the user is asked to try again and the view is refreshed
+     *  (undoing any change already shown, such as a checked box). **/
+    private boolean canModifyItems()
+    {
+        if (mListItemsRepository != null && mListItemsRepository.isInitialLoadComplete()) return true;
+        logMsg("canModifyItems: initial load of items hasn't completed yet");
+        showErrorMessage(mApplication.getString(R.string.list_still_loading));
+        if (mView != null) mView.showItems(() -> {});
+        return false;
     }
 
-    /** Make async request to perform database update, and then update the view immediately. **/
+    /** Make async request to perform database update (merged with other changes to the item made within a short window), and then update the view immediately. **/
     @Override
     public void updateItem(PineTaskItemExt item)
     {
+        if (!canModifyItems()) return;
         mDbHelper.updateItem(item, this::showErrorMessage);
-        if (mView != null) mView.updateItem(item);
+        mItemStore.update(item);
+        saveSnapshot();
         updateDisplayedTotalCost();
     }
 
@@ -218,6 +346,7 @@ public class ListItemsPresenterImpl extends BasePresenter implements ListItemsPr
     public void setCompletedStatus(PineTaskItemExt item, boolean isCompleted)
     {
         logMsg("Setting completion status for '%s' to %b", item.getItemDescription(), isCompleted);
+        if (!canModifyItems()) return;
         if (isCompleted)
         {
             item.setClaimedBy(mUserId);
@@ -233,8 +362,10 @@ public class ListItemsPresenterImpl extends BasePresenter implements ListItemsPr
     public void deleteItem(PineTaskItemExt item)
     {
         logMsg("Deleting item: %s", item.getItemDescription());
+        if (!canModifyItems()) return;
         mDbHelper.deleteItem(item, this::showErrorMessage);
-        if (mView != null) mView.removeItem(item.getId());
+        mItemStore.remove(item.getId());
+        saveSnapshot();
     }
 
     /** Sets the item to be claimed by the current user, and then updates the item in the database. **/
@@ -242,6 +373,7 @@ public class ListItemsPresenterImpl extends BasePresenter implements ListItemsPr
     public void claimItem(PineTaskItemExt item)
     {
         logMsg("Claiming item '%s'", item.getItemDescription());
+        if (!canModifyItems()) return;
         item.setClaimedBy(mUserId);
         updateItem(item);
     }
@@ -251,6 +383,7 @@ public class ListItemsPresenterImpl extends BasePresenter implements ListItemsPr
     public void unclaimItem(PineTaskItemExt item)
     {
         logMsg("Unclaiming item '%s'", item.getItemDescription());
+        if (!canModifyItems()) return;
         item.setClaimedBy(null);
         updateItem(item);
     }
@@ -1,9 +1,10 @@
 package com.pinetask.app.list_items;
 
 import com.pinetask.app.common.AddedEvent;
+import com.pinetask.app.common.CachedRepository;
 import com.pinetask.app.common.ChildEventBase;
-import com.pinetask.app.common.DeletedEvent;
 import com.pinetask.app.common.PineTaskList;
+import com.pinetask.app.common.PrefsManager;
 import com.pinetask.app.common.UpdatedEvent;
 import com.pinetask.app.db.DbHelper;
 import com.pinetask.app.common.LoggingBase;
@@ -11,101 +12,210 @@ import com.pinetask.app.common.LoggingBase;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Consumer;
+import io.reactivex.subjects.UnicastSubject;
 
-public class ListItemsRepository extends LoggingBase
+public class ListItemsRepository extends LoggingBase implements CachedRepository
 {
-    List<PineTaskItemExt> mItems = new ArrayList<>();
-    List<PineTaskItemExt> getItems() { return mItems; }
+    /** Rough size of one item (the object, its strings, and its entry in the store's indexes), for ListRepositoryCache's memory accounting. **/
+    private static final long ESTIMATED_ITEM_SIZE_BYTES = 400;
+
+    /** Shared with the presenter and adapter while the list is active.  The repository fills it with the initial snapshot; subsequent changes are applied by
+     *  the presenter while the list is active, and by the repository itself while it isn't. **/
+    ListItemStore mItemStore;
     Long mLastItemTimestamp;
     Disposable mSubscription;
+    PrefsManager mPrefsManager;
+    DbHelper mDbHelper;
+    PineTaskList mList;
+    String mListId;
+    String getListId() { return mListId; }
+
+    /** Callbacks to the presenter: set while the list is active, and null while it is warm in the ListRepositoryCache. **/
+    private Consumer<List<PineTaskItemExt>> mInitialLoadCompleted;
+    private Consumer<ChildEventBase<PineTaskItemExt>> mOnChildEvent;
+    private Consumer<Throwable> mOnError;
+
+    private boolean mIsInitialLoadComplete;
+    public boolean isInitialLoadComplete() { return mIsInitialLoadComplete; }
+    public ListItemStore getItemStore() { return mItemStore; }
+
+    /** Newest createdAt timestamp seen so far; persisted so that the next time the list is opened, items created after it are flagged as new. **/
+    long mLastSeenItemTimestamp;
+
+    /** Time when the repository was created, for measuring how long the initial load takes. **/
+    private long mStartTime;
+    long getStartTime() { return mStartTime; }
+
+    /** Loads the list in two phases:
+     *  1) Initial load: the whole list is read as a single snapshot, deserialized and prepared off the main thread, and passed to initialLoadCompleted in one call.
+     *  2) Incremental: changes since the snapshot are passed to onChildEvent.  Events for items already in the store are filtered out, but the store itself
+     *     is not modified: the presenter applies the events (in batches) so that the adapter is notified as it changes.
+     *  The child listener is attached before the snapshot is read, and its events are buffered until the snapshot has been loaded: otherwise an item deleted
+     *  between reading the snapshot and attaching the listener would never get a DeletedEvent, and would stay in the store.
+     *  Items created after the persisted "last seen" timestamp for the list are flagged as new.  If no timestamp has been persisted yet (first time the list
+     *  is opened on this device), the timestamp of the newest item in the list is looked up first. **/
+    public ListItemsRepository(DbHelper dbHelper, PrefsManager prefsManager, PineTaskList list, ListItemStore itemStore, Consumer<List<PineTaskItemExt>> initialLoadCompleted,
+                               Consumer<ChildEventBase<PineTaskItemExt>> onChildEvent, Consumer<Throwable> onError)
+    {
+        mItemStore = itemStore;
+        mPrefsManager = prefsManager;
+        mDbHelper = dbHelper;
+        mList = list;
+        mListId = list.getId();
+        mLastSeenItemTimestamp = prefsManager.getLastSeenItemTimestamp(mListId);
+        setCallbacks(initialLoadCompleted, onChildEvent, onError);
+        load();
+    }
+
+    /** Sets the callbacks to the presenter (when the list becomes active). **/
+    public void setCallbacks(Consumer<List<PineTaskItemExt>> initialLoadCompleted, Consumer<ChildEventBase<PineTaskItemExt>> onChildEvent, Consumer<Throwable> onError)
+    {
+        mInitialLoadCompleted = initialLoadCompleted;
+        mOnChildEvent = onChildEvent;
+        mOnError = onError;
+    }
+
+    /** Removes the callbacks to the presenter (when another list becomes active): changes are then applied directly to the item store. **/
+    public void clearCallbacks()
+    {
+        setCallbacks(null, null, null);
+    }
 
-    public ListItemsRepository(DbHelper dbHelper, PineTaskList list, Consumer<ChildEventBase<PineTaskItemExt>> onChildEvent, Consumer<Throwable> onError)
+    /** Runs both phases of the load.  Also used by resume(): items changed or deleted while the repository was parked are only found by a full snapshot, and
+     *  only items created since the newest item seen before parking are flagged as new. **/
+    private void load()
     {
-        mSubscription = dbHelper.getLastListItemTimestamp(list.getId())
+        mStartTime = System.currentTimeMillis();
+        mIsInitialLoadComplete = false;
+        DbHelper dbHelper = mDbHelper;
+        PineTaskList list = mList;
+        Single<Long> lastItemTimestampSingle = (mLastSeenItemTimestamp >= 0) ? Single.just(mLastSeenItemTimestamp) : dbHelper.getLastListItemTimestamp(mListId);
+
+        UnicastSubject<ChildEventBase<PineTaskItemExt>> bufferedEvents = UnicastSubject.create();
+        Disposable childEventSubscription = dbHelper.subscribeListItems(mListId).subscribe(bufferedEvents::onNext, bufferedEvents::onError);
+
+        Disposable loadSubscription = lastItemTimestampSingle
                 .doOnSubscribe(__ -> logMsg("Subscription has been created"))
                 .doOnSuccess(lastItemTimestamp -> logMsg("Last item's timestamp for list %s is %s", list.getId(), getTimestamp(lastItemTimestamp)))
                 .doOnSuccess(lastOpenTimestamp -> mLastItemTimestamp = lastOpenTimestamp)
-                .flatMapObservable(__ -> dbHelper.subscribeListItems(list.getId()))
+                .flatMap(__ -> dbHelper.getListItems(mListId))
+                .map(this::prepareInitialItems)
+                .observeOn(AndroidSchedulers.mainThread())
+                .doOnSuccess(items ->
+                {
+                    mItemStore.setAll(items);
+                    mIsInitialLoadComplete = true;
+                    logMsg("Initial load of %d items completed in %d ms", items.size(), System.currentTimeMillis() - mStartTime);
+                    if (mInitialLoadCompleted != null) mInitialLoadCompleted.accept(items);
+                })
+                .flatMapObservable(__ -> bufferedEvents)
                 .doOnNext(this::printDebugInfo)
                 .doOnNext(childEvent -> childEvent.Item.setListId(list.getId()))
                 .filter(event -> event.Item.getId() != null)
-                .filter(event -> !((event instanceof AddedEvent) && (mItems.contains(event.Item))))
+                .map(this::convertChangedAddToUpdate)
+                .filter(event -> !((event instanceof AddedEvent) && (mItemStore.contains(event.Item.getId()))))
                 .filter(event -> !((event instanceof UpdatedEvent) && containsIdenticalItem(event.Item)))
-                .doOnNext(this::updateCache)
                 .doOnNext(childEvent -> childEvent.Item.setIsNewItem(childEvent.Item.getCreatedAtMs() > mLastItemTimestamp))
+                .doOnNext(childEvent -> updateLastSeenItemTimestamp(childEvent.Item.getCreatedAtMs()))
                 .doOnNext(childEvent -> logMsg("Loaded item %s, createdAt=%s, isNew=%b", childEvent.Item.getId(), getTimestamp(childEvent.Item.getCreatedAtMs()), childEvent.Item.getIsNewItem()))
-                .subscribe(onChildEvent, onError);
+                .subscribe(this::onChildEvent, this::onError);
+        mSubscription = new CompositeDisposable(childEventSubscription, loadSubscription);
     }
 
-    private void printDebugInfo(ChildEventBase<PineTaskItemExt> childEvent)
+    /** Pass the event to the presenter while the list is active; otherwise, apply it to the store so that it's up to date when the list is next shown. **/
+    private void onChildEvent(ChildEventBase<PineTaskItemExt> event) throws Exception
     {
-        logMsg("printDebugInfo: childEvent is type %s. Item info: %s", childEvent.getClass().getSimpleName(), childEvent.Item.getDebugInfo());
-        logMsg("printDebugInfo: mItems contains %d entries:", mItems.size());
-        for (PineTaskItemExt item : mItems)
-        {
-            logMsg("--- %s", item.getDebugInfo());
-        }
+        if (mOnChildEvent != null) mOnChildEvent.accept(event);
+        else mItemStore.applyEvents(Collections.singletonList(event));
     }
 
-    private String getTimestamp(Long ms)
+    private void onError(Throwable ex) throws Exception
     {
-        return String.format("%d (%s)", ms, new DateTime(ms).toString(DateTimeFormat.shortDateTime()));
+        if (mOnError != null) mOnError.accept(ex);
+        else logErrorAndException(ex, "Error loading items for inactive list %s", mListId);
     }
 
-    /** Process added/deleted/uddated events and update mItems as needed. **/
-    private void updateCache(ChildEventBase<PineTaskItemExt> childEvent)
+    /** Called (off the main thread) with the items from the initial snapshot: populates the list ID and "is new" flag of each item, and finds the newest timestamp. **/
+    private List<PineTaskItemExt> prepareInitialItems(List<PineTaskItemExt> items)
     {
-        if (childEvent instanceof DeletedEvent)
-        {
-            DeletedEvent<PineTaskItemExt> deletedEvent = (DeletedEvent<PineTaskItemExt>) childEvent;
-            logMsg("DeletedEvent for %s", childEvent.Item.getId());
-            mItems.remove(deletedEvent.Item);
-        }
-        else if (childEvent instanceof AddedEvent)
+        long newestTimestamp = -1;
+        for (PineTaskItemExt item : items)
         {
-            AddedEvent<PineTaskItemExt> addedEvent = (AddedEvent<PineTaskItemExt>) childEvent;
-            mItems.add(addedEvent.Item);
-        }
-        else if (childEvent instanceof UpdatedEvent)
-        {
-            UpdatedEvent<PineTaskItemExt> updatedEvent = (UpdatedEvent<PineTaskItemExt>) childEvent;
-            int i = mItems.indexOf(updatedEvent.Item);
-            if (i != -1) mItems.set(i, updatedEvent.Item);
+            item.setListId(mListId);
+            item.setIsNewItem(item.getCreatedAtMs() > mLastItemTimestamp);
+            if (item.getCreatedAtMs() > newestTimestamp) newestTimestamp = item.getCreatedAtMs();
         }
+        updateLastSeenItemTimestamp(newestTimestamp);
+        return items;
+    }
+
+    /** When the child listener is first attached, it emits an AddedEvent for every item that was already in the initial snapshot.  If the item changed in between,
+     *  convert the event to an UpdatedEvent so the change isn't lost (identical items are then filtered out as duplicates). **/
+    private ChildEventBase<PineTaskItemExt> convertChangedAddToUpdate(ChildEventBase<PineTaskItemExt> event)
+    {
+        if ((event instanceof AddedEvent) && mItemStore.contains(event.Item.getId()) && !containsIdenticalItem(event.Item)) return new UpdatedEvent<>(event.Item);
+        else return event;
+    }
+
+    private void printDebugInfo(ChildEventBase<PineTaskItemExt> childEvent)
+    {
+        logMsg("printDebugInfo: childEvent is type %s. Item info: %s", childEvent.getClass().getSimpleName(), childEvent.Item.getDebugInfo());
+    }
+
+    private String getTimestamp(Long ms)
+    {
+        return String.format("%d (%s)", ms, new DateTime(ms).toString(DateTimeFormat.shortDateTime()));
     }
 
     /** Returns true if the list contains an item with the same ID and content as the specified item. **/
     private boolean containsIdenticalItem(PineTaskItemExt item)
     {
-        int i = mItems.indexOf(item);
-        if (i != -1)
-        {
-            PineTaskItemExt existingItem = mItems.get(i);
-            return item.exactlyEqual(existingItem);
-        }
-        else
+        PineTaskItemExt existingItem = mItemStore.getById(item.getId());
+        return (existingItem != null) && item.exactlyEqual(existingItem);
+    }
+
+    /** Raise the persisted "last seen" timestamp if the item is newer than anything seen before. **/
+    private void updateLastSeenItemTimestamp(long createdAtMs)
+    {
+        if (createdAtMs > mLastSeenItemTimestamp)
         {
-            return false;
+            mLastSeenItemTimestamp = createdAtMs;
+            mPrefsManager.setLastSeenItemTimestamp(mListId, createdAtMs);
         }
     }
 
+    @Override
+    public void park()
+    {
+        logMsg("Parking listener for list %s", mListId);
+        mSubscription.dispose();
+    }
+
+    @Override
+    public void resume()
+    {
+        logMsg("Resuming listener for list %s", mListId);
+        mSubscription.dispose();
+        load();
+    }
+
+    @Override
     public void shutdown()
     {
         mSubscription.dispose();
     }
 
-    public float getTotalCost()
+    @Override
+    public long getEstimatedSizeBytes()
     {
-        float total = 0;
-        for (PineTaskItemExt item : mItems)
-        {
-            if (item.getCost() != null) total += item.getCost();
-        }
-        return total;
+        return mItemStore.size() * ESTIMATED_ITEM_SIZE_BYTES;
     }
 }
@@ -1,26 +1,19 @@
 package com.pinetask.app.list_items;
 
-import java.util.List;
-
 public interface ListItemsView
 {
-    /** Adds the specified item to the bottom of the list. **/
-    void addItem(PineTaskItemExt item);
+    /** Display the item store specified (each list has its own store, so it changes when the active list changes). **/
+    void setItemStore(ListItemStore itemStore);
+
+    /** Refreshes the display from the item store (which the adapter reads directly).  onDrawn is invoked the first time the list is drawn after that. **/
+    void showItems(Runnable onDrawn);
 
     /** Show pop-up message to notify a new item was added. **/
     void notifyNewItemAdded(PineTaskItemExt item);
 
-    /** Update the item in the list. **/
-    void updateItem(PineTaskItemExt item);
-
-    /** Removes the item with the specified ID from the list. **/
-    void removeItem(String itemId);
-
     /** Show the items list and "add" button. **/
     void showListItemsLayouts();
 
-    void clearListItems();
-
     /** Hide items list and "add" button. **/
     void hideListItemsLayouts();
 
@@ -36,6 +29,6 @@ public interface ListItemsView
     /** Hide per-item cost fields and total cost field **/
     void hideCostFields();
 
-    /** Show total cost of all displayed items **/
-    void showTotalCost(float total);
+    /** Show total cost of all displayed items, in cents **/
+    void showTotalCost(long totalCents);
 }
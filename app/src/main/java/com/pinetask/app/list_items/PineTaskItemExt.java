@@ -66,6 +66,12 @@ public class PineTaskItemExt extends PineTaskItem implements Serializable, UsesK
         }
     }
 
+    @Override
+    public int hashCode()
+    {
+        return (mKey == null) ? 0 : mKey.hashCode();
+    }
+
     public boolean exactlyEqual(PineTaskItemExt other)
     {
         return TextUtils.equals(getId(), other.getId()) && TextUtils.equals(getListId(), other.getListId()) && (getIsNewItem() == other.getIsNewItem()) && super.exactlyEqual(other)
@@ -1,10 +1,12 @@
 package com.pinetask.app.list_members;
 
 import com.pinetask.app.common.AddedEvent;
+import com.pinetask.app.common.CachedRepository;
 import com.pinetask.app.common.ChildEventBase;
 import com.pinetask.app.common.DeletedEvent;
 import com.pinetask.app.common.PineTaskList;
 import com.pinetask.app.db.DbHelper;
+import com.pinetask.app.db.UserProfileCache;
 import com.pinetask.app.common.LoggingBase;
 
 import java.util.ArrayList;
@@ -14,20 +16,58 @@ import io.reactivex.Single;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Consumer;
 
-public class ListMembersRepository extends LoggingBase
+public class ListMembersRepository extends LoggingBase implements CachedRepository
 {
+    /** Rough size of one member (the object and its strings), for ListRepositoryCache's memory accounting. **/
+    private static final long ESTIMATED_MEMBER_SIZE_BYTES = 200;
+
     private List<MemberInfo> mCurrentListMembers;
     public List<MemberInfo> getListMembers() { return mCurrentListMembers; }
     private Disposable mSubscription;
+    private DbHelper mDbHelper;
+    private UserProfileCache mUserProfileCache;
+    private PineTaskList mList;
+    String getListId() { return mList.getId(); }
+    private String mCurrentUserId;
+
+    /** Callbacks to the presenter: set while the list is active, and null while it is warm in the ListRepositoryCache. **/
+    private Consumer<ChildEventBase<MemberInfo>> mOnChildEvent;
+    private Consumer<Throwable> mOnError;
 
     /** Attach listener to get user IDs for collaborators of the specified list, emitting added/deleted events for MemberInfo objects which are then passed to
      *  the view (if still attached) to add or remove the member from the displayed list. **/
-    ListMembersRepository(DbHelper dbHelper, PineTaskList pineTaskList, String currentUserId, Consumer<ChildEventBase<MemberInfo>> onChildEvent, Consumer<Throwable> onError)
+    ListMembersRepository(DbHelper dbHelper, UserProfileCache userProfileCache, PineTaskList pineTaskList, String currentUserId, Consumer<ChildEventBase<MemberInfo>> onChildEvent, Consumer<Throwable> onError)
     {
         mCurrentListMembers = new ArrayList<>();
+        mDbHelper = dbHelper;
+        mUserProfileCache = userProfileCache;
+        mList = pineTaskList;
+        mCurrentUserId = currentUserId;
+        setCallbacks(onChildEvent, onError);
+        subscribe();
+    }
+
+    /** Sets the callbacks to the presenter (when the list becomes active). **/
+    void setCallbacks(Consumer<ChildEventBase<MemberInfo>> onChildEvent, Consumer<Throwable> onError)
+    {
+        mOnChildEvent = onChildEvent;
+        mOnError = onError;
+    }
 
+    /** Removes the callbacks to the presenter (when another list becomes active). **/
+    void clearCallbacks()
+    {
+        setCallbacks(null, null);
+    }
+
+    private void subscribe()
+    {
+        DbHelper dbHelper = mDbHelper;
+        UserProfileCache userProfileCache = mUserProfileCache;
+        PineTaskList pineTaskList = mList;
+        String currentUserId = mCurrentUserId;
         mSubscription = dbHelper.subscribeMembersAddedOrDeletedEvents(pineTaskList.getId())
-                .flatMapSingle(addedOrDeletedEvent -> getMemberInfoForUserId(dbHelper, addedOrDeletedEvent, currentUserId, pineTaskList.getOwnerId()))
+                .flatMapSingle(addedOrDeletedEvent -> getMemberInfoForUserId(userProfileCache, addedOrDeletedEvent, currentUserId, pineTaskList.getOwnerId()))
                 .filter(event -> !mCurrentListMembers.contains(event.Item))
                 .doOnNext(event ->
                 {
@@ -41,14 +81,21 @@ public class ListMembersRepository extends LoggingBase
                     }
                 })
                 .doOnSubscribe(__ -> logMsg("Subscription created to member added/deleted events for list %s", pineTaskList.getId()))
-                .subscribe(onChildEvent, onError);
+                .subscribe(event ->
+                {
+                    if (mOnChildEvent != null) mOnChildEvent.accept(event);
+                }, ex ->
+                {
+                    if (mOnError != null) mOnError.accept(ex);
+                    else logErrorAndException(ex, "Error loading members for inactive list %s", pineTaskList.getId());
+                });
     }
 
-    /** Look up username for the specified userId, and convert the "user ID added or deleted" event into a "MemberInfo added or deleted" event. **/
-    private Single<ChildEventBase<MemberInfo>> getMemberInfoForUserId(DbHelper dbHelper, ChildEventBase<String> userAddedOrDeletedEvent, String currentUserId, String currentListOwnerId)
+    /** Look up username for the specified userId (usually served from the cache), and convert the "user ID added or deleted" event into a "MemberInfo added or deleted" event. **/
+    private Single<ChildEventBase<MemberInfo>> getMemberInfoForUserId(UserProfileCache userProfileCache, ChildEventBase<String> userAddedOrDeletedEvent, String currentUserId, String currentListOwnerId)
     {
         String userId = userAddedOrDeletedEvent.Item;
-        return dbHelper.getUserNameSingle(userId).map(userName ->
+        return userProfileCache.getUserName(userId).map(userName ->
         {
             // The member can only be deleted if the current user is the list owner.  Owner can never be deleted.
             boolean canBeDeleted = (currentListOwnerId.equals(currentUserId)) && (!userId.equals(currentListOwnerId));
@@ -58,8 +105,33 @@ public class ListMembersRepository extends LoggingBase
         });
     }
 
+    @Override
+    public void park()
+    {
+        logMsg("Parking members listener for list %s", mList.getId());
+        mSubscription.dispose();
+    }
+
+    /** Members removed while parked aren't reported when the listener is re-attached, so the members are cleared and loaded again from the listener's
+     *  initial events (the presenter clears its display when the list becomes active). **/
+    @Override
+    public void resume()
+    {
+        logMsg("Resuming members listener for list %s", mList.getId());
+        mSubscription.dispose();
+        mCurrentListMembers.clear();
+        subscribe();
+    }
+
+    @Override
     public void shutdown()
     {
         mSubscription.dispose();
     }
+
+    @Override
+    public long getEstimatedSizeBytes()
+    {
+        return mCurrentListMembers.size() * ESTIMATED_MEMBER_SIZE_BYTES;
+    }
 }
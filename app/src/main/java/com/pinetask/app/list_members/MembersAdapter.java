@@ -10,6 +10,10 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import com.pinetask.app.active_list_manager.ActiveListManager;
+import com.pinetask.app.common.AddedEvent;
+import com.pinetask.app.common.ChildEventBase;
+import com.pinetask.app.common.ChildEventBatcher;
+import com.pinetask.app.common.DeletedEvent;
 import com.pinetask.app.common.PineTaskApplication;
 import com.pinetask.app.common.PineTaskList;
 import com.pinetask.app.main.MainActivity;
@@ -95,16 +99,50 @@ public class MembersAdapter extends RecyclerView.Adapter<MembersAdapter.MemberVi
 
     public void removeUser(String userIdToRemove)
     {
-        for (int pos=0;pos<mMembers.size();pos++)
+        int pos = findUser(userIdToRemove);
+        if (pos != -1)
+        {
+            mMembers.remove(pos);
+            notifyItemRemoved(pos);
+        }
+    }
+
+    /** Applies a batch of added / updated / deleted members.  Large batches are refreshed in a single pass, without animations. **/
+    public void applyEvents(List<ChildEventBase<MemberInfo>> events)
+    {
+        boolean isLargeBatch = events.size() > ChildEventBatcher.LARGE_BATCH_SIZE;
+        for (ChildEventBase<MemberInfo> event : events)
         {
-            String userId = mMembers.get(pos).UserId;
-            if (userIdToRemove.equals(userId))
+            int pos = findUser(event.Item.UserId);
+            if (event instanceof AddedEvent)
+            {
+                if (pos != -1) continue;
+                mMembers.add(event.Item);
+                if (!isLargeBatch) notifyItemInserted(mMembers.size()-1);
+            }
+            else if (event instanceof DeletedEvent)
             {
+                if (pos == -1) continue;
                 mMembers.remove(pos);
-                notifyItemRemoved(pos);
-                return;
+                if (!isLargeBatch) notifyItemRemoved(pos);
             }
+            else if (pos != -1)
+            {
+                mMembers.set(pos, event.Item);
+                if (!isLargeBatch) notifyItemChanged(pos);
+            }
+        }
+        if (isLargeBatch) notifyDataSetChanged();
+    }
+
+    /** Returns the position of the user specified, or -1 if not found. **/
+    private int findUser(String userId)
+    {
+        for (int pos=0;pos<mMembers.size();pos++)
+        {
+            if (userId.equals(mMembers.get(pos).UserId)) return pos;
         }
+        return -1;
     }
 
     public void clear()
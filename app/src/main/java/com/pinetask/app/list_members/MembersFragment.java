@@ -10,12 +10,15 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import com.pinetask.app.R;
+import com.pinetask.app.common.ChildEventBase;
 import com.pinetask.app.common.PineTaskApplication;
 import com.pinetask.app.common.PineTaskFragment;
 import com.pinetask.app.common.PineTaskList;
 import com.pinetask.app.main.InviteManager;
 import com.pinetask.app.main.MainActivity;
 
+import java.util.List;
+
 import javax.inject.Inject;
 
 import butterknife.BindView;
@@ -82,6 +85,12 @@ public class MembersFragment extends PineTaskFragment implements MembersView
         mAdapter.removeUser(userId);
     }
 
+    @Override
+    public void applyMemberEvents(List<ChildEventBase<MemberInfo>> events)
+    {
+        mAdapter.applyEvents(events);
+    }
+
     @Override
     public void clearListDisplay()
     {
@@ -5,13 +5,16 @@ import com.pinetask.app.active_list_manager.ActiveListEvent;
 import com.pinetask.app.active_list_manager.ActiveListManager;
 import com.pinetask.app.active_list_manager.ListLoadedEvent;
 import com.pinetask.app.active_list_manager.NoListsAvailableEvent;
-import com.pinetask.app.common.AddedEvent;
 import com.pinetask.app.common.ChildEventBase;
+import com.pinetask.app.common.ChildEventBatcher;
 import com.pinetask.app.common.BasePresenter;
 import com.pinetask.app.common.DeletedEvent;
+import com.pinetask.app.common.ListRepositoryCache;
 import com.pinetask.app.common.PineTaskApplication;
 import com.pinetask.app.common.PineTaskList;
 import com.pinetask.app.db.DbHelper;
+import com.pinetask.app.db.LocalSnapshotStore;
+import com.pinetask.app.db.UserProfileCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -27,17 +30,29 @@ public class MembersPresenterImpl extends BasePresenter implements MembersPresen
     private MembersView mView;
     private String mCurrentUserId;
     private DbHelper mDbHelper;
+    private UserProfileCache mUserProfileCache;
     private PineTaskApplication mApplication;
     private Disposable mActiveListManagerSubscription;
     private ActiveListManager mActiveListManager;
     private ListMembersRepository mListMembersRepository;
+    private ListRepositoryCache mRepositoryCache;
+    private LocalSnapshotStore mSnapshotStore;
 
-    public MembersPresenterImpl(DbHelper dbHelper, PineTaskApplication pineTaskApplication, ActiveListManager activeListManager, @Named("user_id") String userId)
+    /** Members saved in the local snapshot, shown until the first batch of member events arrives from the repository (null if not showing them). **/
+    private List<MemberInfo> mSnapshotMembers;
+    private ChildEventBatcher<MemberInfo> mMemberEventBatcher = new ChildEventBatcher<>(memberInfo -> memberInfo.UserId, this::onMemberEvents);
+
+    public MembersPresenterImpl(DbHelper dbHelper, PineTaskApplication pineTaskApplication, ActiveListManager activeListManager, @Named("user_id") String userId,
+                                UserProfileCache userProfileCache, ListRepositoryCache repositoryCache,
+                                LocalSnapshotStore snapshotStore)
     {
         mDbHelper = dbHelper;
+        mUserProfileCache = userProfileCache;
         mApplication = pineTaskApplication;
         mCurrentUserId = userId;
         mActiveListManager = activeListManager;
+        mRepositoryCache = repositoryCache;
+        mSnapshotStore = snapshotStore;
         mActiveListManagerSubscription = activeListManager.subscribe(this::handleListLoadEvent, ex -> logError("ActiveListManager reported error event: %s", ex.getMessage()));
     }
 
@@ -47,7 +62,9 @@ public class MembersPresenterImpl extends BasePresenter implements MembersPresen
         logMsg("Attaching view");
         mView = view;
         mView.clearListDisplay();
-        if (mListMembersRepository != null) for (MemberInfo m : mListMembersRepository.getListMembers()) mView.addListMember(m);
+        mMemberEventBatcher.clear();
+        if (mSnapshotMembers != null) for (MemberInfo m : mSnapshotMembers) mView.addListMember(m);
+        else if (mListMembersRepository != null) for (MemberInfo m : mListMembersRepository.getListMembers()) mView.addListMember(m);
         showOrHideAddMembersButton(mActiveListManager.getActiveList());
     }
 
@@ -61,8 +78,10 @@ public class MembersPresenterImpl extends BasePresenter implements MembersPresen
     @Override
     public void shutdown()
     {
-        if (mListMembersRepository != null) mListMembersRepository.shutdown();
+        // Repositories are shut down by the ListRepositoryCache.
+        if (mListMembersRepository != null) mListMembersRepository.clearCallbacks();
         if (mActiveListManagerSubscription != null) mActiveListManagerSubscription.dispose();
+        mMemberEventBatcher.clear();
     }
 
     /** Process events emitted by the ActiveListManager. **/
@@ -80,10 +99,13 @@ public class MembersPresenterImpl extends BasePresenter implements MembersPresen
         }
     }
 
-    /** Unsubscribe from member add/remove subscription if active, clear the list display, and hide the "Add Member" button. **/
+    /** Detach from the previous list's members repository (which stays in the cache), clear the list display, and hide the "Add Member" button. **/
     private void resetState()
     {
-        if (mListMembersRepository != null) mListMembersRepository.shutdown();
+        if (mListMembersRepository != null) mListMembersRepository.clearCallbacks();
+        mListMembersRepository = null;
+        mSnapshotMembers = null;
+        mMemberEventBatcher.clear();
         if (mView != null)
         {
             mView.clearListDisplay();
@@ -104,19 +126,43 @@ public class MembersPresenterImpl extends BasePresenter implements MembersPresen
         logMsg("loadListMembers: list=%s", list==null ? null : list.getId());
         if (mView != null) mView.setListVisible(true);
         showOrHideAddMembersButton(list);
-        mListMembersRepository = new ListMembersRepository(mDbHelper, list, mCurrentUserId, this::onMemberAddedOrDeletedEvent, this::onLoadError);
-    }
-
-    private void onMemberAddedOrDeletedEvent(ChildEventBase<MemberInfo> event)
-    {
-        if (event instanceof AddedEvent)
+        mListMembersRepository = mRepositoryCache.get(list.getId(), ListMembersRepository.class);
+        if (mListMembersRepository != null)
         {
-            if (mView != null) mView.addListMember(event.Item);
+            // Members loaded while the list was warm in the cache are shown right away; subsequent changes arrive as events.
+            logMsg("loadListMembers: using warm repository (%d members)", mListMembersRepository.getListMembers().size());
+            mListMembersRepository.setCallbacks(mMemberEventBatcher::add, this::onLoadError);
+            if (mView != null) for (MemberInfo m : mListMembersRepository.getListMembers()) mView.addListMember(m);
+            mSnapshotStore.setMembers(list.getId(), mListMembersRepository.getListMembers());
         }
         else
         {
-            if (mView != null) mView.removeListMember(event.Item.UserId);
+            mSnapshotMembers = mSnapshotStore.getMembers(list.getId());
+            if (mSnapshotMembers != null)
+            {
+                logMsg("loadListMembers: showing %d members from local snapshot", mSnapshotMembers.size());
+                if (mView != null) for (MemberInfo m : mSnapshotMembers) mView.addListMember(m);
+            }
+            mListMembersRepository = new ListMembersRepository(mDbHelper, mUserProfileCache, list, mCurrentUserId, mMemberEventBatcher::add, this::onLoadError);
+            mRepositoryCache.put(list.getId(), mListMembersRepository);
+        }
+    }
+
+    /** Apply a batch of member added / deleted events (collected over one frame) to the view.  If members from the local snapshot are being shown, they
+     *  are replaced with the members loaded so far, since members who have left the list since the snapshot was saved won't get an event. **/
+    private void onMemberEvents(List<ChildEventBase<MemberInfo>> events)
+    {
+        if (mSnapshotMembers != null)
+        {
+            mSnapshotMembers = null;
+            if (mView != null)
+            {
+                mView.clearListDisplay();
+                for (MemberInfo m : mListMembersRepository.getListMembers()) mView.addListMember(m);
+            }
         }
+        else if (mView != null) mView.applyMemberEvents(events);
+        if (mListMembersRepository != null) mSnapshotStore.setMembers(mListMembersRepository.getListId(), mListMembersRepository.getListMembers());
     }
 
     private void onLoadError(Throwable ex)
@@ -1,7 +1,10 @@
 package com.pinetask.app.list_members;
 
+import com.pinetask.app.common.ChildEventBase;
 import com.pinetask.app.common.PineTaskList;
 
+import java.util.List;
+
 public interface MembersView
 {
     /** Add the person to the displayed list. **/
@@ -10,6 +13,9 @@ public interface MembersView
     /** Remove the person from the displayed list. **/
     void removeListMember(String userId);
 
+    /** Apply a batch of added / deleted members to the displayed list in one update. **/
+    void applyMemberEvents(List<ChildEventBase<MemberInfo>> events);
+
     /** Remove all people from the displayed list **/
     void clearListDisplay();
 
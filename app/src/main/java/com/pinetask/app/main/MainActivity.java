@@ -29,6 +29,7 @@ import android.widget.TextView;
 import com.google.android.gms.appinvite.AppInvite;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
+import com.pinetask.app.BuildConfig;
 import com.pinetask.app.R;
 import com.pinetask.app.active_list_manager.ActiveListManager;
 import com.pinetask.app.chat.ChatFragment;
@@ -39,6 +40,7 @@ import com.pinetask.app.common.PineTaskActivity;
 import com.pinetask.app.common.PineTaskApplication;
 import com.pinetask.app.common.PineTaskInviteAlreadyUsedException;
 import com.pinetask.app.common.PineTaskList;
+import com.pinetask.app.common.StartupTimer;
 import com.pinetask.app.hints.HintType;
 import com.pinetask.app.launch.StartupMessageDialogFragment;
 import com.pinetask.app.list_items.ListItemsFragment;
@@ -121,6 +123,7 @@ public class MainActivity extends PineTaskActivity implements ViewPager.OnPageCh
     public void onCreate(Bundle savedInstanceState)
     {
         super.onCreate(savedInstanceState);
+        StartupTimer.onMilestone("MainActivity created");
         setContentView(R.layout.main_activity);
         ButterKnife.bind(this);
 
@@ -320,6 +323,7 @@ public class MainActivity extends PineTaskActivity implements ViewPager.OnPageCh
         logMsg("onCreateOptionsMenu: shoppingTripActive=%b", shoppingTripActive);
         startShoppingTrip.setVisible(!shoppingTripActive);
         endShoppingTrip.setVisible(shoppingTripActive);
+        menu.findItem(R.id.dbMetrics).setVisible(BuildConfig.DEBUG);
         return true;
     }
 
@@ -369,6 +373,10 @@ public class MainActivity extends PineTaskActivity implements ViewPager.OnPageCh
             case R.id.endShoppingTrip:
                 mPresenter.stopShoppingTrip();
                 return true;
+            case R.id.dbMetrics:
+                // DbMetricsActivity is only included in debug builds (see src/debug), where the menu item is shown.
+                startActivity(new Intent().setClassName(this, "com.pinetask.app.main.DbMetricsActivity"));
+                return true;
             default:
                 return super.onOptionsItemSelected(item);
         }
@@ -21,13 +21,19 @@ import com.pinetask.app.common.BasePresenter;
 import com.pinetask.app.common.ChatMessageEvent;
 import com.pinetask.app.common.PineTaskApplication;
 import com.pinetask.app.common.PineTaskList;
+import com.pinetask.app.common.PineTaskListWithCollaborators;
 import com.pinetask.app.common.PrefsManager;
 import com.pinetask.app.db.DbHelper;
+import com.pinetask.app.db.ListDirectory;
 import com.pinetask.app.hints.HintManager;
 import com.pinetask.app.launch.StartupMessageDialogFragment;
 import com.pinetask.app.manage_lists.StartupMessage;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import io.reactivex.Observable;
+import io.reactivex.Single;
 import io.reactivex.disposables.Disposable;
 
 public class MainActivityPresenterImpl extends BasePresenter implements MainActivityPresenter
@@ -39,11 +45,15 @@ public class MainActivityPresenterImpl extends BasePresenter implements MainActi
     private PineTaskApplication mApplication;
     private PrefsManager mPrefsManager;
     private ActiveListManager mActiveListManager;
+    private ListDirectory mListDirectory;
     private Disposable mActiveListManagerSubscription;
     private Disposable mUserNameSubscription;
+    private Disposable mStartupMessageSubscription;
     private StartupMessage mStartupMessage;
+    private boolean mStartupMessageChecked;
 
-    public MainActivityPresenterImpl(DbHelper dbHelper, String userId, PrefsManager prefsManager, PineTaskApplication application, ActiveListManager activeListManager)
+    public MainActivityPresenterImpl(DbHelper dbHelper, String userId, PrefsManager prefsManager, PineTaskApplication application, ActiveListManager activeListManager,
+                                     ListDirectory listDirectory)
     {
         logMsg("Creating MainActivityPresenter");
         mDbHelper = dbHelper;
@@ -51,15 +61,13 @@ public class MainActivityPresenterImpl extends BasePresenter implements MainActi
         mPrefsManager = prefsManager;
         mApplication = application;
         mActiveListManager = activeListManager;
+        mListDirectory = listDirectory;
 
         // Subscribe to ActiveListManager to be notified of events when the active list is changed.
         mActiveListManagerSubscription = mActiveListManager.subscribe(this::handleActiveListEvent, ex -> logAndShowError(ex, mApplication.getString(R.string.error_processing_list_event)));
 
         // Subscribe to user name, so it can be displayed in the side navigation drawer.
         mUserNameSubscription = mDbHelper.getUserNameObservable(mUserId).subscribe(this::showUserName, ex -> logAndShowError(ex, mApplication.getString(R.string.error_getting_username)));
-
-        // Check if there's a newer version of the startup message that the user hasn't seen yet. If so, display it.
-        loadStartupMessage();
     }
 
     /** Process events that have been emitted from the ActiveListManager. **/
@@ -67,6 +75,15 @@ public class MainActivityPresenterImpl extends BasePresenter implements MainActi
     {
         logMsg("handleActiveListEvent: %s", activeListEvent.getClass().getSimpleName());
 
+        // Once the first list has loaded (or it's known that there isn't one), check if there's a newer version of the startup message that the user hasn't
+        // seen yet. It is checked only then, so that it doesn't compete with loading the list at startup.
+        if (!mStartupMessageChecked && (activeListEvent instanceof ListLoadedEvent || activeListEvent instanceof NoListsAvailableEvent
+                || activeListEvent instanceof ListLoadErrorEvent))
+        {
+            mStartupMessageChecked = true;
+            loadStartupMessage();
+        }
+
         if (activeListEvent instanceof ListLoadedEvent)
         {
             // A new list is active: refresh the name displayed on the list selector button.
@@ -142,11 +159,15 @@ public class MainActivityPresenterImpl extends BasePresenter implements MainActi
         }
     }
 
-    /** Unless this is the first app launch, query the server for the startup message and its version.  If the user hasn't seen it yet, display the message now. **/
+    /** Unless this is the first app launch, subscribe to the startup message.  Whenever it has a version the user hasn't seen yet, display the message.
+     *  The version the user last read is cached in shared prefs; it is only read from the database the first time (ex: after a new install). **/
     private void loadStartupMessage()
     {
         if (mPrefsManager.getIsFirstLaunch()) return;
-        mDbHelper.getStartupMessageIfUnread(mUserId)
+        Integer cachedReadVersion = mPrefsManager.getStartupMessageReadVersion(mUserId);
+        Single<Integer> readVersion = (cachedReadVersion != null) ? Single.just(cachedReadVersion)
+                : mDbHelper.getUserStartupMessageVersion(mUserId).doOnSuccess(version -> mPrefsManager.setStartupMessageReadVersion(mUserId, version));
+        mStartupMessageSubscription = readVersion.flatMapObservable(mDbHelper::subscribeStartupMessageIfNewer)
                 .subscribe(startupMessage ->
                 {
                     if (startupMessage.version > 0)
@@ -192,20 +213,29 @@ public class MainActivityPresenterImpl extends BasePresenter implements MainActi
         logMsg("shutdown: shutting down subscriptions");
         if (mActiveListManagerSubscription != null) mActiveListManagerSubscription.dispose();
         if (mUserNameSubscription != null) mUserNameSubscription.dispose();
+        if (mStartupMessageSubscription != null) mStartupMessageSubscription.dispose();
     }
 
-    /** Load info for all lists that the user has access to, and display them in selector dialog for user to switch lists.
-     *  If any particular list fails to load, log exception detail but proceed loading the other lists. **/
+    /** Display all lists that the user has access to in selector dialog for user to switch lists.  If the list directory has loaded, the lists are shown
+     *  immediately from memory, and the directory is then reconciled with the database in the background.  Otherwise, the user's list summaries are read. **/
     @Override
     public void onListSelectorClicked()
     {
-        mDbHelper.getListIdsForUser(mUserId)
-                .flatMap(mDbHelper::tryGetPineTaskList)
-                .toList()
+        // Before the list directory has loaded (shortly after startup), the lists saved in the local snapshot are shown.
+        List<PineTaskListWithCollaborators> cachedLists = mListDirectory.getListsOrSnapshot();
+        if (cachedLists != null)
+        {
+            logMsg("onListSelectorClicked: showing %d lists from list directory (loaded=%b)", cachedLists.size(), mListDirectory.isLoaded());
+            if ((cachedLists.size() > 0) && (mView != null)) mView.showListChooser(new ArrayList<PineTaskList>(cachedLists));
+            mListDirectory.refresh();
+            return;
+        }
+
+        mDbHelper.getListSummaries(mUserId)
                 .subscribe(lists ->
                 {
                     logMsg("onListSelectorClicked: loaded %s lists", lists.size());
-                    if ((lists.size() > 0) && (mView != null)) mView.showListChooser(lists);
+                    if ((lists.size() > 0) && (mView != null)) mView.showListChooser(new ArrayList<PineTaskList>(lists));
                 }, ex ->
                 {
                     logAndShowError(ex, "Error loading lists");
@@ -251,9 +281,9 @@ public class MainActivityPresenterImpl extends BasePresenter implements MainActi
     @Override
     public void purgeCompletedItems(String listId)
     {
-        mDbHelper.purgeCompletedItems(listId).subscribe(() ->
+        mDbHelper.purgeCompletedItems(listId).subscribe(result ->
         {
-            logMsg("Purging completed items completed");
+            logMsg("Purging completed items completed: %s", result);
         }, ex ->
         {
             logAndShowError(ex, mApplication.getString(R.string.error_purging_completed_items));
@@ -263,9 +293,9 @@ public class MainActivityPresenterImpl extends BasePresenter implements MainActi
     @Override
     public void uncompleteAllItems(String listId)
     {
-        mDbHelper.uncompleteAllItems(listId).subscribe(() ->
+        mDbHelper.uncompleteAllItems(listId).subscribe(result ->
         {
-            logMsg("Uncomplete all items completed");
+            logMsg("Uncomplete all items completed: %s", result);
         }, ex ->
         {
             logAndShowError(ex, mApplication.getString(R.string.error_uncompleting_all_items));
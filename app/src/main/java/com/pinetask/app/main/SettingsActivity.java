@@ -78,6 +78,7 @@ public class SettingsActivity extends PineTaskActivity
         mAnonymousLayout.setVisibility(View.GONE);
         mDbHelper.getIsAnonymous(userId).subscribe(isAnonymous ->
         {
+            mPrefsManager.setCachedAccountState(userId, isAnonymous);
             if (isAnonymous) mAnonymousLayout.setVisibility(View.VISIBLE);
         }, ex ->
         {
@@ -104,7 +105,9 @@ public class SettingsActivity extends PineTaskActivity
             {
                 logMsg("onActivityResult: Firebase auth returned successfully.  Removing 'anonymous' account flag.");
                 String userId = getIntent().getStringExtra(USER_ID_KEY);
-                mDbHelper.setIsAnonymous(userId, false).subscribe(activityObserver("remove anonymous status"));
+                mDbHelper.setIsAnonymous(userId, false)
+                        .doOnComplete(() -> mPrefsManager.setCachedAccountState(userId, false))
+                        .subscribe(activityObserver("remove anonymous status"));
             }
             else
             {
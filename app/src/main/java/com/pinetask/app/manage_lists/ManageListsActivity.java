@@ -11,6 +11,7 @@ import android.view.View;
 import android.widget.TextView;
 
 import com.pinetask.app.common.PineTaskActivity;
+import com.pinetask.app.common.PineTaskApplication;
 import com.pinetask.app.common.PineTaskList;
 import com.pinetask.app.common.PineTaskListWithCollaborators;
 import com.pinetask.app.R;
@@ -67,7 +68,7 @@ public class ManageListsActivity extends PineTaskActivity implements ManageLists
 
         // Attach or re-attach presenter and start data load.
         mPresenter = (ManageListsContract.IManageListsPresenter) getLastCustomNonConfigurationInstance();
-        if (mPresenter == null) mPresenter = new ManageListsPresenter(userId);
+        if (mPresenter == null) mPresenter = new ManageListsPresenter(PineTaskApplication.getInstance().getUserComponent().listDirectory());
         mPresenter.attachView(this);
     }
 
@@ -2,7 +2,7 @@ package com.pinetask.app.manage_lists;
 
 import com.pinetask.app.common.PineTaskListWithCollaborators;
 import com.pinetask.app.R;
-import com.pinetask.app.db.RxListLoader;
+import com.pinetask.app.db.ListDirectory;
 import com.pinetask.app.db.RxListLoaderCallbacks;
 import com.pinetask.app.common.LoggingBase;
 
@@ -11,12 +11,13 @@ import java.util.List;
 public class ManageListsPresenter extends LoggingBase implements ManageListsContract.IManageListsPresenter, RxListLoaderCallbacks
 {
     ManageListsContract.IManageListsView mView;
-    RxListLoader mListLoader;
+    ListDirectory mListDirectory;
 
-    public ManageListsPresenter(String userId)
+    /** Lists are read from the user's list directory, which has usually already loaded them, so they can be shown immediately. **/
+    public ManageListsPresenter(ListDirectory listDirectory)
     {
-        if (mView != null) mView.showLoadStatus(R.string.loading_lists);
-        mListLoader = new RxListLoader(userId, this);
+        mListDirectory = listDirectory;
+        mListDirectory.addListener(this);
     }
 
     /**** Begin implementation of RxListLoaderCallbacks. ********/
@@ -61,7 +62,7 @@ public class ManageListsPresenter extends LoggingBase implements ManageListsCont
     {
         if (mView != null)
         {
-            if (mListLoader.getLists().size()==0) mView.showLoadStatus(R.string.no_lists_found);
+            if (mListDirectory.getLists().size()==0) mView.showLoadStatus(R.string.no_lists_found);
             else mView.hideLoadStatus();
         }
     }
@@ -71,7 +72,8 @@ public class ManageListsPresenter extends LoggingBase implements ManageListsCont
     {
         logMsg("Attaching view");
         mView = view;
-        if (mListLoader.getLists()!=null) onListsLoaded(mListLoader.getLists());
+        if (mListDirectory.isLoaded()) onListsLoaded(mListDirectory.getLists());
+        else mView.showLoadStatus(R.string.loading_lists);
     }
 
     @Override
@@ -81,8 +83,8 @@ public class ManageListsPresenter extends LoggingBase implements ManageListsCont
         mView = null;
         if (isFinishing)
         {
-            logMsg("detachView: shutting down RxListLoader");
-            mListLoader.shutdown();
+            logMsg("detachView: removing list directory listener");
+            mListDirectory.removeListener(this);
         }
     }
 }
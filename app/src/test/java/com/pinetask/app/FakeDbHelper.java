@@ -5,13 +5,16 @@ import com.pinetask.app.common.ChildEventBase;
 import com.pinetask.app.common.PineTaskList;
 import com.pinetask.app.common.PineTaskListWithCollaborators;
 import com.pinetask.app.common.UserMessageListener;
+import com.pinetask.app.db.BulkUpdateResult;
 import com.pinetask.app.db.DbHelper;
+import com.pinetask.app.db.DbMetrics;
 import com.pinetask.app.list_items.PineTaskItemExt;
 import com.pinetask.app.main.InviteInfo;
 import com.pinetask.app.manage_lists.StartupMessage;
 
+import java.util.List;
+
 import io.reactivex.Completable;
-import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
@@ -156,7 +159,13 @@ public class FakeDbHelper implements DbHelper
     }
 
     @Override
-    public Observable<PineTaskList> subscribeListInfo(String listId)
+    public Single<List<PineTaskListWithCollaborators>> getListSummaries(String userId)
+    {
+        return null;
+    }
+
+    @Override
+    public Observable<ChildEventBase<PineTaskListWithCollaborators>> subscribeListSummaries(String userId)
     {
         return null;
     }
@@ -167,12 +176,42 @@ public class FakeDbHelper implements DbHelper
         return null;
     }
 
+    @Override
+    public Single<Long> getListItemCount(String listId)
+    {
+        return null;
+    }
+
+    @Override
+    public Completable repairListStats(String listId)
+    {
+        return null;
+    }
+
     @Override
     public Observable<ChildEventBase<ChatMessage>> subscribeChatMessages(String listId)
     {
         return null;
     }
 
+    @Override
+    public Observable<ChildEventBase<ChatMessage>> subscribeChatMessagesAfter(String listId, String startKey)
+    {
+        return null;
+    }
+
+    @Override
+    public Single<List<ChatMessage>> getNewestChatMessages(String listId, int count)
+    {
+        return null;
+    }
+
+    @Override
+    public Single<List<ChatMessage>> getChatMessagesBefore(String listId, String beforeKey, int count)
+    {
+        return null;
+    }
+
     @Override
     public void sendChatMessage(String listId, ChatMessage chatMessage)
     {
@@ -197,6 +236,12 @@ public class FakeDbHelper implements DbHelper
         return null;
     }
 
+    @Override
+    public Single<List<PineTaskItemExt>> getListItems(String listId)
+    {
+        return null;
+    }
+
     @Override
     public void updateItem(PineTaskItemExt item, UserMessageListener userMessageListener)
     {
@@ -240,7 +285,7 @@ public class FakeDbHelper implements DbHelper
     }
 
     @Override
-    public Maybe<StartupMessage> getStartupMessageIfUnread(String userId)
+    public Observable<StartupMessage> subscribeStartupMessageIfNewer(int readVersion)
     {
         return null;
     }
@@ -252,7 +297,13 @@ public class FakeDbHelper implements DbHelper
     }
 
     @Override
-    public Completable purgeCompletedItems(String listId)
+    public Single<BulkUpdateResult> purgeCompletedItems(String listId)
+    {
+        return null;
+    }
+
+    @Override
+    public Single<BulkUpdateResult> uncompleteAllItems(String listId)
     {
         return null;
     }
@@ -263,6 +314,17 @@ public class FakeDbHelper implements DbHelper
 
     }
 
+    @Override
+    public void flushPendingWrites()
+    {
+    }
+
+    @Override
+    public DbMetrics getMetrics()
+    {
+        return null;
+    }
+
     @Override
     public Observable<Boolean> subscribeToShoppingTripActiveEventsForList(String listId)
     {
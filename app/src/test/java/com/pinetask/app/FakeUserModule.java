@@ -2,11 +2,15 @@ package com.pinetask.app;
 
 import com.pinetask.app.active_list_manager.ActiveListManager;
 import com.pinetask.app.chat.ChatPresenter;
+import com.pinetask.app.common.ListRepositoryCache;
 import com.pinetask.app.common.PineTaskApplication;
 import com.pinetask.app.common.PrefsManager;
 import com.pinetask.app.common.SoundManager;
 import com.pinetask.app.common.UserModule;
 import com.pinetask.app.db.DbHelper;
+import com.pinetask.app.db.ListDirectory;
+import com.pinetask.app.db.LocalSnapshotStore;
+import com.pinetask.app.db.UserProfileCache;
 import com.pinetask.app.hints.HintManager;
 import com.pinetask.app.list_items.ListItemsPresenter;
 import com.pinetask.app.list_members.MembersPresenter;
@@ -29,32 +33,55 @@ public class FakeUserModule extends UserModule
     }
 
     @Override
-    public ActiveListManager providesActiveListManager(PrefsManager prefsManager, DbHelper dbHelper, @Named("user_id") String userId, HintManager hintManager)
+    public LocalSnapshotStore providesLocalSnapshotStore(PineTaskApplication application, @Named("user_id") String userId, DbHelper dbHelper)
     {
-        return super.providesActiveListManager(prefsManager, dbHelper, userId, hintManager);
+        return super.providesLocalSnapshotStore(application, userId, dbHelper);
     }
 
     @Override
-    public MainActivityPresenter providesMainActivityPresenter(DbHelper dbHelper, @Named("user_id") String userId, PrefsManager prefsManager, PineTaskApplication pineTaskApplication, ActiveListManager activeListManager)
+    public ListDirectory providesListDirectory(DbHelper dbHelper, @Named("user_id") String userId, LocalSnapshotStore snapshotStore)
     {
-        return super.providesMainActivityPresenter(dbHelper, userId, prefsManager, pineTaskApplication, activeListManager);
+        return super.providesListDirectory(dbHelper, userId, snapshotStore);
     }
 
     @Override
-    public ListItemsPresenter providesListItemsPresenter(PineTaskApplication application, DbHelper dbHelper, ActiveListManager activeListManager, @Named("user_id") String userId, SoundManager soundManager)
+    public ListRepositoryCache providesListRepositoryCache()
     {
-        return super.providesListItemsPresenter(application, dbHelper, activeListManager, userId, soundManager);
+        return super.providesListRepositoryCache();
     }
 
     @Override
-    public MembersPresenter providesMembersPresenter(DbHelper dbHelper, PineTaskApplication pineTaskApplication, ActiveListManager activeListManager, @Named("user_id") String userId)
+    public ActiveListManager providesActiveListManager(PrefsManager prefsManager, DbHelper dbHelper, @Named("user_id") String userId, HintManager hintManager,
+                                                       ListDirectory listDirectory, ListRepositoryCache repositoryCache)
+    {
+        return super.providesActiveListManager(prefsManager, dbHelper, userId, hintManager, listDirectory, repositoryCache);
+    }
+
+    @Override
+    public MainActivityPresenter providesMainActivityPresenter(DbHelper dbHelper, @Named("user_id") String userId, PrefsManager prefsManager, PineTaskApplication pineTaskApplication,
+                                                               ActiveListManager activeListManager, ListDirectory listDirectory)
+    {
+        return super.providesMainActivityPresenter(dbHelper, userId, prefsManager, pineTaskApplication, activeListManager, listDirectory);
+    }
+
+    @Override
+    public ListItemsPresenter providesListItemsPresenter(PineTaskApplication application, DbHelper dbHelper, ActiveListManager activeListManager, @Named("user_id") String userId, SoundManager soundManager,
+                                                         PrefsManager prefsManager, ListRepositoryCache repositoryCache, LocalSnapshotStore snapshotStore)
+    {
+        return super.providesListItemsPresenter(application, dbHelper, activeListManager, userId, soundManager, prefsManager, repositoryCache, snapshotStore);
+    }
+
+    @Override
+    public MembersPresenter providesMembersPresenter(DbHelper dbHelper, PineTaskApplication pineTaskApplication, ActiveListManager activeListManager, @Named("user_id") String userId,
+                                                     UserProfileCache userProfileCache, ListRepositoryCache repositoryCache, LocalSnapshotStore snapshotStore)
     {
         return new FakeMembersPresenter();
     }
 
     @Override
-    public ChatPresenter providesChatPresenter(@Named("user_id") String userId, ActiveListManager activeListManager, DbHelper dbHelper, PineTaskApplication application)
+    public ChatPresenter providesChatPresenter(@Named("user_id") String userId, ActiveListManager activeListManager, DbHelper dbHelper, PineTaskApplication application,
+                                               UserProfileCache userProfileCache, ListRepositoryCache repositoryCache, LocalSnapshotStore snapshotStore)
     {
-        return super.providesChatPresenter(userId, activeListManager, dbHelper, application);
+        return super.providesChatPresenter(userId, activeListManager, dbHelper, application, userProfileCache, repositoryCache, snapshotStore);
     }
 }
@@ -0,0 +1,596 @@
+package com.pinetask.app;
+
+import com.google.firebase.database.ServerValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.AsyncSubject;
+
+/** In-memory stand-in for the Firebase realtime database, so that repositories and presenters can be exercised on a plain JVM.
+ *  Data is stored as a JSON-like tree: each node is either a leaf (String, Long, Double or Boolean) or a map of child nodes ordered by key.
+ *  Firebase semantics that the app depends on are reproduced:
+ *  - Writes are applied locally (and events raised) immediately; the returned Completable completes when the "server" acknowledges the write, after the
+ *    configured latency.  While offline, acknowledgements are queued until the database goes back online.
+ *  - Child listeners receive ADDED for all existing children (in key order) when attached.  After each write they receive REMOVED, then ADDED, then CHANGED
+ *    events, and value listeners are notified after all child listeners.  A multi-path update raises each event once.
+ *  - Value listeners attached while offline to a location with no local data don't fire until the database goes online (which is why DbHelperImpl writes
+ *    placeholder nodes when creating a list).
+ *  - Setting a node to null (or to an empty map) deletes it, along with any parent left empty.  ServerValue.TIMESTAMP is replaced with the current time.
+ *  - Push keys are chronological.
+ *  Events are delivered on the thread that made the write (or on the scheduler, for the initial events of a listener when latency is non-zero).  Use a
+ *  TestScheduler to control time (latency, timestamps and push keys) deterministically. **/
+public class InMemoryDatabase
+{
+    public enum ChildEventType { ADDED, CHANGED, REMOVED }
+
+    /** Key and value of a node.  Value is null if the node doesn't exist. **/
+    public static class Snapshot
+    {
+        public final String Key;
+        public final Object Value;
+
+        public Snapshot(String key, Object value)
+        {
+            Key = key;
+            Value = value;
+        }
+
+        /** Returns the children of the node, ordered by key (empty if the node is a leaf or doesn't exist). **/
+        public Map<String, Object> getChildren()
+        {
+            return childrenOf(Value);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s=%s", Key, Value);
+        }
+    }
+
+    public static class ChildEvent
+    {
+        public final ChildEventType Type;
+        public final String Key;
+        public final Object Value;
+
+        public ChildEvent(ChildEventType type, String key, Object value)
+        {
+            Type = type;
+            Key = key;
+            Value = value;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s %s=%s", Type, Key, Value);
+        }
+    }
+
+    private static class ValueListener
+    {
+        final String[] Path;
+        final ObservableEmitter<Snapshot> Emitter;
+        Object LastValue;
+        boolean HasFired;
+
+        ValueListener(String[] path, ObservableEmitter<Snapshot> emitter)
+        {
+            Path = path;
+            Emitter = emitter;
+        }
+    }
+
+    private static class ChildListener
+    {
+        final String[] Path;
+        final ObservableEmitter<ChildEvent> Emitter;
+        final Map<String, Object> LastChildren = new TreeMap<>();
+
+        ChildListener(String[] path, ObservableEmitter<ChildEvent> emitter)
+        {
+            Path = path;
+            Emitter = emitter;
+        }
+    }
+
+    private static final String PUSH_CHARS = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+
+    private final Map<String, Object> mRoot = new TreeMap<>();
+    private final List<ValueListener> mValueListeners = new ArrayList<>();
+    private final List<ChildListener> mChildListeners = new ArrayList<>();
+    private final List<Runnable> mPendingAcks = new ArrayList<>();
+    private final Random mRandom = new Random(0);
+    private final int[] mLastPushRandomChars = new int[12];
+    private long mLastPushTime;
+    private boolean mIsOnline = true;
+    private long mLatencyMs;
+    private Scheduler mScheduler = Schedulers.computation();
+
+    /** Scheduler used for acknowledgements and initial events (when latency is non-zero), and as the clock for timestamps and push keys. **/
+    public synchronized void setScheduler(Scheduler scheduler)
+    {
+        mScheduler = scheduler;
+    }
+
+    /** Simulated round trip time to the server. **/
+    public synchronized void setLatencyMs(long latencyMs)
+    {
+        mLatencyMs = latencyMs;
+    }
+
+    public synchronized long now()
+    {
+        return mScheduler.now(TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized boolean isOnline()
+    {
+        return mIsOnline;
+    }
+
+    /** Going offline queues write acknowledgements; going back online delivers them (in the order the writes were made), and fires value listeners that were
+     *  waiting for data from the server. **/
+    public void setOnline(boolean isOnline)
+    {
+        List<Runnable> dispatches = new ArrayList<>();
+        List<Runnable> acks;
+        synchronized (this)
+        {
+            if (mIsOnline == isOnline) return;
+            mIsOnline = isOnline;
+            if (!isOnline) return;
+
+            acks = new ArrayList<>(mPendingAcks);
+            mPendingAcks.clear();
+            for (ValueListener listener : mValueListeners)
+            {
+                if (!listener.HasFired) dispatches.add(fireValue(listener, getNode(listener.Path)));
+            }
+        }
+        for (Runnable ack : acks) scheduleAfterLatency(ack);
+        runAll(dispatches);
+    }
+
+    /** Returns a (deep) copy of the value at the path specified, or null if the node doesn't exist. **/
+    public synchronized Object getValue(String path)
+    {
+        return copy(getNode(parsePath(path)));
+    }
+
+    /** Reads the value at the path specified once.  Like addListenerForSingleValueEvent(), waits for the database to go online if there is no local data. **/
+    public Single<Snapshot> getSnapshot(String path)
+    {
+        return observeValue(path).firstOrError();
+    }
+
+    /** Emits the value at the path specified, and then again every time it changes, until disposed. **/
+    public Observable<Snapshot> observeValue(String path)
+    {
+        String[] segments = parsePath(path);
+        return Observable.create(emitter ->
+        {
+            ValueListener listener = new ValueListener(segments, emitter);
+            emitter.setCancellable(() -> removeValueListener(listener));
+            scheduleAfterLatency(() -> attachValueListener(listener));
+        });
+    }
+
+    /** Emits ADDED for each existing child of the path specified, and then ADDED / CHANGED / REMOVED events as children change, until disposed. **/
+    public Observable<ChildEvent> observeChildren(String path)
+    {
+        String[] segments = parsePath(path);
+        return Observable.create(emitter ->
+        {
+            ChildListener listener = new ChildListener(segments, emitter);
+            emitter.setCancellable(() -> removeChildListener(listener));
+            scheduleAfterLatency(() -> attachChildListener(listener));
+        });
+    }
+
+    private void attachValueListener(ValueListener listener)
+    {
+        Runnable dispatch = null;
+        synchronized (this)
+        {
+            if (listener.Emitter.isDisposed()) return;
+            mValueListeners.add(listener);
+            Object value = getNode(listener.Path);
+            if (mIsOnline || value != null) dispatch = fireValue(listener, value);
+        }
+        if (dispatch != null) dispatch.run();
+    }
+
+    private void attachChildListener(ChildListener listener)
+    {
+        List<ChildEvent> events = new ArrayList<>();
+        synchronized (this)
+        {
+            if (listener.Emitter.isDisposed()) return;
+            mChildListeners.add(listener);
+            for (Map.Entry<String, Object> child : childrenOf(getNode(listener.Path)).entrySet())
+            {
+                Object value = copy(child.getValue());
+                listener.LastChildren.put(child.getKey(), value);
+                events.add(new ChildEvent(ChildEventType.ADDED, child.getKey(), value));
+            }
+        }
+        for (ChildEvent event : events)
+        {
+            if (!listener.Emitter.isDisposed()) listener.Emitter.onNext(event);
+        }
+    }
+
+    private synchronized void removeValueListener(ValueListener listener)
+    {
+        mValueListeners.remove(listener);
+    }
+
+    private synchronized void removeChildListener(ChildListener listener)
+    {
+        mChildListeners.remove(listener);
+    }
+
+    /** Sets the value at the path specified (null deletes it). **/
+    public Completable setValue(String path, Object value)
+    {
+        return updateChildren(path, Collections.singletonMap("", value));
+    }
+
+    /** Atomically sets the values at each of the paths (relative to basePath) in the map provided.  Listeners are notified once, after all paths are written. **/
+    public Completable updateChildren(String basePath, Map<String, Object> updates)
+    {
+        String[] base = parsePath(basePath);
+        List<String[]> paths = new ArrayList<>();
+        for (String path : updates.keySet()) paths.add(concat(base, parsePath(path)));
+        for (int i = 0; i < paths.size(); i++)
+        {
+            for (int j = 0; j < paths.size(); j++)
+            {
+                if (i != j && isPrefix(paths.get(i), paths.get(j))) throw new IllegalArgumentException(String.format("Path '/%s' is an ancestor of '/%s' in the same update",
+                        joinPath(paths.get(i)), joinPath(paths.get(j))));
+            }
+        }
+
+        List<Runnable> dispatches;
+        Completable ack;
+        synchronized (this)
+        {
+            int i = 0;
+            for (Object value : updates.values()) setNode(paths.get(i++), normalize(value));
+            dispatches = collectDispatches(paths);
+            ack = acknowledge();
+        }
+        runAll(dispatches);
+        return ack;
+    }
+
+    /** Atomically replaces the value at the path specified with the result of the function provided (which receives null if the node doesn't exist, and can
+     *  return null to delete it). **/
+    public Completable runTransaction(String path, Function<Object, Object> update)
+    {
+        String[] segments = parsePath(path);
+        List<Runnable> dispatches;
+        Completable ack;
+        synchronized (this)
+        {
+            Object newValue;
+            try
+            {
+                newValue = update.apply(copy(getNode(segments)));
+            }
+            catch (Exception ex)
+            {
+                return Completable.error(ex);
+            }
+            setNode(segments, normalize(newValue));
+            dispatches = collectDispatches(Collections.singletonList(segments));
+            ack = acknowledge();
+        }
+        runAll(dispatches);
+        return ack;
+    }
+
+    /** Generates a new chronologically ordered key, like DatabaseReference.push().getKey(). **/
+    public synchronized String push()
+    {
+        long time = now();
+        boolean isDuplicateTime = (time == mLastPushTime);
+        mLastPushTime = time;
+
+        char[] timeChars = new char[8];
+        for (int i = 7; i >= 0; i--)
+        {
+            timeChars[i] = PUSH_CHARS.charAt((int) (time % 64));
+            time /= 64;
+        }
+        StringBuilder sb = new StringBuilder(20).append(timeChars);
+
+        if (!isDuplicateTime)
+        {
+            for (int i = 0; i < 12; i++) mLastPushRandomChars[i] = mRandom.nextInt(64);
+        }
+        else
+        {
+            // Same millisecond as the previous key: increment the random part, so that keys generated in the same millisecond still sort in order.
+            int i = 11;
+            for (; i >= 0 && mLastPushRandomChars[i] == 63; i--) mLastPushRandomChars[i] = 0;
+            if (i >= 0) mLastPushRandomChars[i]++;
+        }
+        for (int i = 0; i < 12; i++) sb.append(PUSH_CHARS.charAt(mLastPushRandomChars[i]));
+        return sb.toString();
+    }
+
+    /** Returns a Completable that completes when the server acknowledges the write just made. **/
+    private Completable acknowledge()
+    {
+        if (mIsOnline && mLatencyMs == 0) return Completable.complete();
+
+        AsyncSubject<Boolean> ack = AsyncSubject.create();
+        Runnable onAck = () ->
+        {
+            ack.onNext(true);
+            ack.onComplete();
+        };
+        if (mIsOnline) scheduleAfterLatency(onAck);
+        else mPendingAcks.add(onAck);
+        return ack.ignoreElements();
+    }
+
+    /** Runs the runnable after the simulated latency, or immediately (on the calling thread) if latency is zero. **/
+    private void scheduleAfterLatency(Runnable runnable)
+    {
+        long latencyMs;
+        Scheduler scheduler;
+        synchronized (this)
+        {
+            latencyMs = mLatencyMs;
+            scheduler = mScheduler;
+        }
+        if (latencyMs == 0) runnable.run();
+        else scheduler.scheduleDirect(runnable, latencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Works out the events raised by writes to the paths specified, and returns them (in the order Firebase raises them) to be run after the lock is released. **/
+    private List<Runnable> collectDispatches(List<String[]> writtenPaths)
+    {
+        List<Runnable> dispatches = new ArrayList<>();
+        for (ChildListener listener : mChildListeners)
+        {
+            Set<String> affectedKeys = getAffectedChildKeys(listener, writtenPaths);
+            if (affectedKeys.isEmpty()) continue;
+
+            Map<String, Object> children = childrenOf(getNode(listener.Path));
+            List<ChildEvent> removed = new ArrayList<>();
+            List<ChildEvent> added = new ArrayList<>();
+            List<ChildEvent> changed = new ArrayList<>();
+            for (String key : affectedKeys)
+            {
+                Object oldValue = listener.LastChildren.get(key);
+                Object newValue = children.get(key);
+                if (valuesEqual(oldValue, newValue)) continue;
+                if (newValue == null)
+                {
+                    listener.LastChildren.remove(key);
+                    removed.add(new ChildEvent(ChildEventType.REMOVED, key, oldValue));
+                    continue;
+                }
+                newValue = copy(newValue);
+                listener.LastChildren.put(key, newValue);
+                if (oldValue == null) added.add(new ChildEvent(ChildEventType.ADDED, key, newValue));
+                else changed.add(new ChildEvent(ChildEventType.CHANGED, key, newValue));
+            }
+
+            List<ChildEvent> events = new ArrayList<>(removed);
+            events.addAll(added);
+            events.addAll(changed);
+            for (ChildEvent event : events)
+            {
+                dispatches.add(() ->
+                {
+                    if (!listener.Emitter.isDisposed()) listener.Emitter.onNext(event);
+                });
+            }
+        }
+
+        for (ValueListener listener : mValueListeners)
+        {
+            boolean isAffected = false;
+            for (String[] path : writtenPaths) isAffected |= isPrefix(path, listener.Path) || isPrefix(listener.Path, path);
+            if (!isAffected) continue;
+
+            Object value = getNode(listener.Path);
+            if (!valuesEqual(listener.LastValue, value)) dispatches.add(fireValue(listener, value));
+        }
+        return dispatches;
+    }
+
+    /** Returns the keys of the listener's children that may have been changed by writes to the paths specified, in key order. **/
+    private Set<String> getAffectedChildKeys(ChildListener listener, List<String[]> writtenPaths)
+    {
+        Set<String> keys = new TreeSet<>();
+        for (String[] path : writtenPaths)
+        {
+            if (path.length > listener.Path.length && isPrefix(listener.Path, path))
+            {
+                keys.add(path[listener.Path.length]);
+            }
+            else if (isPrefix(path, listener.Path))
+            {
+                // Write at or above the listener location: any child may have changed.
+                keys.addAll(listener.LastChildren.keySet());
+                keys.addAll(childrenOf(getNode(listener.Path)).keySet());
+            }
+        }
+        return keys;
+    }
+
+    private Runnable fireValue(ValueListener listener, Object value)
+    {
+        Object valueCopy = copy(value);
+        listener.LastValue = valueCopy;
+        listener.HasFired = true;
+        Snapshot snapshot = new Snapshot(listener.Path.length == 0 ? null : listener.Path[listener.Path.length - 1], valueCopy);
+        return () ->
+        {
+            if (!listener.Emitter.isDisposed()) listener.Emitter.onNext(snapshot);
+        };
+    }
+
+    private static void runAll(List<Runnable> runnables)
+    {
+        for (Runnable runnable : runnables) runnable.run();
+    }
+
+    private Object getNode(String[] path)
+    {
+        Object node = mRoot;
+        for (String segment : path)
+        {
+            if (!(node instanceof Map)) return null;
+            node = ((Map) node).get(segment);
+        }
+        return node;
+    }
+
+    /** Sets (or, if value is null, deletes) the node at the path specified, creating or pruning parent nodes as needed. **/
+    private void setNode(String[] path, Object value)
+    {
+        if (path.length == 0)
+        {
+            mRoot.clear();
+            if (value instanceof Map) mRoot.putAll((Map<String, Object>) value);
+            return;
+        }
+
+        List<Map<String, Object>> parents = new ArrayList<>();
+        Map<String, Object> node = mRoot;
+        for (int i = 0; i < path.length - 1; i++)
+        {
+            parents.add(node);
+            Object child = node.get(path[i]);
+            if (!(child instanceof Map))
+            {
+                if (value == null) return;
+                child = new TreeMap<String, Object>();
+                node.put(path[i], child);
+            }
+            node = (Map<String, Object>) child;
+        }
+
+        String key = path[path.length - 1];
+        if (value != null)
+        {
+            node.put(key, value);
+            return;
+        }
+
+        node.remove(key);
+        for (int i = path.length - 2; i >= 0 && node.isEmpty(); i--)
+        {
+            Map<String, Object> parent = parents.get(i);
+            parent.remove(path[i]);
+            node = parent;
+        }
+    }
+
+    /** Converts the value to the form it's stored in: maps become TreeMaps without null or empty children, whole numbers become Long, other numbers
+     *  become Double, and ServerValue.TIMESTAMP becomes the current time. **/
+    private Object normalize(Object value)
+    {
+        if (value == null || value instanceof String || value instanceof Boolean) return value;
+        if (value instanceof Number)
+        {
+            Number number = (Number) value;
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) return number.longValue();
+            double d = number.doubleValue();
+            return (d == Math.rint(d) && !Double.isInfinite(d) && Math.abs(d) < Long.MAX_VALUE) ? (Object) (long) d : (Object) d;
+        }
+        if (ServerValue.TIMESTAMP.equals(value)) return now();
+        if (value instanceof Map)
+        {
+            Map<String, Object> result = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+            {
+                Object child = normalize(entry.getValue());
+                if (child != null) result.put(String.valueOf(entry.getKey()), child);
+            }
+            return result.isEmpty() ? null : result;
+        }
+        throw new IllegalArgumentException("Unsupported value type: " + value.getClass().getName());
+    }
+
+    private static Object copy(Object value)
+    {
+        if (!(value instanceof Map)) return value;
+        Map<String, Object> result = new TreeMap<>();
+        for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) result.put(entry.getKey(), copy(entry.getValue()));
+        return result;
+    }
+
+    private static Map<String, Object> childrenOf(Object value)
+    {
+        return (value instanceof Map) ? (Map<String, Object>) value : Collections.emptyMap();
+    }
+
+    private static boolean valuesEqual(Object value1, Object value2)
+    {
+        return (value1 == null) ? value2 == null : value1.equals(value2);
+    }
+
+    private static String[] parsePath(String path)
+    {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/"))
+        {
+            if (segment.length() > 0) segments.add(segment);
+        }
+        return segments.toArray(new String[segments.size()]);
+    }
+
+    private static String joinPath(String[] path)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (String segment : path)
+        {
+            if (sb.length() > 0) sb.append('/');
+            sb.append(segment);
+        }
+        return sb.toString();
+    }
+
+    private static String[] concat(String[] path1, String[] path2)
+    {
+        String[] result = new String[path1.length + path2.length];
+        System.arraycopy(path1, 0, result, 0, path1.length);
+        System.arraycopy(path2, 0, result, path1.length, path2.length);
+        return result;
+    }
+
+    /** Returns true if prefix is equal to, or an ancestor of, path. **/
+    private static boolean isPrefix(String[] prefix, String[] path)
+    {
+        if (prefix.length > path.length) return false;
+        for (int i = 0; i < prefix.length; i++)
+        {
+            if (!prefix[i].equals(path[i])) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,102 @@
+package com.pinetask.app;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Unit test of the Firebase event semantics reproduced by InMemoryDatabase **/
+public class InMemoryDatabaseTest
+{
+    private InMemoryDatabase mDb;
+    private TestScheduler mScheduler;
+
+    @Before
+    public void setUp()
+    {
+        mScheduler = new TestScheduler();
+        mDb = new InMemoryDatabase();
+        mDb.setScheduler(mScheduler);
+    }
+
+    @Test
+    public void multiPathUpdateRaisesRemovedThenAddedThenChangedThenValue() throws Exception
+    {
+        mDb.setValue("items/a", "1").subscribe();
+        mDb.setValue("items/b", "2").subscribe();
+
+        List<String> events = new ArrayList<>();
+        mDb.observeChildren("items").subscribe(event -> events.add(event.Type + " " + event.Key));
+        mDb.observeValue("items").subscribe(snapshot -> events.add("VALUE"));
+        assertEquals("[ADDED a, ADDED b, VALUE]", events.toString());
+
+        events.clear();
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("a", "changed");
+        updates.put("b", null);
+        updates.put("c", "3");
+        mDb.updateChildren("items", updates).subscribe();
+        assertEquals("[REMOVED b, ADDED c, CHANGED a, VALUE]", events.toString());
+    }
+
+    @Test
+    public void deletingLastChildPrunesParent() throws Exception
+    {
+        mDb.setValue("list_items/list1/item1/itemDescription", "Apples").subscribe();
+        mDb.setValue("list_items/list1/item1", null).subscribe();
+        assertNull(mDb.getValue("list_items"));
+    }
+
+    @Test
+    public void writeIsAppliedLocallyButAcknowledgedOnlyWhenOnline() throws Exception
+    {
+        mDb.setLatencyMs(100);
+        mDb.setOnline(false);
+        TestObserver<Void> ack = mDb.setValue("list_info/list1/name", "Groceries").test();
+        assertEquals("Groceries", mDb.getValue("list_info/list1/name"));
+
+        mScheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        ack.assertNotComplete();
+
+        mDb.setOnline(true);
+        mScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        ack.assertComplete();
+    }
+
+    @Test
+    public void readOfMissingNodeWaitsForServerWhileOffline() throws Exception
+    {
+        mDb.setOnline(false);
+        TestObserver<InMemoryDatabase.Snapshot> missing = mDb.getSnapshot("list_items/list1").test();
+        missing.assertNoValues();
+
+        // A placeholder written while offline lets reads of the location complete without the server.
+        mDb.setValue("list_items/list2", 0).subscribe();
+        mDb.getSnapshot("list_items/list2").test().assertValueCount(1);
+
+        mDb.setOnline(true);
+        missing.assertValueCount(1);
+    }
+
+    @Test
+    public void pushKeysAreChronological() throws Exception
+    {
+        String key1 = mDb.push();
+        String key2 = mDb.push();
+        mScheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        String key3 = mDb.push();
+        assertTrue(key1.compareTo(key2) < 0);
+        assertTrue(key2.compareTo(key3) < 0);
+    }
+}
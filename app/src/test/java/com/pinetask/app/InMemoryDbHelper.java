@@ -0,0 +1,760 @@
+package com.pinetask.app;
+
+import com.google.firebase.database.ServerValue;
+import com.pinetask.app.chat.ChatMessage;
+import com.pinetask.app.common.AddedEvent;
+import com.pinetask.app.common.ChildEventBase;
+import com.pinetask.app.common.DeletedEvent;
+import com.pinetask.app.common.PineTaskException;
+import com.pinetask.app.common.PineTaskInviteAlreadyUsedException;
+import com.pinetask.app.common.PineTaskList;
+import com.pinetask.app.common.PineTaskUtil;
+import com.pinetask.app.common.PineTaskListWithCollaborators;
+import com.pinetask.app.common.UpdatedEvent;
+import com.pinetask.app.common.UserMessageListener;
+import com.pinetask.app.db.BulkUpdateResult;
+import com.pinetask.app.db.DbHelper;
+import com.pinetask.app.db.DbHelperImpl;
+import com.pinetask.app.db.DbMetrics;
+import com.pinetask.app.list_items.PineTaskItemExt;
+import com.pinetask.app.main.InviteInfo;
+import com.pinetask.app.manage_lists.StartupMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+
+/** DbHelper backed by an InMemoryDatabase, using the same database layout as DbHelperImpl, so that repositories and presenters can be run (and load tested)
+ *  on a plain JVM without Firebase.  Objects are converted to and from database maps explicitly rather than with Firebase's class mapper.
+ *  Differences from DbHelperImpl:
+ *  - updateItem() writes immediately (still only the fields that changed), so flushPendingWrites() has nothing to do.
+ *  - Snapshots are deserialized on the thread that delivers them, rather than on the computation scheduler.
+ *  - Queries (order by child, limit, start / end at) are evaluated by reading the whole node and filtering it. **/
+public class InMemoryDbHelper implements DbHelper
+{
+    private static final String LIST_INFO_NODE_NAME = "list_info";
+    private static final String LIST_COLLABORATORS_NODE_NAME = "list_collaborators";
+    private static final String INVITE_ID_KEY = "invite_id";
+    private static final String LIST_ITEMS_NODE_NAME = "list_items";
+    private static final String CHAT_MESSAGES_NODE_NAME = "chat_messages";
+    private static final String LIST_STATS_NODE_NAME = "list_stats";
+    private static final String CHAT_COUNT_KEY = "chat_count";
+    private static final String ITEM_COUNT_KEY = "item_count";
+    private static final String USERS_NODE_NAME = "users";
+    private static final String STARTUP_MESSAGE_NODE = "startup_message";
+    private static final String USERNAME_NODE_NAME = "userName";
+    private static final String IS_ANONYMOUS_NODE_NAME = "is_anonymous";
+    private static final String USER_STARTUP_MESSAGE_VERSION = "startup_message_version";
+    private static final String LIST_INVITES_NODE_NAME = "list_invites";
+    private static final String LISTS_NODE_NAME = "lists";
+    private static final String LIST_SUMMARIES_NODE_NAME = "list_summaries";
+    private static final String MEMBER_COUNT_KEY = "memberCount";
+    private static final String OWNER = "owner";
+    private static final String WRITE = "write";
+    private static final String LIST_NAME_KEY = "name";
+    private static final String OWNER_ID_KEY = "ownerId";
+    private static final String SHOPPING_TRIP_ACTIVE_KEY = "shopping_trip_active";
+    private static final String INVITE_CREATED_AT_KEY = "created_at";
+    private static final String ITEM_DESCRIPTION_KEY_NAME = "itemDescription";
+    private static final String CLAIMED_BY_KEY_NAME = "claimedBy";
+    private static final String IS_COMPLETED_KEY_NAME = "isCompleted";
+    private static final String COST_KEY_NAME = "cost";
+    private static final String CREATED_AT_KEY_NAME = "createdAt";
+    private static final String MESSAGE_KEY_NAME = "message";
+    private static final String SENDER_ID_KEY_NAME = "senderId";
+    private static final String STARTUP_MESSAGE_TEXT_KEY = "text";
+    private static final String STARTUP_MESSAGE_VERSION_KEY = "version";
+
+    private final InMemoryDatabase mDb;
+    private final DbMetrics mMetrics = new DbMetrics();
+
+    public InMemoryDbHelper(InMemoryDatabase db)
+    {
+        mDb = db;
+    }
+
+    public InMemoryDatabase getDatabase()
+    {
+        return mDb;
+    }
+
+    @Override
+    public DbMetrics getMetrics()
+    {
+        return mMetrics;
+    }
+
+    private String listInfoPath(String listId) { return LIST_INFO_NODE_NAME + "/" + listId; }
+    private String listCollaboratorsPath(String listId) { return LIST_COLLABORATORS_NODE_NAME + "/" + listId; }
+    private String listItemsPath(String listId) { return LIST_ITEMS_NODE_NAME + "/" + listId; }
+    private String chatMessagesPath(String listId) { return CHAT_MESSAGES_NODE_NAME + "/" + listId; }
+    private String listStatsPath(String listId) { return LIST_STATS_NODE_NAME + "/" + listId; }
+    private String userPath(String userId) { return USERS_NODE_NAME + "/" + userId; }
+    private String userListsPath(String userId) { return userPath(userId) + "/" + LISTS_NODE_NAME; }
+    private String userListSummariesPath(String userId) { return userPath(userId) + "/" + LIST_SUMMARIES_NODE_NAME; }
+    private String invitePath(InviteInfo inviteInfo) { return LIST_INVITES_NODE_NAME + "/" + inviteInfo.ListId + "/" + inviteInfo.InviteId; }
+
+    @Override
+    public Completable deleteList(String listId)
+    {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(LIST_INVITES_NODE_NAME + "/" + listId, null);
+        updates.put(listCollaboratorsPath(listId), null);
+        updates.put(listItemsPath(listId), null);
+        updates.put(chatMessagesPath(listId), null);
+        updates.put(listStatsPath(listId), null);
+        updates.put(listInfoPath(listId), null);
+        return getListCollaborators(listId)
+                .flatMapCompletable(userId -> removeAccessToList(listId, userId))
+                .andThen(writeUpdates("remove nodes related to list", "", updates));
+    }
+
+    @Override
+    public Observable<String> getListCollaborators(String listId)
+    {
+        return getKeys(listCollaboratorsPath(listId));
+    }
+
+    @Override
+    public Single<String> getUserNameSingle(String userId)
+    {
+        return getValue(userPath(userId) + "/" + USERNAME_NODE_NAME, value -> (String) value, null, "get user name");
+    }
+
+    @Override
+    public Observable<ChatMessage> populateUserName(ChatMessage chatMessage)
+    {
+        return getUserNameSingle(chatMessage.getSenderId()).map(userName ->
+        {
+            chatMessage.setSenderName(userName);
+            return chatMessage;
+        }).toObservable();
+    }
+
+    @Override
+    public Observable<String> getUserNameObservable(String userId)
+    {
+        // Like ObservableStringQuery, emits an empty string if the user has no name.
+        return subscribeValues(userPath(userId) + "/" + USERNAME_NODE_NAME, value -> (String) value, "");
+    }
+
+    @Override
+    public Completable setUserName(String userId, String newUserName)
+    {
+        return write("change username", userPath(userId) + "/" + USERNAME_NODE_NAME, newUserName);
+    }
+
+    @Override
+    public Completable setIsAnonymous(String userId, boolean isAnonymous)
+    {
+        return write("set is_anonymous", userPath(userId) + "/" + IS_ANONYMOUS_NODE_NAME, isAnonymous);
+    }
+
+    @Override
+    public Single<Boolean> getIsAnonymous(String userId)
+    {
+        return getValue(userPath(userId) + "/" + IS_ANONYMOUS_NODE_NAME, value -> (Boolean) value, null, "get is_anonymous");
+    }
+
+    @Override
+    public Observable<String> getListIdsForUser(String userId)
+    {
+        return getKeys(userListsPath(userId));
+    }
+
+    @Override
+    public Single<Boolean> canAccessList(String userId, String listId)
+    {
+        return mDb.getSnapshot(userListsPath(userId) + "/" + listId).map(snapshot -> snapshot.Value != null);
+    }
+
+    @Override
+    public Observable<ChildEventBase<String>> getListAddedOrDeletedEvents(String userId)
+    {
+        return subscribeKeyAddedOrDeletedEvents(userListsPath(userId));
+    }
+
+    @Override
+    public Observable<ChildEventBase<String>> subscribeMembersAddedOrDeletedEvents(String listId)
+    {
+        return subscribeKeyAddedOrDeletedEvents(listCollaboratorsPath(listId));
+    }
+
+    @Override
+    public Single<String> getListName(String listId)
+    {
+        return getValue(listInfoPath(listId) + "/" + LIST_NAME_KEY, value -> (String) value, null, "get list name");
+    }
+
+    @Override
+    public void createInvite(String listId, String inviteId)
+    {
+        write("create invite", LIST_INVITES_NODE_NAME + "/" + listId + "/" + inviteId + "/" + INVITE_CREATED_AT_KEY, ServerValue.TIMESTAMP).subscribe();
+    }
+
+    @Override
+    public Completable verifyInviteExists(InviteInfo inviteInfo)
+    {
+        return mDb.getSnapshot(invitePath(inviteInfo) + "/" + INVITE_CREATED_AT_KEY)
+                .flatMapCompletable(snapshot -> snapshot.Value != null ? Completable.complete() : Completable.error(new PineTaskInviteAlreadyUsedException()));
+    }
+
+    @Override
+    public Completable deleteInvite(InviteInfo inviteInfo)
+    {
+        return write("delete invite", invitePath(inviteInfo), null);
+    }
+
+    @Override
+    public Completable addUserAsCollaboratorToList(InviteInfo inviteInfo, String userId)
+    {
+        return write("add user as list collaborator", listCollaboratorsPath(inviteInfo.ListId) + "/" + userId + "/" + INVITE_ID_KEY, inviteInfo.InviteId);
+    }
+
+    @Override
+    public Completable addListToUserLists(String listId, String userId, String accessType)
+    {
+        return write("add list to user's lists", userListsPath(userId) + "/" + listId, accessType);
+    }
+
+    @Override
+    public Completable revokeAccessToList(String listId, String userId)
+    {
+        return refreshListSummaries(listId, userId).andThen(removeAccessToList(listId, userId));
+    }
+
+    private Completable removeAccessToList(String listId, String userId)
+    {
+        return write("revoke access to list", userListsPath(userId) + "/" + listId, null)
+                .andThen(write("revoke access to list", userListSummariesPath(userId) + "/" + listId, null))
+                .andThen(write("revoke access to list", listCollaboratorsPath(listId) + "/" + userId, null));
+    }
+
+    private void putListSummary(Map<String, Object> updates, String userId, String listId, String name, String ownerId, int memberCount)
+    {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put(LIST_NAME_KEY, name);
+        summary.put(OWNER_ID_KEY, ownerId);
+        summary.put(MEMBER_COUNT_KEY, memberCount);
+        updates.put(userListSummariesPath(userId) + "/" + listId, summary);
+    }
+
+    /** Like DbHelperImpl, rewrites the summary of the list for each member (except excludedUserId, if not null).  Writes are applied one at a time here, so
+     *  the member count is taken directly from the collaborators rather than from a transaction. **/
+    private Completable refreshListSummaries(String listId, String excludedUserId)
+    {
+        return Single.zip(getPineTaskList(listId), getListCollaborators(listId).filter(memberId -> !memberId.equals(excludedUserId)).toList(), (PineTaskList list, List<String> memberIds) ->
+        {
+            Map<String, Object> updates = new HashMap<>();
+            for (String memberId : memberIds) putListSummary(updates, memberId, listId, list.getName(), list.getOwnerId(), memberIds.size());
+            return updates;
+        }).flatMapCompletable(updates -> updates.isEmpty() ? Completable.complete() : Completable.fromAction(() -> writeUpdates("refresh list summaries", "", updates).subscribe()));
+    }
+
+    @Override
+    public Single<List<PineTaskListWithCollaborators>> getListSummaries(String userId)
+    {
+        return mDb.getSnapshot(userPath(userId)).flatMap(userSnapshot ->
+        {
+            Map<String, Object> userNode = userSnapshot.getChildren();
+            Map<String, Object> listIds = new InMemoryDatabase.Snapshot(LISTS_NODE_NAME, userNode.get(LISTS_NODE_NAME)).getChildren();
+            Map<String, Object> summaries = new InMemoryDatabase.Snapshot(LIST_SUMMARIES_NODE_NAME, userNode.get(LIST_SUMMARIES_NODE_NAME)).getChildren();
+            List<PineTaskListWithCollaborators> lists = new ArrayList<>();
+            List<String> missingListIds = new ArrayList<>();
+            List<String> orphanedListIds = new ArrayList<>();
+            for (String listId : listIds.keySet())
+            {
+                if (summaries.containsKey(listId)) lists.add(toListSummary(listId, summaries.get(listId)));
+                else missingListIds.add(listId);
+            }
+            for (String listId : summaries.keySet())
+            {
+                if (!listIds.containsKey(listId)) orphanedListIds.add(listId);
+            }
+            if (missingListIds.isEmpty() && orphanedListIds.isEmpty()) return Single.just(lists);
+
+            return Observable.fromIterable(missingListIds)
+                    .flatMap(this::tryGetPineTaskList)
+                    .flatMapSingle(this::getPineTaskListWithCollaborators)
+                    .toList()
+                    .map(backfilledLists ->
+                    {
+                        Map<String, Object> updates = new HashMap<>();
+                        for (PineTaskListWithCollaborators list : backfilledLists) putListSummary(updates, userId, list.getId(), list.getName(), list.getOwnerId(), list.getMemberCount());
+                        for (String listId : orphanedListIds) updates.put(userListSummariesPath(userId) + "/" + listId, null);
+                        writeUpdates("backfill list summaries", "", updates).subscribe();
+                        lists.addAll(backfilledLists);
+                        return lists;
+                    });
+        });
+    }
+
+    @Override
+    public Observable<ChildEventBase<PineTaskListWithCollaborators>> subscribeListSummaries(String userId)
+    {
+        return mDb.observeChildren(userListSummariesPath(userId)).map(event -> toChildEvent(event, toListSummary(event.Key, event.Value)));
+    }
+
+    @Override
+    public Completable createList(String ownerId, String listName)
+    {
+        String listId = mDb.push();
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(listInfoPath(listId) + "/" + LIST_NAME_KEY, listName);
+        updates.put(listInfoPath(listId) + "/" + OWNER_ID_KEY, ownerId);
+        updates.put(userListsPath(ownerId) + "/" + listId, OWNER);
+        putListSummary(updates, ownerId, listId, listName, ownerId, 1);
+        updates.put(listCollaboratorsPath(listId) + "/" + ownerId, OWNER);
+        updates.put(listItemsPath(listId), 0);
+        updates.put(chatMessagesPath(listId), 0);
+        updates.put(listStatsPath(listId) + "/" + ITEM_COUNT_KEY, 0);
+        updates.put(listStatsPath(listId) + "/" + CHAT_COUNT_KEY, 0);
+
+        // Like DbHelperImpl, don't wait for the server to confirm the write.
+        Completable task = writeUpdates(DbHelperImpl.CREATE_LIST_OPERATION, "", updates);
+        return Completable.fromAction(() -> task.subscribe());
+    }
+
+    @Override
+    public Single<PineTaskList> getPineTaskList(String listId)
+    {
+        return getValue(listInfoPath(listId), value -> toPineTaskList(listId, value), null, "get list info");
+    }
+
+    @Override
+    public Observable<PineTaskList> tryGetPineTaskList(String listId)
+    {
+        return getPineTaskList(listId).toObservable().onErrorResumeNext(Observable.empty());
+    }
+
+    @Override
+    public Single<PineTaskListWithCollaborators> getPineTaskListWithCollaborators(PineTaskList list)
+    {
+        return getListCollaborators(list.getId()).toList().map(collaboratorIds -> new PineTaskListWithCollaborators(list, collaboratorIds));
+    }
+
+    @Override
+    public Single<Long> getChatMessageCount(String listId)
+    {
+        return getCounter(listStatsPath(listId) + "/" + CHAT_COUNT_KEY, chatMessagesPath(listId));
+    }
+
+    @Override
+    public Single<Long> getListItemCount(String listId)
+    {
+        return getCounter(listStatsPath(listId) + "/" + ITEM_COUNT_KEY, listItemsPath(listId));
+    }
+
+    @Override
+    public Completable repairListStats(String listId)
+    {
+        return repairCounter(listStatsPath(listId) + "/" + ITEM_COUNT_KEY, listItemsPath(listId)).toCompletable()
+                .andThen(repairCounter(listStatsPath(listId) + "/" + CHAT_COUNT_KEY, chatMessagesPath(listId)).toCompletable());
+    }
+
+    /** Reads the counter at counterPath, repairing it first if it doesn't exist. **/
+    private Single<Long> getCounter(String counterPath, String countedPath)
+    {
+        return getValue(counterPath, value -> (Long) value, -1L, "get counter")
+                .flatMap(count -> count >= 0 ? Single.just(count) : repairCounter(counterPath, countedPath));
+    }
+
+    private Single<Long> repairCounter(String counterPath, String countedPath)
+    {
+        return mDb.getSnapshot(countedPath)
+                .map(snapshot -> (long) snapshot.getChildren().size())
+                .flatMap(count -> write("repair counter", counterPath, count).toSingleDefault(count));
+    }
+
+    /** Adds delta to the counter, never going below zero.  A missing counter is left missing, so that it will be repaired when it's next read. **/
+    private void adjustCounter(String counterPath, long delta)
+    {
+        mDb.runTransaction(counterPath, value -> (value == null) ? null : (Object) Math.max(0, (Long) value + delta)).subscribe();
+    }
+
+    @Override
+    public Observable<ChildEventBase<ChatMessage>> subscribeChatMessages(String listId)
+    {
+        return subscribeChatMessagesAfter(listId, null);
+    }
+
+    @Override
+    public Observable<ChildEventBase<ChatMessage>> subscribeChatMessagesAfter(String listId, String startKey)
+    {
+        return mDb.observeChildren(chatMessagesPath(listId))
+                .filter(event -> startKey == null || event.Key.compareTo(startKey) >= 0)
+                .map(event -> toChildEvent(event, toChatMessage(event.Key, event.Value)));
+    }
+
+    @Override
+    public Single<List<ChatMessage>> getNewestChatMessages(String listId, int count)
+    {
+        return getChatMessagesBefore(listId, null, count);
+    }
+
+    /** If beforeKey is null, returns the newest messages. **/
+    @Override
+    public Single<List<ChatMessage>> getChatMessagesBefore(String listId, String beforeKey, int count)
+    {
+        return mDb.getSnapshot(chatMessagesPath(listId)).map(snapshot ->
+        {
+            List<ChatMessage> messages = new ArrayList<>();
+            for (Map.Entry<String, Object> child : snapshot.getChildren().entrySet())
+            {
+                if (beforeKey == null || child.getKey().compareTo(beforeKey) < 0) messages.add(toChatMessage(child.getKey(), child.getValue()));
+            }
+            return new ArrayList<>(messages.subList(Math.max(0, messages.size() - count), messages.size()));
+        });
+    }
+
+    @Override
+    public void sendChatMessage(String listId, ChatMessage chatMessage)
+    {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(MESSAGE_KEY_NAME, chatMessage.getMessage());
+        fields.put(SENDER_ID_KEY_NAME, chatMessage.getSenderId());
+        fields.put(CREATED_AT_KEY_NAME, ServerValue.TIMESTAMP);
+        write("send chat message", chatMessagesPath(listId) + "/" + mDb.push(), fields)
+                .subscribe(() -> adjustCounter(listStatsPath(listId) + "/" + CHAT_COUNT_KEY, 1));
+    }
+
+    @Override
+    public Completable renameList(String listId, String newName)
+    {
+        return write("rename list", listInfoPath(listId) + "/" + LIST_NAME_KEY, newName).andThen(refreshListSummaries(listId, null));
+    }
+
+    @Override
+    public Single<Long> getLastListItemTimestamp(String listId)
+    {
+        return getListItems(listId).map(items ->
+        {
+            long lastTimestamp = 0;
+            for (PineTaskItemExt item : items) lastTimestamp = Math.max(lastTimestamp, item.getCreatedAtMs());
+            return lastTimestamp;
+        });
+    }
+
+    @Override
+    public Observable<ChildEventBase<PineTaskItemExt>> subscribeListItems(String listId)
+    {
+        return mDb.observeChildren(listItemsPath(listId)).map(event -> toChildEvent(event, toItem(event.Key, event.Value)));
+    }
+
+    @Override
+    public Single<List<PineTaskItemExt>> getListItems(String listId)
+    {
+        return mDb.getSnapshot(listItemsPath(listId)).map(snapshot ->
+        {
+            List<PineTaskItemExt> items = new ArrayList<>(snapshot.getChildren().size());
+            for (Map.Entry<String, Object> child : snapshot.getChildren().entrySet()) items.add(toItem(child.getKey(), child.getValue()));
+            return items;
+        });
+    }
+
+    /** Writes the fields of the item that differ from the database immediately (DbHelperImpl merges writes made within a short window). **/
+    @Override
+    public void updateItem(PineTaskItemExt item, UserMessageListener userMessageListener)
+    {
+        Object storedValue = mDb.getValue(listItemsPath(item.getListId()) + "/" + item.getId());
+        Map<String, Object> storedFields = (storedValue instanceof Map) ? (Map<String, Object>) storedValue : new HashMap<>();
+        Map<String, Object> fields = (Map<String, Object>) normalizeNumbers(getItemFields(item));
+        Map<String, Object> updates = new HashMap<>();
+        for (Map.Entry<String, Object> field : fields.entrySet())
+        {
+            if (!PineTaskUtil.equalsOrNull(field.getValue(), storedFields.get(field.getKey()))) updates.put(field.getKey(), field.getValue());
+        }
+        if (updates.isEmpty()) return;
+
+        mMetrics.recordBytesWritten(DbHelperImpl.UPDATE_ITEM_OPERATION, updates.toString().length());
+        subscribeAndReportError(writeUpdates(DbHelperImpl.UPDATE_ITEM_OPERATION, listItemsPath(item.getListId()) + "/" + item.getId(), updates), userMessageListener);
+    }
+
+    @Override
+    public void flushPendingWrites()
+    {
+    }
+
+    @Override
+    public void deleteItem(PineTaskItemExt item, UserMessageListener userMessageListener)
+    {
+        // Like DbHelperImpl, removes the item in a transaction and only decrements the counter if the item still existed.
+        boolean[] existed = new boolean[1];
+        Completable task = mDb.runTransaction(listItemsPath(item.getListId()) + "/" + item.getId(), value ->
+        {
+            existed[0] = (value != null);
+            return null;
+        }).doOnComplete(() ->
+        {
+            if (existed[0]) adjustCounter(listStatsPath(item.getListId()) + "/" + ITEM_COUNT_KEY, -1);
+        });
+        subscribeAndReportError(task, userMessageListener);
+    }
+
+    @Override
+    public Completable addPineTaskItem(PineTaskItemExt item)
+    {
+        item.setId(mDb.push());
+        Map<String, Object> fields = getItemFields(item);
+        fields.put(CREATED_AT_KEY_NAME, ServerValue.TIMESTAMP);
+        return write("add PineTaskItem", listItemsPath(item.getListId()) + "/" + item.getId(), fields)
+                .doOnComplete(() -> adjustCounter(listStatsPath(item.getListId()) + "/" + ITEM_COUNT_KEY, 1));
+    }
+
+    @Override
+    public Single<String> getListAsString(String listId)
+    {
+        return getListName(listId).flatMap(listName -> getListItems(listId).map(items ->
+        {
+            StringBuilder sb = new StringBuilder(listName + ":\n");
+            for (PineTaskItemExt item : items) sb.append(item.toString()).append("\n");
+            return sb.toString();
+        }));
+    }
+
+    @Override
+    public Single<Integer> getUserStartupMessageVersion(String userId)
+    {
+        return getValue(userPath(userId) + "/" + USER_STARTUP_MESSAGE_VERSION, value -> ((Long) value).intValue(), -1, "get startup message version");
+    }
+
+    @Override
+    public void setUserStartupMessageVersion(String userId, int version)
+    {
+        write("set user startup message version", userPath(userId) + "/" + USER_STARTUP_MESSAGE_VERSION, version).subscribe();
+    }
+
+    @Override
+    public Single<StartupMessage> getStartupMessage()
+    {
+        return getValue(STARTUP_MESSAGE_NODE, this::toStartupMessage, null, "get startup message");
+    }
+
+    @Override
+    public Observable<StartupMessage> subscribeStartupMessageIfNewer(int readVersion)
+    {
+        return subscribeValues(STARTUP_MESSAGE_NODE, this::toStartupMessage, null)
+                .filter(startupMessage -> startupMessage.version > readVersion)
+                .distinctUntilChanged(startupMessage -> startupMessage.version);
+    }
+
+    private StartupMessage toStartupMessage(Object value)
+    {
+        Map<String, Object> fields = (Map<String, Object>) value;
+        StartupMessage startupMessage = new StartupMessage();
+        startupMessage.text = (String) fields.get(STARTUP_MESSAGE_TEXT_KEY);
+        Object version = fields.get(STARTUP_MESSAGE_VERSION_KEY);
+        if (version != null) startupMessage.version = ((Long) version).intValue();
+        return startupMessage;
+    }
+
+    @Override
+    public Single<PineTaskList> acceptInvite(InviteInfo inviteInfo, String userId)
+    {
+        return verifyInviteExists(inviteInfo)
+                .andThen(addUserAsCollaboratorToList(inviteInfo, userId))
+                .andThen(deleteInvite(inviteInfo))
+                .andThen(addListToUserLists(inviteInfo.ListId, userId, WRITE))
+                .andThen(refreshListSummaries(inviteInfo.ListId, null))
+                .andThen(getPineTaskList(inviteInfo.ListId));
+    }
+
+    @Override
+    public Single<BulkUpdateResult> purgeCompletedItems(String listId)
+    {
+        return bulkUpdateCompletedItems(listId, itemId -> itemId, null, "purge completed items")
+                .doOnSuccess(result -> adjustCounter(listStatsPath(listId) + "/" + ITEM_COUNT_KEY, -result.ItemCount));
+    }
+
+    @Override
+    public Single<BulkUpdateResult> uncompleteAllItems(String listId)
+    {
+        return bulkUpdateCompletedItems(listId, itemId -> itemId + "/" + IS_COMPLETED_KEY_NAME, false, "uncomplete all items");
+    }
+
+    /** Sets the path returned by pathForKey (relative to the list's items) to the value provided for every completed item, in one multi-path write. **/
+    private Single<BulkUpdateResult> bulkUpdateCompletedItems(String listId, Function<String, String> pathForKey, Object value, String operationDescription)
+    {
+        return Single.defer(() ->
+        {
+            long startTime = mDb.now();
+            return getListItems(listId).flatMap(items ->
+            {
+                Map<String, Object> updates = new HashMap<>();
+                for (PineTaskItemExt item : items)
+                {
+                    if (item.getIsCompleted()) updates.put(pathForKey.apply(item.getId()), value);
+                }
+                int writeCount = updates.isEmpty() ? 0 : 1;
+                Completable task = updates.isEmpty() ? Completable.complete() : writeUpdates(operationDescription, listItemsPath(listId), updates);
+                return task.toSingle(() -> new BulkUpdateResult(updates.size(), writeCount, mDb.now() - startTime));
+            });
+        });
+    }
+
+    @Override
+    public void setShoppingTripForActiveList(String listId, boolean isActive)
+    {
+        write("set 'shopping trip active' flag", listInfoPath(listId) + "/" + SHOPPING_TRIP_ACTIVE_KEY, isActive).subscribe();
+    }
+
+    @Override
+    public Observable<Boolean> subscribeToShoppingTripActiveEventsForList(String listId)
+    {
+        return subscribeValues(listInfoPath(listId) + "/" + SHOPPING_TRIP_ACTIVE_KEY, value -> (Boolean) value, false);
+    }
+
+    /** Returns a Completable that, when subscribed to, sets the value at the path and completes when the database acknowledges the write.  The time taken is
+     *  recorded in the metrics. **/
+    private Completable write(String operationDescription, String path, Object value)
+    {
+        return timed(operationDescription, () -> mDb.setValue(path, value));
+    }
+
+    /** Like write(), but atomically writes each of the paths (relative to basePath) in the map provided. **/
+    private Completable writeUpdates(String operationDescription, String basePath, Map<String, Object> updates)
+    {
+        return timed(operationDescription, () -> mDb.updateChildren(basePath, updates));
+    }
+
+    private Completable timed(String operationDescription, Callable<Completable> task)
+    {
+        return Completable.defer(() ->
+        {
+            long startTime = mDb.now();
+            return task.call().doOnComplete(() -> mMetrics.recordSuccess(operationDescription, mDb.now() - startTime));
+        });
+    }
+
+    /** Reads the value at the path once and converts it.  If there is no value, emits defaultValue, or an error if defaultValue is null (like DbHelperImpl.getItem). **/
+    private <T> Single<T> getValue(String path, Function<Object, T> converter, T defaultValue, String operationDescription)
+    {
+        return mDb.getSnapshot(path).flatMap(snapshot ->
+        {
+            if (snapshot.Value != null) return Single.just(converter.apply(snapshot.Value));
+            else if (defaultValue != null) return Single.just(defaultValue);
+            else return Single.error(new PineTaskException(String.format("Error in operation '%s' for node %s: Value is null", operationDescription, path)));
+        });
+    }
+
+    /** Emits the converted value at the path every time it changes.  Null values are replaced with defaultValue, or skipped if defaultValue is null. **/
+    private <T> Observable<T> subscribeValues(String path, Function<Object, T> converter, T defaultValue)
+    {
+        return mDb.observeValue(path).concatMap(snapshot ->
+        {
+            if (snapshot.Value != null) return Observable.just(converter.apply(snapshot.Value));
+            else if (defaultValue != null) return Observable.just(defaultValue);
+            else return Observable.<T>empty();
+        });
+    }
+
+    private Observable<String> getKeys(String path)
+    {
+        return mDb.getSnapshot(path).flatMapObservable(snapshot -> Observable.fromIterable(new ArrayList<>(snapshot.getChildren().keySet())));
+    }
+
+    /** Like KeyAddedOrDeletedObservable: emits AddedEvent / DeletedEvent for keys under the path, ignoring changes to their values. **/
+    private Observable<ChildEventBase<String>> subscribeKeyAddedOrDeletedEvents(String path)
+    {
+        return mDb.observeChildren(path)
+                .filter(event -> event.Type != InMemoryDatabase.ChildEventType.CHANGED)
+                .<ChildEventBase<String>>map(event ->
+                {
+                    if (event.Type == InMemoryDatabase.ChildEventType.ADDED) return new AddedEvent<String>(event.Key);
+                    else return new DeletedEvent<String>(event.Key);
+                });
+    }
+
+    private <T> ChildEventBase<T> toChildEvent(InMemoryDatabase.ChildEvent event, T item)
+    {
+        switch (event.Type)
+        {
+            case ADDED:
+                return new AddedEvent<>(item);
+            case CHANGED:
+                return new UpdatedEvent<>(item);
+            default:
+                return new DeletedEvent<>(item);
+        }
+    }
+
+    private void subscribeAndReportError(Completable completable, UserMessageListener userMessageListener)
+    {
+        completable.subscribe(() -> { }, ex -> userMessageListener.showMessage(ex.getMessage()));
+    }
+
+    /** Returns the fields of the item that can change after it has been created, keyed by their names in the database. **/
+    private Map<String, Object> getItemFields(PineTaskItemExt item)
+    {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(ITEM_DESCRIPTION_KEY_NAME, item.getItemDescription());
+        fields.put(CLAIMED_BY_KEY_NAME, item.getClaimedBy());
+        fields.put(IS_COMPLETED_KEY_NAME, item.getIsCompleted());
+        fields.put(COST_KEY_NAME, item.getCost());
+        return fields;
+    }
+
+    /** Converts Float costs to Double, matching how they are stored, so that they can be compared with stored values. **/
+    private Object normalizeNumbers(Map<String, Object> fields)
+    {
+        Map<String, Object> result = new HashMap<>();
+        for (Map.Entry<String, Object> field : fields.entrySet())
+        {
+            Object value = field.getValue();
+            if (value instanceof Float)
+            {
+                double d = (Float) value;
+                value = (d == Math.rint(d)) ? (Object) (long) d : (Object) d;
+            }
+            result.put(field.getKey(), value);
+        }
+        return result;
+    }
+
+    private PineTaskItemExt toItem(String key, Object value)
+    {
+        Map<String, Object> fields = (value instanceof Map) ? (Map<String, Object>) value : new HashMap<>();
+        PineTaskItemExt item = new PineTaskItemExt();
+        item.setId(key);
+        item.setItemDescription((String) fields.get(ITEM_DESCRIPTION_KEY_NAME));
+        item.setClaimedBy((String) fields.get(CLAIMED_BY_KEY_NAME));
+        item.setIsCompleted(Boolean.TRUE.equals(fields.get(IS_COMPLETED_KEY_NAME)));
+        Object createdAt = fields.get(CREATED_AT_KEY_NAME);
+        if (createdAt != null) item.setCreatedAt((Long) createdAt);
+        Object cost = fields.get(COST_KEY_NAME);
+        if (cost != null) item.setCost(((Number) cost).floatValue());
+        return item;
+    }
+
+    private ChatMessage toChatMessage(String key, Object value)
+    {
+        Map<String, Object> fields = (value instanceof Map) ? (Map<String, Object>) value : new HashMap<>();
+        ChatMessage chatMessage = new ChatMessage();
+        chatMessage.setId(key);
+        chatMessage.setMessage((String) fields.get(MESSAGE_KEY_NAME));
+        chatMessage.setSenderId((String) fields.get(SENDER_ID_KEY_NAME));
+        Object createdAt = fields.get(CREATED_AT_KEY_NAME);
+        if (createdAt != null) chatMessage.setCreatedAt((Long) createdAt);
+        return chatMessage;
+    }
+
+    private PineTaskList toPineTaskList(String listId, Object value)
+    {
+        Map<String, Object> fields = (value instanceof Map) ? (Map<String, Object>) value : new HashMap<>();
+        return new PineTaskList(listId, (String) fields.get(LIST_NAME_KEY), (String) fields.get(OWNER_ID_KEY));
+    }
+
+    private PineTaskListWithCollaborators toListSummary(String listId, Object value)
+    {
+        Map<String, Object> fields = (value instanceof Map) ? (Map<String, Object>) value : new HashMap<>();
+        Object memberCount = fields.get(MEMBER_COUNT_KEY);
+        return new PineTaskListWithCollaborators(listId, (String) fields.get(LIST_NAME_KEY), (String) fields.get(OWNER_ID_KEY), memberCount == null ? 0 : ((Number) memberCount).intValue());
+    }
+}
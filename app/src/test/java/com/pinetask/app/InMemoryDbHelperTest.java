@@ -0,0 +1,166 @@
+package com.pinetask.app;
+
+import com.pinetask.app.chat.ChatMessage;
+import com.pinetask.app.common.ChildEventBase;
+import com.pinetask.app.common.PineTaskListWithCollaborators;
+import com.pinetask.app.common.UserMessageListener;
+import com.pinetask.app.db.BulkUpdateResult;
+import com.pinetask.app.list_items.PineTaskItemExt;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/** Unit test of the database event semantics that InMemoryDbHelper presents to repositories, which must match those of DbHelperImpl against Firebase. **/
+public class InMemoryDbHelperTest
+{
+    private static final String USER_ID = "user1";
+    private static final UserMessageListener FAIL_ON_ERROR = (message, args) -> { throw new AssertionError(String.format(message, args)); };
+
+    private InMemoryDatabase mDb;
+    private InMemoryDbHelper mDbHelper;
+
+    @Before
+    public void setUp()
+    {
+        mDb = new InMemoryDatabase();
+        mDb.setScheduler(new TestScheduler());
+        mDbHelper = new InMemoryDbHelper(mDb);
+    }
+
+    /** Creates a list owned by USER_ID, and returns its ID. **/
+    private String createList(String name)
+    {
+        mDbHelper.createList(USER_ID, name).subscribe();
+        return mDbHelper.getListIdsForUser(USER_ID).blockingFirst();
+    }
+
+    private PineTaskItemExt addItem(String listId, String description)
+    {
+        PineTaskItemExt item = new PineTaskItemExt(null, description, false, listId);
+        mDbHelper.addPineTaskItem(item).subscribe();
+        return item;
+    }
+
+    private static String describe(ChildEventBase<PineTaskItemExt> event)
+    {
+        return event.getClass().getSimpleName() + " " + event.Item.getItemDescription();
+    }
+
+    @Test
+    public void itemChildEventsPrecedeValueEvent() throws Exception
+    {
+        String listId = createList("Groceries");
+        PineTaskItemExt apples = addItem(listId, "Apples");
+        addItem(listId, "Bananas");
+
+        List<String> events = new ArrayList<>();
+        mDbHelper.subscribeListItems(listId).subscribe(event -> events.add(describe(event)));
+        mDb.observeValue("list_items/" + listId).subscribe(snapshot -> events.add("VALUE"));
+        assertEquals("[AddedEvent Apples, AddedEvent Bananas, VALUE]", events.toString());
+
+        events.clear();
+        apples.setIsCompleted(true);
+        mDbHelper.updateItem(apples, FAIL_ON_ERROR);
+        assertEquals("[UpdatedEvent Apples, VALUE]", events.toString());
+
+        events.clear();
+        mDbHelper.deleteItem(apples, FAIL_ON_ERROR);
+        assertEquals("[DeletedEvent Apples, VALUE]", events.toString());
+    }
+
+    @Test
+    public void updateWithNoChangedFieldsRaisesNoEvents() throws Exception
+    {
+        String listId = createList("Groceries");
+        PineTaskItemExt apples = addItem(listId, "Apples");
+
+        List<String> events = new ArrayList<>();
+        mDbHelper.subscribeListItems(listId).subscribe(event -> events.add(describe(event)));
+        events.clear();
+        mDbHelper.updateItem(apples, FAIL_ON_ERROR);
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void placeholdersLetNewListLoadWhileOffline() throws Exception
+    {
+        mDb.setOnline(false);
+        String listId = createList("Groceries");
+
+        // The items and chat nodes exist as placeholders, so reads complete without the server, and listeners see no children.
+        mDbHelper.getListItems(listId).test().assertValue(Collections.<PineTaskItemExt>emptyList());
+        mDbHelper.getNewestChatMessages(listId, 10).test().assertValue(Collections.<ChatMessage>emptyList());
+        mDbHelper.subscribeListItems(listId).test().assertNoValues().assertNotComplete();
+
+        // Without a placeholder, the read waits for the server.
+        TestObserver<List<PineTaskItemExt>> missing = mDbHelper.getListItems("missingList").test();
+        missing.assertNoValues();
+        mDb.setOnline(true);
+        missing.assertValue(Collections.<PineTaskItemExt>emptyList());
+    }
+
+    @Test
+    public void createListWritesAllPathsBeforeRaisingEvents() throws Exception
+    {
+        List<String> namesSeen = new ArrayList<>();
+        mDbHelper.subscribeListSummaries(USER_ID).subscribe(event ->
+        {
+            // When the summary event is raised, the other paths of the multi-path write have already been written.
+            String listId = event.Item.getId();
+            assertNotNull(mDb.getValue("list_collaborators/" + listId + "/" + USER_ID));
+            assertEquals(0L, mDb.getValue("list_stats/" + listId + "/item_count"));
+            namesSeen.add(String.valueOf(mDb.getValue("list_info/" + listId + "/name")));
+        });
+        createList("Groceries");
+        assertEquals("[Groceries]", namesSeen.toString());
+    }
+
+    @Test
+    public void purgeCompletedItemsIsOneMultiPathWrite() throws Exception
+    {
+        String listId = createList("Groceries");
+        PineTaskItemExt apples = addItem(listId, "Apples");
+        addItem(listId, "Bananas");
+        PineTaskItemExt cherries = addItem(listId, "Cherries");
+        for (PineTaskItemExt item : new PineTaskItemExt[] { apples, cherries })
+        {
+            item.setIsCompleted(true);
+            mDbHelper.updateItem(item, FAIL_ON_ERROR);
+        }
+
+        List<String> events = new ArrayList<>();
+        mDbHelper.subscribeListItems(listId).skip(3).subscribe(event -> events.add(describe(event)));
+        mDb.observeValue("list_items/" + listId).skip(1).subscribe(snapshot -> events.add("VALUE"));
+        BulkUpdateResult result = mDbHelper.purgeCompletedItems(listId).blockingGet();
+
+        assertEquals(2, result.ItemCount);
+        assertEquals(1, result.WriteCount);
+        assertEquals("[DeletedEvent Apples, DeletedEvent Cherries, VALUE]", events.toString());
+        assertEquals(1L, (long) mDbHelper.getListItemCount(listId).blockingGet());
+    }
+
+    @Test
+    public void renameListUpdatesSummary() throws Exception
+    {
+        String listId = createList("Groceries");
+        List<ChildEventBase<PineTaskListWithCollaborators>> events = new ArrayList<>();
+        mDbHelper.subscribeListSummaries(USER_ID).skip(1).subscribe(events::add);
+
+        mDbHelper.renameList(listId, "Hardware").subscribe();
+        assertEquals(1, events.size());
+        assertEquals("UpdatedEvent", events.get(0).getClass().getSimpleName());
+        assertEquals("Hardware", events.get(0).Item.getName());
+        assertEquals(1, events.get(0).Item.getMemberCount());
+    }
+}
@@ -0,0 +1,173 @@
+package com.pinetask.app.db;
+
+import com.google.firebase.database.DatabaseError;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.BehaviorSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Unit test of the backoff, jitter, and circuit breaker behavior of RetryPolicy, using a TestScheduler to control time. **/
+public class RetryPolicyTest
+{
+    private static final String PATH = "list_items/list1";
+
+    private TestScheduler mScheduler;
+    private BehaviorSubject<Boolean> mConnectionState;
+    private DbMetrics mMetrics;
+    private AtomicInteger mSubscriptionCount;
+
+    @Before
+    public void setUp()
+    {
+        mScheduler = new TestScheduler();
+        mConnectionState = BehaviorSubject.createDefault(true);
+        mMetrics = new DbMetrics();
+        mSubscriptionCount = new AtomicInteger();
+    }
+
+    /** Returns a policy with a 1 second initial delay, 8 second maximum delay, the jitter specified, and a breaker that trips after 3 failures. **/
+    private RetryPolicy createPolicy(double jitter, Random random)
+    {
+        return new RetryPolicy(mConnectionState, mMetrics, mScheduler, random, 1000, 8000, jitter, 3);
+    }
+
+    private static DbOperationCanceledException canceled(int errorCode)
+    {
+        return new DbOperationCanceledException(null, DatabaseError.fromCode(errorCode), "test operation");
+    }
+
+    /** Returns an Observable that fails with the error specified for the first `failures` subscriptions, and after that emits an item. **/
+    private Observable<String> failingSource(int failures, Throwable error)
+    {
+        return Observable.defer(() -> mSubscriptionCount.incrementAndGet() <= failures ? Observable.<String>error(error) : Observable.just("item"));
+    }
+
+    /** Advances the scheduler by the time specified, and returns the number of subscriptions made so far. **/
+    private int advanceBy(long delayMs)
+    {
+        mScheduler.advanceTimeBy(delayMs, TimeUnit.MILLISECONDS);
+        return mSubscriptionCount.get();
+    }
+
+    @Test
+    public void baseDelayDoublesUpToMaximum()
+    {
+        RetryPolicy policy = createPolicy(0, new Random());
+        assertEquals(1000, policy.getBaseDelayMs(1));
+        assertEquals(2000, policy.getBaseDelayMs(2));
+        assertEquals(4000, policy.getBaseDelayMs(3));
+        assertEquals(8000, policy.getBaseDelayMs(4));
+        assertEquals(8000, policy.getBaseDelayMs(20));
+    }
+
+    @Test
+    public void retriesWithExponentialBackoff()
+    {
+        RetryPolicy policy = createPolicy(0, new Random());
+        TestObserver<String> observer = failingSource(2, canceled(DatabaseError.DISCONNECTED)).compose(policy.forPath(PATH, "test operation")).test();
+        assertEquals(1, mSubscriptionCount.get());
+
+        assertEquals(1, advanceBy(999));
+        assertEquals(2, advanceBy(1));
+        assertEquals(2, advanceBy(1999));
+        assertEquals(3, advanceBy(1));
+
+        observer.assertValue("item").assertNoErrors();
+        assertEquals(2, policy.getRetryCount());
+        assertEquals(2, mMetrics.getCounter("retries: test operation"));
+    }
+
+    @Test
+    public void jitterShortensDelay()
+    {
+        Random random = new Random()
+        {
+            @Override
+            public double nextDouble()
+            {
+                return 0.5;
+            }
+        };
+        RetryPolicy policy = createPolicy(0.5, random);
+        failingSource(1, canceled(DatabaseError.DISCONNECTED)).compose(policy.forPath(PATH, "test operation")).test();
+
+        // 1000 ms, less 0.5 (jitter) * 0.5 (random) of the delay.
+        assertEquals(1, advanceBy(749));
+        assertEquals(2, advanceBy(1));
+    }
+
+    @Test
+    public void trippedBreakerWaitsForConnection()
+    {
+        RetryPolicy policy = createPolicy(0, new Random());
+        mConnectionState.onNext(false);
+        TestObserver<String> observer = failingSource(3, canceled(DatabaseError.DISCONNECTED)).compose(policy.forPath(PATH, "test operation")).test();
+        advanceBy(1000 + 2000);
+        assertEquals(3, mSubscriptionCount.get());
+        assertTrue(policy.isBreakerTripped(PATH));
+        assertEquals(1, policy.getBreakerTripCount());
+
+        // The delay after the third failure has elapsed, but the client is still offline.
+        assertEquals(3, advanceBy(60000));
+        observer.assertNoValues();
+
+        mConnectionState.onNext(true);
+        assertEquals(4, mSubscriptionCount.get());
+        observer.assertValue("item");
+    }
+
+    @Test
+    public void successResetsBreaker()
+    {
+        RetryPolicy policy = createPolicy(0, new Random());
+        mConnectionState.onNext(false);
+        failingSource(3, canceled(DatabaseError.DISCONNECTED)).compose(policy.forPath(PATH, "test operation")).test();
+        advanceBy(1000 + 2000 + 4000);
+        mConnectionState.onNext(true);
+        assertFalse(policy.isBreakerTripped(PATH));
+
+        // After the reset, the next failure is retried after the initial delay, without waiting for the connection.
+        mConnectionState.onNext(false);
+        mSubscriptionCount.set(0);
+        failingSource(1, canceled(DatabaseError.DISCONNECTED)).compose(policy.forPath(PATH, "test operation")).test();
+        assertEquals(1, advanceBy(999));
+        assertEquals(2, advanceBy(1));
+    }
+
+    @Test
+    public void permissionDeniedIsNotRetried()
+    {
+        RetryPolicy policy = createPolicy(0, new Random());
+        DbOperationCanceledException error = canceled(DatabaseError.PERMISSION_DENIED);
+        TestObserver<String> observer = failingSource(1, error).compose(policy.forPath(PATH, "test operation")).test();
+        advanceBy(60000);
+
+        observer.assertError(error);
+        assertEquals(1, mSubscriptionCount.get());
+        assertEquals(0, policy.getRetryCount());
+    }
+
+    @Test
+    public void otherErrorsAreNotRetried()
+    {
+        RetryPolicy policy = createPolicy(0, new Random());
+        IllegalStateException error = new IllegalStateException("can't deserialize");
+        TestObserver<String> observer = failingSource(1, error).compose(policy.forPath(PATH, "test operation")).test();
+        advanceBy(60000);
+
+        observer.assertError(error);
+        assertEquals(1, mSubscriptionCount.get());
+    }
+}
@@ -0,0 +1,94 @@
+package com.pinetask.app.benchmark;
+
+import android.support.v7.widget.RecyclerView;
+
+import com.pinetask.app.InMemoryDatabase;
+import com.pinetask.app.InMemoryDbHelper;
+import com.pinetask.app.common.AppComponent;
+import com.pinetask.app.common.PineTaskApplication;
+import com.pinetask.app.common.PrefsManager;
+import com.pinetask.app.list_items.PineTaskItemExt;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.android.plugins.RxAndroidPlugins;
+import io.reactivex.schedulers.Schedulers;
+
+/** Helpers for running app code outside Android: the main thread scheduler is replaced with the trampoline scheduler (so that event pipelines run
+ *  synchronously on the benchmark thread), and the database is an InMemoryDbHelper with no latency. **/
+public class BenchmarkEnvironment
+{
+    public static void init()
+    {
+        RxAndroidPlugins.setInitMainThreadSchedulerHandler(__ -> Schedulers.trampoline());
+        RxAndroidPlugins.setMainThreadSchedulerHandler(__ -> Schedulers.trampoline());
+    }
+
+    public static InMemoryDbHelper createDbHelper()
+    {
+        return new InMemoryDbHelper(new InMemoryDatabase());
+    }
+
+    /** Makes the app component provided available through PineTaskApplication.getInstance(), for classes that inject themselves. **/
+    public static void installAppComponent(AppComponent appComponent) throws Exception
+    {
+        PineTaskApplication application = new PineTaskApplication()
+        {
+            @Override
+            public AppComponent getAppComponent()
+            {
+                return appComponent;
+            }
+        };
+        Field instanceField = PineTaskApplication.class.getDeclaredField("mApplicationInstance");
+        instanceField.setAccessible(true);
+        instanceField.set(null, application);
+    }
+
+    /** Returns a PrefsManager that doesn't use shared preferences: the "last seen" timestamp is always 0, so no lookup of the newest item is needed. **/
+    public static PrefsManager createPrefsManager()
+    {
+        return new PrefsManager(new PineTaskApplication())
+        {
+            @Override
+            public long getLastSeenItemTimestamp(String listId)
+            {
+                return 0;
+            }
+
+            @Override
+            public void setLastSeenItemTimestamp(String listId, long timestamp)
+            {
+            }
+        };
+    }
+
+    /** The observer list of RecyclerView.Adapter is created by android.database.Observable, which is only a stub in the mockable android.jar.  Create it so that
+     *  adapter notifications (with no observers) can be made. **/
+    public static void enableAdapterNotifications(RecyclerView.Adapter adapter) throws Exception
+    {
+        Field observableField = RecyclerView.Adapter.class.getDeclaredField("mObservable");
+        observableField.setAccessible(true);
+        Object observable = observableField.get(adapter);
+        Field observersField = android.database.Observable.class.getDeclaredField("mObservers");
+        observersField.setAccessible(true);
+        observersField.set(observable, new ArrayList<>());
+    }
+
+    /** Returns items with IDs in the same (chronological) order as push keys. **/
+    public static List<PineTaskItemExt> createItems(String listId, int count)
+    {
+        List<PineTaskItemExt> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            PineTaskItemExt item = new PineTaskItemExt(String.format("item%06d", i), "Item " + i, false, listId);
+            item.setCreatedAt(i);
+            item.setCost((i % 10 == 0) ? 1.25f * i : null);
+            item.setIsCompleted(i % 3 == 0);
+            items.add(item);
+        }
+        return items;
+    }
+}
@@ -0,0 +1,85 @@
+package com.pinetask.app.chat;
+
+import com.pinetask.app.InMemoryDatabase;
+import com.pinetask.app.InMemoryDbHelper;
+import com.pinetask.app.benchmark.BenchmarkEnvironment;
+import com.pinetask.app.common.PineTaskList;
+import com.pinetask.app.db.UserProfileCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Incoming chat messages passing through ChatMessagesRepository's duplicate filtering and sender name lookup, with the history specified loaded.
+ *  The database and repository are created again for each iteration, so that the messages received in one iteration don't grow the history for the next. **/
+@State(Scope.Thread)
+public class ChatMessagesRepositoryBenchmark
+{
+    private static final String LIST_ID = "list1";
+    private static final int SENDER_COUNT = 5;
+
+    @Param({ "100", "1000", "10000" })
+    public int mListSize;
+
+    private InMemoryDatabase mDb;
+    private InMemoryDbHelper mDbHelper;
+    private UserProfileCache mUserProfileCache;
+    private ChatMessagesRepository mRepository;
+    private List<String> mMessageIds;
+    private Random mRandom;
+    private int mReceivedCount;
+
+    @Setup(Level.Iteration)
+    public void setUp()
+    {
+        BenchmarkEnvironment.init();
+        mDbHelper = BenchmarkEnvironment.createDbHelper();
+        mDb = mDbHelper.getDatabase();
+        for (int i = 0; i < SENDER_COUNT; i++) mDbHelper.setUserName("user" + i, "User " + i).blockingAwait();
+        for (int i = 0; i < mListSize; i++) mDbHelper.sendChatMessage(LIST_ID, new ChatMessage("Message " + i, "user" + (i % SENDER_COUNT)));
+
+        mUserProfileCache = new UserProfileCache(mDbHelper);
+        mRepository = new ChatMessagesRepository(mDbHelper, mUserProfileCache, new PineTaskList(LIST_ID, "Benchmark", "user0"), messages -> { },
+                message -> mReceivedCount++, messages -> { }, ex -> { throw new RuntimeException(ex); });
+        while (mRepository.hasOlderMessages()) mRepository.loadOlderMessages();
+        if (mRepository.getChatMessages().size() != mListSize) throw new IllegalStateException("Chat history not loaded: " + mRepository.getChatMessages().size() + " messages");
+
+        mMessageIds = new ArrayList<>();
+        for (ChatMessage chatMessage : mRepository.getChatMessages()) mMessageIds.add(chatMessage.getId());
+        mRandom = new Random(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown()
+    {
+        mRepository.shutdown();
+        mUserProfileCache.shutdown();
+    }
+
+    /** A new message is received (the loaded history grows by one message per invocation, until it is reset for the next iteration). **/
+    @Benchmark
+    public int receiveNewMessage()
+    {
+        mDbHelper.sendChatMessage(LIST_ID, new ChatMessage("New message", "user" + mRandom.nextInt(SENDER_COUNT)));
+        return mReceivedCount;
+    }
+
+    /** An AddedEvent is received again for a message that is already loaded (as happens when a listener is re-attached), and is filtered out. **/
+    @Benchmark
+    public int receiveDuplicateMessage()
+    {
+        String path = "chat_messages/" + LIST_ID + "/" + mMessageIds.get(mRandom.nextInt(mMessageIds.size()));
+        Object message = mDb.getValue(path);
+        mDb.setValue(path, null).subscribe();
+        mDb.setValue(path, message).subscribe();
+        return mReceivedCount;
+    }
+}
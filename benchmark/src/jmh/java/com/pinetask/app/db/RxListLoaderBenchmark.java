@@ -0,0 +1,92 @@
+package com.pinetask.app.db;
+
+import com.pinetask.app.InMemoryDbHelper;
+import com.pinetask.app.benchmark.BenchmarkEnvironment;
+import com.pinetask.app.common.AppComponent;
+import com.pinetask.app.common.PineTaskList;
+import com.pinetask.app.common.PineTaskListWithCollaborators;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/** RxListLoader.onListAdded() (duplicate check, then sorting the whole list) followed by onListDeleted(), for a user with the number of lists specified.
+ *  Setup also covers the initial load, which reads all of the user's list summaries at once. **/
+@State(Scope.Thread)
+public class RxListLoaderBenchmark
+{
+    private static final String USER_ID = "user1";
+
+    @Param({ "100", "1000", "10000" })
+    public int mListSize;
+
+    private RxListLoader mListLoader;
+    private Random mRandom;
+    private int mNextId;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        BenchmarkEnvironment.init();
+        InMemoryDbHelper dbHelper = BenchmarkEnvironment.createDbHelper();
+        mRandom = new Random(0);
+        for (int i = 0; i < mListSize; i++) dbHelper.createList(USER_ID, randomName()).blockingAwait();
+
+        AppComponent appComponent = (AppComponent) Proxy.newProxyInstance(AppComponent.class.getClassLoader(), new Class[] { AppComponent.class }, (proxy, method, args) ->
+        {
+            if (method.getName().equals("inject") && args[0] instanceof RxListLoader) ((RxListLoader) args[0]).mDbHelper = dbHelper;
+            return null;
+        });
+        BenchmarkEnvironment.installAppComponent(appComponent);
+
+        mListLoader = new RxListLoader(USER_ID, new RxListLoaderCallbacks()
+        {
+            @Override
+            public void onListsLoaded(List<PineTaskListWithCollaborators> lists) { }
+
+            @Override
+            public void onListAdded(PineTaskListWithCollaborators list) { }
+
+            @Override
+            public void onListDeleted(String listId) { }
+
+            @Override
+            public void onListUpdated(PineTaskListWithCollaborators list) { }
+
+            @Override
+            public void onError(Throwable error)
+            {
+                throw new RuntimeException(error);
+            }
+        });
+        if (mListLoader.getLists() == null || mListLoader.getLists().size() != mListSize) throw new IllegalStateException("Initial load of lists failed");
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        mListLoader.shutdown();
+    }
+
+    private String randomName()
+    {
+        return String.format("List %08d", mRandom.nextInt(100000000));
+    }
+
+    @Benchmark
+    public int addAndDeleteList()
+    {
+        String listId = "new" + mNextId++;
+        mListLoader.onListAdded(new PineTaskListWithCollaborators(new PineTaskList(listId, randomName(), USER_ID), Collections.singletonList(USER_ID)));
+        mListLoader.onListDeleted(listId);
+        return mListLoader.getLists().size();
+    }
+}
@@ -0,0 +1,97 @@
+package com.pinetask.app.list_items;
+
+import com.pinetask.app.benchmark.BenchmarkEnvironment;
+import com.pinetask.app.common.ChildEventBase;
+import com.pinetask.app.common.ChildEventBatcher;
+import com.pinetask.app.common.UpdatedEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Lookups and changes made to the item store (which replaced ListItemAdapter's findItem / add / update) for every item event. **/
+@State(Scope.Thread)
+public class ListItemStoreBenchmark
+{
+    @Param({ "100", "1000", "10000" })
+    public int mListSize;
+
+    private ListItemStore mItemStore;
+    private List<PineTaskItemExt> mItems;
+    private Random mRandom;
+    private int mNextId;
+
+    @Setup
+    public void setUp()
+    {
+        mItems = BenchmarkEnvironment.createItems("list1", mListSize);
+        mItemStore = new ListItemStore();
+        mItemStore.setAll(mItems);
+        mRandom = new Random(0);
+    }
+
+    private PineTaskItemExt randomItem()
+    {
+        return mItems.get(mRandom.nextInt(mItems.size()));
+    }
+
+    private PineTaskItemExt copyOf(PineTaskItemExt item)
+    {
+        PineTaskItemExt copy = new PineTaskItemExt(item.getId(), item.getItemDescription(), false, item.getListId());
+        copy.updateFrom(item);
+        return copy;
+    }
+
+    @Benchmark
+    public PineTaskItemExt findItem()
+    {
+        return mItemStore.getById(randomItem().getId());
+    }
+
+    @Benchmark
+    public boolean updateItem()
+    {
+        PineTaskItemExt item = copyOf(randomItem());
+        item.setIsCompleted(!item.getIsCompleted());
+        return mItemStore.update(item);
+    }
+
+    /** Adds an item to the end of the list and removes it again (the cheapest removal). **/
+    @Benchmark
+    public boolean addAndRemoveItem()
+    {
+        PineTaskItemExt item = new PineTaskItemExt("new" + mNextId++, "New item", true, "list1");
+        mItemStore.add(item);
+        return mItemStore.remove(item.getId());
+    }
+
+    /** Removes the first item (so all following items are re-indexed) and adds it back at the end. **/
+    @Benchmark
+    public boolean removeFirstItemAndAddBack()
+    {
+        PineTaskItemExt item = mItemStore.get(0);
+        mItemStore.remove(item.getId());
+        return mItemStore.add(item);
+    }
+
+    /** Applies a batch large enough to be reported as a single reset. **/
+    @Benchmark
+    public int applyLargeBatch()
+    {
+        List<ChildEventBase<PineTaskItemExt>> events = new ArrayList<>();
+        for (int i = 0; i <= ChildEventBatcher.LARGE_BATCH_SIZE; i++)
+        {
+            PineTaskItemExt item = copyOf(randomItem());
+            item.setIsCompleted(!item.getIsCompleted());
+            events.add(new UpdatedEvent<>(item));
+        }
+        mItemStore.applyEvents(events);
+        return mItemStore.getCompletedCount();
+    }
+}
@@ -0,0 +1,76 @@
+package com.pinetask.app.list_items;
+
+import com.pinetask.app.InMemoryDatabase;
+import com.pinetask.app.InMemoryDbHelper;
+import com.pinetask.app.benchmark.BenchmarkEnvironment;
+import com.pinetask.app.common.PineTaskList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/** The path of an item event from the database, through the ListItemsRepository pipeline (duplicate filtering, "new item" flagging), into the item store. **/
+@State(Scope.Thread)
+public class ListItemsRepositoryBenchmark
+{
+    private static final String LIST_ID = "list1";
+
+    @Param({ "100", "1000", "10000" })
+    public int mListSize;
+
+    private InMemoryDatabase mDb;
+    private InMemoryDbHelper mDbHelper;
+    private ListItemStore mItemStore;
+    private ListItemsRepository mRepository;
+    private List<PineTaskItemExt> mItems;
+    private Random mRandom;
+    private int mChangeCount;
+
+    @Setup
+    public void setUp()
+    {
+        BenchmarkEnvironment.init();
+        mDbHelper = BenchmarkEnvironment.createDbHelper();
+        mDb = mDbHelper.getDatabase();
+        mItems = BenchmarkEnvironment.createItems(LIST_ID, mListSize);
+        for (PineTaskItemExt item : mItems) mDbHelper.addPineTaskItem(item).blockingAwait();
+
+        mItemStore = new ListItemStore();
+        mRepository = new ListItemsRepository(mDbHelper, BenchmarkEnvironment.createPrefsManager(), new PineTaskList(LIST_ID, "Benchmark", "user1"), mItemStore,
+                items -> { }, event -> mItemStore.applyEvents(Collections.singletonList(event)), ex -> { throw new RuntimeException(ex); });
+        if (mItemStore.size() != mListSize) throw new IllegalStateException("Initial load failed: " + mItemStore.size() + " items loaded");
+        mRandom = new Random(0);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        mRepository.shutdown();
+    }
+
+    /** Another user changes an item: the UpdatedEvent is checked against the stored item, and then applied. **/
+    @Benchmark
+    public int receiveItemUpdate()
+    {
+        PineTaskItemExt item = mItems.get(mRandom.nextInt(mItems.size()));
+        mDb.setValue("list_items/" + LIST_ID + "/" + item.getId() + "/itemDescription", "Item " + mChangeCount++).subscribe();
+        return mItemStore.size();
+    }
+
+    /** An item is added and then deleted. **/
+    @Benchmark
+    public int receiveItemAddedAndDeleted()
+    {
+        PineTaskItemExt item = new PineTaskItemExt(null, "New item", true, LIST_ID);
+        mDbHelper.addPineTaskItem(item).blockingAwait();
+        mDbHelper.deleteItem(item, (message, args) -> { throw new RuntimeException(String.format(message, args)); });
+        return mItemStore.size();
+    }
+}
@@ -0,0 +1,54 @@
+package com.pinetask.app.manage_lists;
+
+import com.pinetask.app.benchmark.BenchmarkEnvironment;
+import com.pinetask.app.common.PineTaskList;
+import com.pinetask.app.common.PineTaskListWithCollaborators;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/** Sorted insertion of a list into the Manage Lists adapter (duplicate check, then a linear search for the insertion point). **/
+@State(Scope.Thread)
+public class ManageListsAdapterBenchmark
+{
+    @Param({ "100", "1000", "10000" })
+    public int mListSize;
+
+    private ManageListsAdapter mAdapter;
+    private Random mRandom;
+    private int mNextId;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        mRandom = new Random(0);
+        List<PineTaskListWithCollaborators> lists = new ArrayList<>();
+        for (int i = 0; i < mListSize; i++) lists.add(createList("list" + i));
+        Collections.sort(lists, PineTaskList.NAME_COMPARATOR);
+        mAdapter = new ManageListsAdapter(null, lists, "user1");
+        BenchmarkEnvironment.enableAdapterNotifications(mAdapter);
+    }
+
+    private PineTaskListWithCollaborators createList(String listId)
+    {
+        String name = String.format("List %08d", mRandom.nextInt(100000000));
+        return new PineTaskListWithCollaborators(new PineTaskList(listId, name, "user1"), Collections.singletonList("user1"));
+    }
+
+    @Benchmark
+    public int addAndRemoveList()
+    {
+        PineTaskListWithCollaborators list = createList("new" + mNextId++);
+        mAdapter.add(list);
+        mAdapter.remove(list.getKey());
+        return mAdapter.getItemCount();
+    }
+}